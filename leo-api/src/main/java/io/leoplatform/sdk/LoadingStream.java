@@ -2,6 +2,8 @@ package io.leoplatform.sdk;
 
 import io.leoplatform.sdk.payload.EventPayload;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.stream.Stream;
 
 public interface LoadingStream extends PlatformStream {
@@ -9,4 +11,20 @@ public interface LoadingStream extends PlatformStream {
     void load(EventPayload payload);
 
     void load(Stream<EventPayload> payload);
+
+    /**
+     * Loads a payload without waiting for room in the pipeline.
+     *
+     * @return A stage completed once the payload has been accepted, or exceptionally if it was rejected
+     */
+    default CompletionStage<Void> offer(EventPayload payload) {
+        CompletableFuture<Void> accepted = new CompletableFuture<>();
+        try {
+            load(payload);
+            accepted.complete(null);
+        } catch (RuntimeException e) {
+            accepted.completeExceptionally(e);
+        }
+        return accepted;
+    }
 }
@@ -28,7 +28,8 @@ public class EntityPayload {
     public EntityPayload(EventPayload eventPayload, LoadingBot bot) {
         this.payload = eventPayload.payload();
         this.id = bot.name();
-        this.event = bot.destination().name();
+        this.event = Optional.ofNullable(eventPayload.destination())
+                .orElseGet(() -> bot.destination().name());
         Instant now = Instant.now();
         this.event_source_timestamp = Optional.of(eventPayload)
                 .map(EventPayload::eventTime)
@@ -38,6 +39,19 @@ public class EntityPayload {
         this.correlation_id = eventPayload.streamCorrelation();
     }
 
+    /**
+     * An event as it was read back from the LEO bus, with the metadata it was loaded with.
+     */
+    public EntityPayload(JsonObject payload, String id, String event, Long eventSourceTimestamp, Long timestamp,
+                         StreamCorrelation correlationId) {
+        this.payload = payload;
+        this.id = id;
+        this.event = event;
+        this.event_source_timestamp = eventSourceTimestamp;
+        this.timestamp = timestamp;
+        this.correlation_id = correlationId;
+    }
+
     /**
      * A JSON object to be loaded to the LEO bus. There are typically limitations on the size of this
      * value based on the destination within the bus. This value is serialized (and typically gzipped)
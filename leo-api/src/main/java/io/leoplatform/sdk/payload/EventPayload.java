@@ -17,5 +17,14 @@ public interface EventPayload {
         return null;
     }
 
+    /**
+     * The bus queue this payload is loaded into, when it is not the loading bot's destination.
+     *
+     * @return The destination queue name, or null to use the bot's destination
+     */
+    default String destination() {
+        return null;
+    }
+
     JsonObject payload();
 }
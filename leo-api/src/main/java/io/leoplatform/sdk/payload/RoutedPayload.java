@@ -0,0 +1,54 @@
+package io.leoplatform.sdk.payload;
+
+import javax.json.JsonObject;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Loads a payload into a bus queue other than the loading bot's destination, so one stream can load into
+ * many queues. Each destination queue is batched into its own Kinesis records and S3 files.
+ */
+public final class RoutedPayload implements EventPayload {
+
+    private final String destination;
+    private final EventPayload payload;
+
+    public RoutedPayload(String destination, EventPayload payload) {
+        this.destination = Optional.ofNullable(destination)
+                .map(String::trim)
+                .filter(d -> !d.isEmpty())
+                .orElseThrow(() -> new IllegalArgumentException("Invalid or missing destination queue"));
+        this.payload = Optional.ofNullable(payload)
+                .orElseThrow(() -> new IllegalArgumentException("Missing payload for " + destination));
+    }
+
+    @Override
+    public String id() {
+        return payload.id();
+    }
+
+    @Override
+    public Instant eventTime() {
+        return payload.eventTime();
+    }
+
+    @Override
+    public StreamCorrelation streamCorrelation() {
+        return payload.streamCorrelation();
+    }
+
+    @Override
+    public String destination() {
+        return destination;
+    }
+
+    @Override
+    public JsonObject payload() {
+        return payload.payload();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RoutedPayload{destination='%s', payload=%s}", destination, payload);
+    }
+}
@@ -15,6 +15,19 @@ public class EntityPayloadTest {
         assertEquals(sp.getPayload().toString(), "{\"simple\":\"payload\"}", "JSON payload mismatch");
     }
 
+    @Test
+    public void testEventFromBotDestination() {
+        EntityPayload sp = new EntityPayload(simplePayload(), new SimpleLoadingBot("my-bot", "my-queue"));
+        assertEquals(sp.getEvent(), "my-queue", "Event should default to the bot destination");
+    }
+
+    @Test
+    public void testEventFromRoutedDestination() {
+        EventPayload routed = new RoutedPayload("other-queue", simplePayload());
+        EntityPayload sp = new EntityPayload(routed, new SimpleLoadingBot("my-bot", "my-queue"));
+        assertEquals(sp.getEvent(), "other-queue", "Event should be the routed destination");
+    }
+
     private EventPayload simplePayload() {
         return () -> Json.createObjectBuilder()
                 .add("simple", "payload")
@@ -0,0 +1,164 @@
+package io.leoplatform.sdk.benchmark;
+
+import io.leoplatform.sdk.aws.RingBatcher;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Producer contention on the batching hand-off alone, without compression or delivery. <code>Ring</code>
+ * is {@link RingBatcher}; <code>Locked</code> reproduces the previous lock, <code>LinkedBlockingQueue</code>
+ * and per-add size check and signal (unbounded, so it never applies backpressure). A single consumer
+ * thread drains batches of 1000 for the whole trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BatcherContentionBenchmark {
+    private static final int MAX_BATCH_RECORDS = 1000;
+
+    @Param({"Ring", "Locked"})
+    public String batcher;
+
+    private final Object item = new Object();
+    private final AtomicBoolean running = new AtomicBoolean(true);
+    private Batcher target;
+    private Thread consumer;
+
+    @Setup
+    public void setUp() {
+        target = batcher.equals("Ring") ? new Ring() : new Locked();
+        running.set(true);
+        consumer = new Thread(() -> {
+            while (running.get()) {
+                target.awaitAndDrain();
+            }
+        }, "batch-consumer");
+        consumer.start();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        running.set(false);
+        target.close();
+        consumer.join();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void producers01() {
+        target.add(item);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void producers04() {
+        target.add(item);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void producers16() {
+        target.add(item);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void producers64() {
+        target.add(item);
+    }
+
+    private interface Batcher {
+        void add(Object o);
+
+        void awaitAndDrain();
+
+        void close();
+    }
+
+    private static final class Ring implements Batcher {
+        private final RingBatcher<Object> ring = new RingBatcher<>(65_536, MAX_BATCH_RECORDS, Duration.ofMillis(400));
+
+        @Override
+        public void add(Object o) {
+            ring.offer(o);
+        }
+
+        @Override
+        public void awaitAndDrain() {
+            ring.awaitBatch();
+            ring.drain();
+        }
+
+        @Override
+        public void close() {
+            ring.close();
+        }
+    }
+
+    private static final class Locked implements Batcher {
+        private final BlockingQueue<Object> payloads = new LinkedBlockingQueue<>();
+        private final Lock lock = new ReentrantLock();
+        private final Condition batchSend = lock.newCondition();
+
+        @Override
+        public void add(Object o) {
+            lock.lock();
+            try {
+                payloads.add(o);
+            } finally {
+                lock.unlock();
+            }
+            if (payloads.size() >= MAX_BATCH_RECORDS) {
+                signal();
+            }
+        }
+
+        @Override
+        public void awaitAndDrain() {
+            lock.lock();
+            try {
+                batchSend.await(400, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                lock.unlock();
+            }
+            do {
+                Set<Object> batch = new LinkedHashSet<>();
+                lock.lock();
+                try {
+                    payloads.drainTo(batch, MAX_BATCH_RECORDS);
+                } finally {
+                    lock.unlock();
+                }
+            } while (payloads.size() >= MAX_BATCH_RECORDS);
+        }
+
+        @Override
+        public void close() {
+            signal();
+        }
+
+        private void signal() {
+            lock.lock();
+            try {
+                batchSend.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package io.leoplatform.sdk.benchmark;
+
+import io.leoplatform.sdk.config.ConnectorConfig;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * In-memory {@link ConnectorConfig} so each benchmark can pin the tuning keys it is measuring
+ * without a <code>leo_config.properties</code> on the classpath.
+ */
+final class BenchmarkConfig implements ConnectorConfig {
+    private final Map<String, String> values = new HashMap<>();
+
+    BenchmarkConfig() {
+        values.put("Writer", "Stream");
+        values.put("Stream.Name", "benchmark-stream");
+        values.put("Storage.Name", "benchmark-bucket");
+        values.put("Stream.BytesPerSecondFailover", "0");
+    }
+
+    BenchmarkConfig with(String key, Object value) {
+        values.put(key, String.valueOf(value));
+        return this;
+    }
+
+    @Override
+    public String value(String key) {
+        return Optional.ofNullable(values.get(key))
+                .orElseThrow(() -> new IllegalArgumentException("Missing benchmark config key: " + key));
+    }
+
+    @Override
+    public Long longValue(String key) {
+        return Long.valueOf(value(key));
+    }
+
+    @Override
+    public Integer intValue(String key) {
+        return Integer.valueOf(value(key));
+    }
+
+    @Override
+    public String valueOrElse(String key, String orElse) {
+        return values.getOrDefault(key, orElse);
+    }
+
+    @Override
+    public Long longValueOrElse(String key, Long orElse) {
+        return Optional.ofNullable(values.get(key))
+                .map(Long::valueOf)
+                .orElse(orElse);
+    }
+
+    @Override
+    public Integer intValueOrElse(String key, Integer orElse) {
+        return Optional.ofNullable(values.get(key))
+                .map(Integer::valueOf)
+                .orElse(orElse);
+    }
+}
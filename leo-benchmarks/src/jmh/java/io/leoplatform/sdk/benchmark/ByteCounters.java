@@ -0,0 +1,24 @@
+package io.leoplatform.sdk.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Per-thread byte counts reported by JMH next to the primary score, normalized to the benchmark's
+ * time unit (bytes/sec for throughput benchmarks).
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class ByteCounters {
+    public long rawBytes;
+    public long compressedBytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        rawBytes = 0;
+        compressedBytes = 0;
+    }
+}
@@ -0,0 +1,63 @@
+package io.leoplatform.sdk.benchmark;
+
+import io.leoplatform.sdk.aws.payload.CodecType;
+import io.leoplatform.sdk.aws.payload.CompressionWriter;
+import io.leoplatform.sdk.aws.payload.JacksonPayload;
+import io.leoplatform.sdk.aws.payload.StreamingCompressionWriter;
+import io.leoplatform.sdk.payload.EventPayload;
+import io.leoplatform.sdk.payload.FileSegment;
+import io.leoplatform.sdk.payload.StorageEventOffset;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compress a Kinesis-sized batch with each codec and level. The score is batches per second (CPU cost);
+ * the ratio of the <code>compressedBytes</code> and <code>rawBytes</code> counters is the compression
+ * ratio, which is also logged once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CodecBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(CodecBenchmark.class);
+
+    @Param({"Gzip:1", "Gzip:6", "Gzip:9", "JZlib:1", "JZlib:6", "Zstd:1", "Zstd:3", "Zstd:9", "LZ4:-1"})
+    public String codec;
+
+    @Param({"1000"})
+    public int batchRecords;
+
+    @Param({"20"})
+    public int lineItems;
+
+    private CompressionWriter compression;
+    private List<EventPayload> batch;
+
+    @Setup
+    public void setUp() {
+        String[] codecLevel = codec.split(":");
+        CodecType codecType = CodecType.fromName(codecLevel[0]);
+        compression = new StreamingCompressionWriter(new JacksonPayload(Pipeline.bot),
+                codecType.withLevel(Integer.parseInt(codecLevel[1])));
+        batch = new Payloads(batchRecords, lineItems).all();
+
+        StorageEventOffset offset = compression.compressWithOffsets(batch).getOffset();
+        log.info("{} ratio {} ({} -> {} bytes)", codec, String.format("%.3f", offset.getGzipSize().doubleValue() / offset.getSize()),
+                offset.getSize(), offset.getGzipSize());
+    }
+
+    @Benchmark
+    public FileSegment compressWithOffsets(ByteCounters counters) {
+        FileSegment segment = compression.compressWithOffsets(batch);
+        counters.rawBytes += segment.getOffset().getSize();
+        counters.compressedBytes += segment.getOffset().getGzipSize();
+        return segment;
+    }
+}
@@ -0,0 +1,76 @@
+package io.leoplatform.sdk.benchmark;
+
+import io.leoplatform.sdk.ExecutorManager;
+import io.leoplatform.sdk.InternalExecutorManager;
+import io.leoplatform.sdk.aws.payload.CodecType;
+import io.leoplatform.sdk.aws.payload.CompressionWriter;
+import io.leoplatform.sdk.aws.payload.JCraftGzipWriter;
+import io.leoplatform.sdk.aws.payload.JacksonPayload;
+import io.leoplatform.sdk.aws.payload.ParallelCompressionWriter;
+import io.leoplatform.sdk.aws.payload.S3JsonPayload;
+import io.leoplatform.sdk.aws.payload.StreamingCompressionWriter;
+import io.leoplatform.sdk.payload.EventPayload;
+import io.leoplatform.sdk.payload.FileSegment;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialize and gzip one batch the way <code>KinesisQueue</code> (1000 records) and
+ * <code>S3Queue</code> do. The score is batches per second; the auxiliary counters give
+ * uncompressed and compressed bytes per second. <code>writer</code> compares the string-joining
+ * writer with the streaming one and the chunked parallel one; run with <code>-prof gc</code> to see the allocation difference.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CompressionBenchmark {
+
+    @Param({"1", "100", "1000", "6000"})
+    public int batchRecords;
+
+    @Param({"20"})
+    public int lineItems;
+
+    @Param({"Joined", "Streaming", "Parallel"})
+    public String writer;
+
+    private ExecutorManager executorManager;
+    private CompressionWriter compression;
+    private List<EventPayload> batch;
+
+    @Setup
+    public void setUp() {
+        S3JsonPayload json = new JacksonPayload(Pipeline.bot);
+        CompressionWriter streaming = new StreamingCompressionWriter(json, CodecType.GZIP.withLevel(CodecType.DEFAULT_LEVEL));
+        executorManager = new InternalExecutorManager(new BenchmarkConfig());
+        switch (writer) {
+            case "Streaming":
+                compression = streaming;
+                break;
+            case "Parallel":
+                compression = new ParallelCompressionWriter(streaming, executorManager, 8, 250);
+                break;
+            default:
+                compression = new JCraftGzipWriter(json);
+        }
+        batch = new Payloads(batchRecords, lineItems).all();
+    }
+
+    @TearDown
+    public void tearDown() {
+        executorManager.end();
+    }
+
+    @Benchmark
+    public FileSegment compressWithOffsets(ByteCounters counters) {
+        FileSegment segment = compression.compressWithOffsets(batch);
+        counters.rawBytes += segment.getOffset().getSize();
+        counters.compressedBytes += segment.getOffset().getGzipSize();
+        return segment;
+    }
+}
@@ -0,0 +1,48 @@
+package io.leoplatform.sdk.benchmark;
+
+import io.leoplatform.sdk.aws.payload.JacksonPayload;
+import io.leoplatform.sdk.payload.EntityPayload;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization cost of a single bus event, with and without building the {@link EntityPayload}
+ * envelope first.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JacksonPayloadBenchmark {
+
+    @Param({"1", "20", "200"})
+    public int lineItems;
+
+    private JacksonPayload json;
+    private Payloads payloads;
+    private EntityPayload entity;
+
+    @Setup
+    public void setUp() {
+        json = new JacksonPayload(Pipeline.bot);
+        payloads = new Payloads(256, lineItems);
+        entity = json.toEntity(payloads.next());
+    }
+
+    @Benchmark
+    public String entityToJsonString(ByteCounters counters) {
+        String s = json.toJsonString(entity);
+        counters.rawBytes += s.length();
+        return s;
+    }
+
+    @Benchmark
+    public String eventToJsonString(ByteCounters counters) {
+        String s = json.toJsonString(payloads.next());
+        counters.rawBytes += s.length();
+        return s;
+    }
+}
@@ -0,0 +1,48 @@
+package io.leoplatform.sdk.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Producer-side throughput of <code>KinesisQueue.addEntity</code> against a local writer. Batching,
+ * compression and delivery run on the executor while the producers load.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+public class KinesisQueueBenchmark {
+
+    @Param({"100", "500", "1000"})
+    public int maxBatchRecords;
+
+    @Param({"4", "16"})
+    public int threadPoolSize;
+
+    private Pipeline pipeline;
+    private Payloads payloads;
+
+    @Setup
+    public void setUp() {
+        pipeline = new Pipeline(new BenchmarkConfig()
+                .with("Writer", "Stream")
+                .with("Stream.MaxBatchRecords", maxBatchRecords)
+                .with("ThreadPoolSize", threadPoolSize));
+        payloads = new Payloads(4096, 20);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pipeline.end();
+    }
+
+    @Benchmark
+    public void addEntity(ByteCounters counters) {
+        pipeline.kinesisQueue.addEntity(payloads.next());
+        counters.rawBytes += payloads.averageBytes();
+    }
+}
@@ -0,0 +1,67 @@
+package io.leoplatform.sdk.benchmark;
+
+import io.leoplatform.sdk.StreamStats;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end cost of <code>AWSLoadingStream.load</code>: every invocation builds a fresh pipeline,
+ * loads {@link #EVENTS} events and waits for <code>end()</code> to deliver them. The score is time
+ * per delivered event; events/sec is its reciprocal.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, batchSize = 1)
+@Measurement(iterations = 10, batchSize = 1)
+@Fork(1)
+public class LoadingStreamBenchmark {
+    private static final int EVENTS = 20_000;
+
+    @Param({"Stream", "Storage"})
+    public String writer;
+
+    @Param({"500", "1000"})
+    public int maxBatchRecords;
+
+    @Param({"5017600"})
+    public long maxBatchSize;
+
+    @Param({"16"})
+    public int threadPoolSize;
+
+    @Param({"false", "true"})
+    public String walEnabled;
+
+    private Payloads payloads;
+    private Pipeline pipeline;
+
+    @Setup(Level.Trial)
+    public void payloads() {
+        payloads = new Payloads(EVENTS, 20);
+    }
+
+    @Setup(Level.Invocation)
+    public void pipeline() {
+        pipeline = new Pipeline(new BenchmarkConfig()
+                .with("Writer", writer)
+                .with("Stream.MaxBatchRecords", maxBatchRecords)
+                .with("Storage.MaxBatchSize", maxBatchSize)
+                .with("Storage.MaxBatchAge", 200L)
+                .with("ThreadPoolSize", threadPoolSize)
+                .with("Wal.Enabled", walEnabled));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public StreamStats load(ByteCounters counters) {
+        for (int i = 0; i < EVENTS; i++) {
+            pipeline.loadingStream.load(payloads.next());
+        }
+        StreamStats stats = pipeline.end();
+        counters.rawBytes += payloads.averageBytes() * EVENTS;
+        counters.compressedBytes += pipeline.deliveredBytes();
+        return stats;
+    }
+}
@@ -0,0 +1,93 @@
+package io.leoplatform.sdk.benchmark;
+
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.model.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process S3 client handed to the SDK's <code>TransferManager</code>. Uploaded bodies are read
+ * to the end and discarded so buffering, hashing and stream handling are still exercised. Multipart
+ * uploads count one object per completed upload.
+ */
+final class LocalS3 extends AbstractAmazonS3 {
+    private final AtomicLong objects = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    @Override
+    public PutObjectResult putObject(PutObjectRequest request) {
+        try (InputStream is = body(request)) {
+            drain(is);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read upload body", e);
+        }
+        objects.incrementAndGet();
+        PutObjectResult result = new PutObjectResult();
+        result.setETag(Long.toHexString(objects.get()));
+        return result;
+    }
+
+    @Override
+    public InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest request) {
+        InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+        result.setUploadId(request.getKey());
+        return result;
+    }
+
+    @Override
+    public UploadPartResult uploadPart(UploadPartRequest request) {
+        try (InputStream is = request.getInputStream()) {
+            drain(is);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read part body", e);
+        }
+        UploadPartResult result = new UploadPartResult();
+        result.setPartNumber(request.getPartNumber());
+        result.setETag(Integer.toHexString(request.getPartNumber()));
+        return result;
+    }
+
+    @Override
+    public CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest request) {
+        objects.incrementAndGet();
+        CompleteMultipartUploadResult result = new CompleteMultipartUploadResult();
+        result.setETag(Long.toHexString(objects.get()));
+        return result;
+    }
+
+    @Override
+    public void abortMultipartUpload(AbortMultipartUploadRequest request) {
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    long objects() {
+        return objects.get();
+    }
+
+    long bytes() {
+        return bytes.get();
+    }
+
+    private void drain(InputStream is) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long total = 0;
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+            total += read;
+        }
+        bytes.addAndGet(total);
+    }
+
+    private InputStream body(PutObjectRequest request) throws IOException {
+        if (request.getInputStream() != null) {
+            return request.getInputStream();
+        }
+        return Files.newInputStream(request.getFile().toPath());
+    }
+}
@@ -0,0 +1,73 @@
+package io.leoplatform.sdk.benchmark;
+
+import io.leoplatform.sdk.payload.EventPayload;
+import io.leoplatform.sdk.payload.SimplePayload;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Deterministic sample events. A fixed seed keeps the compressibility of the generated
+ * documents stable from run to run so results can be compared across releases. Threads pick
+ * events at random from the shared, read-only set so producers never contend on an index.
+ */
+final class Payloads {
+    private static final String[] carriers = {"USPS", "FedEx", "UPS", "OnTrack", "Other"};
+    private static final String[] statuses = {"open", "shipped", "cancelled", "returned"};
+
+    private final List<EventPayload> events;
+    private final long averageBytes;
+
+    Payloads(int count, int lineItems) {
+        Random r = new Random(0x5EED);
+        this.events = IntStream.range(0, count)
+                .mapToObj(i -> new SimplePayload(order(r, i, lineItems)))
+                .collect(toList());
+        this.averageBytes = (long) events.stream()
+                .map(EventPayload::payload)
+                .map(JsonObject::toString)
+                .mapToInt(s -> s.getBytes(UTF_8).length)
+                .average()
+                .orElse(0d);
+    }
+
+    EventPayload next() {
+        return events.get(ThreadLocalRandom.current().nextInt(events.size()));
+    }
+
+    List<EventPayload> all() {
+        return events;
+    }
+
+    long averageBytes() {
+        return averageBytes;
+    }
+
+    private static JsonObject order(Random r, int id, int lineItems) {
+        JsonArrayBuilder items = Json.createArrayBuilder();
+        IntStream.range(0, lineItems)
+                .mapToObj(i -> Json.createObjectBuilder()
+                        .add("sku", "SKU-" + (100000 + r.nextInt(900000)))
+                        .add("quantity", 1 + r.nextInt(12))
+                        .add("price", r.nextInt(100000) / 100d)
+                        .add("description", "Line item " + i + " for order " + id))
+                .forEach(items::add);
+        return Json.createObjectBuilder()
+                .add("op", "update")
+                .add("order_id", 1000000L + id)
+                .add("po_number", "SG" + r.nextInt(Integer.MAX_VALUE))
+                .add("retailer_id", String.valueOf(1000000000 + r.nextInt(100)))
+                .add("status", statuses[r.nextInt(statuses.length)])
+                .add("requested_ship_carrier", carriers[r.nextInt(carriers.length)])
+                .add("line_items", items)
+                .build();
+    }
+}
@@ -0,0 +1,83 @@
+package io.leoplatform.sdk.benchmark;
+
+import io.leoplatform.sdk.AsyncWorkQueue;
+import io.leoplatform.sdk.ExecutorManager;
+import io.leoplatform.sdk.InternalExecutorManager;
+import io.leoplatform.sdk.LoadingStream;
+import io.leoplatform.sdk.StreamStats;
+import io.leoplatform.sdk.aws.AWSLoadingStream;
+import io.leoplatform.sdk.aws.AdmissionControl;
+import io.leoplatform.sdk.aws.FlowGate;
+import io.leoplatform.sdk.aws.RouteStats;
+import io.leoplatform.sdk.aws.TransferProxy;
+import io.leoplatform.sdk.aws.WorkQueues;
+import io.leoplatform.sdk.aws.kinesis.KinesisQueue;
+import io.leoplatform.sdk.aws.kinesis.PartitionKeys;
+import io.leoplatform.sdk.aws.payload.CodecType;
+import io.leoplatform.sdk.aws.payload.CompressionWriter;
+import io.leoplatform.sdk.aws.payload.InternalThresholdMonitor;
+import io.leoplatform.sdk.aws.payload.JacksonPayload;
+import io.leoplatform.sdk.aws.payload.ParallelCompressionWriter;
+import io.leoplatform.sdk.aws.payload.S3JsonPayload;
+import io.leoplatform.sdk.aws.payload.StreamingCompressionWriter;
+import io.leoplatform.sdk.aws.s3.S3Queue;
+import io.leoplatform.sdk.aws.s3.S3Results;
+import io.leoplatform.sdk.aws.s3.S3TransferManager;
+import io.leoplatform.sdk.aws.s3.S3Writer;
+import io.leoplatform.sdk.aws.wal.WriteAheadLog;
+import io.leoplatform.sdk.bus.Bots;
+import io.leoplatform.sdk.bus.LoadingBot;
+import io.leoplatform.sdk.payload.ThresholdMonitor;
+
+/**
+ * The same object graph <code>AWSModule</code> builds, wired by hand so the KPL producer and the S3
+ * client can be replaced with local stand-ins.
+ */
+final class Pipeline {
+    static final LoadingBot bot = Bots.ofLoading("benchmark-bot", "benchmark-queue");
+
+    final LocalKinesisWriter kinesisWriter = new LocalKinesisWriter();
+    final LocalS3 s3 = new LocalS3();
+    final ExecutorManager executorManager;
+    final CompressionWriter compression;
+    final AsyncWorkQueue kinesisQueue;
+    final AsyncWorkQueue s3Queue;
+    final LoadingStream loadingStream;
+
+    Pipeline(BenchmarkConfig config) {
+        executorManager = new InternalExecutorManager(config);
+        ThresholdMonitor thresholdMonitor = new InternalThresholdMonitor(config, executorManager);
+        S3JsonPayload json = new JacksonPayload(bot);
+        compression = new StreamingCompressionWriter(json, CodecType.GZIP.withLevel(CodecType.DEFAULT_LEVEL));
+        FlowGate flowGate = new FlowGate(config, bot.destination().name());
+        PartitionKeys partitionKeys = new PartitionKeys(config);
+        RouteStats routeStats = new RouteStats();
+        kinesisQueue = new KinesisQueue(config, executorManager, compression, kinesisWriter, partitionKeys, flowGate, routeStats);
+        S3Results s3Results = new S3Results(compression, kinesisWriter, partitionKeys, thresholdMonitor);
+        S3TransferManager transferManager = new S3TransferManager(config, s3Results, bot, flowGate, s3);
+        S3Writer s3Writer = new S3Writer(config, transferManager, executorManager, flowGate, routeStats);
+        s3Queue = new S3Queue(config, executorManager, storageCompression(config), flowGate, s3Writer);
+        WorkQueues workQueues = new WorkQueues(config, kinesisQueue, s3Queue, () -> {
+            throw new IllegalStateException("Firehose is not benchmarked");
+        }, compression);
+        AsyncWorkQueue transferProxy = new TransferProxy(workQueues, thresholdMonitor);
+        AdmissionControl admission = new AdmissionControl(config, transferProxy, executorManager, flowGate, new WriteAheadLog(config, executorManager));
+        loadingStream = new AWSLoadingStream(transferProxy, executorManager, admission);
+    }
+
+    private CompressionWriter storageCompression(BenchmarkConfig config) {
+        int chunks = config.intValueOrElse("Storage.CompressionChunks", 1);
+        if (chunks > 1) {
+            return new ParallelCompressionWriter(compression, executorManager, chunks, config.intValueOrElse("Storage.MinChunkRecords", 250));
+        }
+        return compression;
+    }
+
+    StreamStats end() {
+        return loadingStream.end().join();
+    }
+
+    long deliveredBytes() {
+        return kinesisWriter.bytes() + s3.bytes();
+    }
+}
@@ -0,0 +1,61 @@
+package io.leoplatform.sdk.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Producer-side throughput of <code>S3Queue.addEntity</code>. Files are assembled by
+ * <code>S3Writer</code> and uploaded through a real <code>TransferManager</code> backed by
+ * {@link LocalS3}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+public class S3QueueBenchmark {
+
+    @Param({"1048576", "5017600"})
+    public long maxBatchSize;
+
+    @Param({"Memory", "Disk", "Mapped", "Multipart"})
+    public String bufferStyle;
+
+    @Param({"4", "16"})
+    public int threadPoolSize;
+
+    @Param({"1", "4"})
+    public int compressionChunks;
+
+    @Param({"1", "4"})
+    public int maxConcurrentUploads;
+
+    private Pipeline pipeline;
+    private Payloads payloads;
+
+    @Setup
+    public void setUp() {
+        pipeline = new Pipeline(new BenchmarkConfig()
+                .with("Writer", "Storage")
+                .with("Storage.MaxBatchSize", maxBatchSize)
+                .with("Storage.BufferStyle", bufferStyle)
+                .with("ThreadPoolSize", threadPoolSize)
+                .with("Storage.CompressionChunks", compressionChunks)
+                .with("Storage.MaxConcurrentUploads", maxConcurrentUploads));
+        payloads = new Payloads(4096, 20);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pipeline.end();
+    }
+
+    @Benchmark
+    public void addEntity(ByteCounters counters) {
+        pipeline.s3Queue.addEntity(payloads.next());
+        counters.rawBytes += payloads.averageBytes();
+    }
+}
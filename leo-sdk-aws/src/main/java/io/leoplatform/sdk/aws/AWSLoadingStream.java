@@ -16,6 +16,7 @@ import java.time.Instant;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Stream;
 
@@ -25,27 +26,37 @@ public final class AWSLoadingStream implements LoadingStream {
 
     private final AsyncWorkQueue transferProxy;
     private final ExecutorManager executorManager;
+    private final AdmissionControl admission;
     private final AtomicBoolean streaming;
 
     @Inject
-    public AWSLoadingStream(@Named("Proxy") AsyncWorkQueue transferProxy, ExecutorManager executorManager) {
+    public AWSLoadingStream(@Named("Proxy") AsyncWorkQueue transferProxy, ExecutorManager executorManager,
+                            AdmissionControl admission) {
         this.transferProxy = transferProxy;
         this.executorManager = executorManager;
+        this.admission = admission;
         this.streaming = new AtomicBoolean(true);
     }
 
     @Override
     public void load(EventPayload payload) {
         if (streaming.get()) {
-            EventPayload sanitized = Optional.ofNullable(payload)
-                    .filter(p -> Objects.nonNull(p.payload()))
-                    .orElseThrow(() -> new IllegalArgumentException("Invalid payload: " + payload));
-            transferProxy.addEntity(sanitized);
+            admission.admit(sanitize(payload));
         } else {
             log.warn("Attempt to load payload on a closed stream");
         }
     }
 
+    @Override
+    public CompletionStage<Void> offer(EventPayload payload) {
+        if (streaming.get()) {
+            return admission.offer(sanitize(payload));
+        }
+        CompletableFuture<Void> closed = new CompletableFuture<>();
+        closed.completeExceptionally(new IllegalStateException("Attempt to offer payload on a closed stream"));
+        return closed;
+    }
+
     @Override
     public void load(Stream<EventPayload> payload) {
         payload.forEachOrdered(this::load);
@@ -56,7 +67,9 @@ public final class AWSLoadingStream implements LoadingStream {
         if (streaming.getAndSet(false)) {
             log.info("Stopping platform stream");
             return CompletableFuture.supplyAsync(() -> {
+                admission.drain();
                 StreamStats stats = transferProxy.end();
+                admission.close();
                 executorManager.end();
                 return stats;
             });
@@ -65,6 +78,12 @@ public final class AWSLoadingStream implements LoadingStream {
         }
     }
 
+    private EventPayload sanitize(EventPayload payload) {
+        return Optional.ofNullable(payload)
+                .filter(p -> Objects.nonNull(p.payload()))
+                .orElseThrow(() -> new IllegalArgumentException("Invalid payload: " + payload));
+    }
+
     private CompletableFuture<StreamStats> noStats() {
         return CompletableFuture.completedFuture(new StreamStats() {
             @Override
@@ -1,20 +1,30 @@
 package io.leoplatform.sdk.aws;
 
+import dagger.Lazy;
 import dagger.Module;
 import dagger.Provides;
 import io.leoplatform.sdk.AsyncWorkQueue;
 import io.leoplatform.sdk.ExecutorManager;
 import io.leoplatform.sdk.LoadingStream;
 import io.leoplatform.sdk.OffloadingStream;
+import io.leoplatform.sdk.aws.firehose.FirehoseQueue;
 import io.leoplatform.sdk.aws.kinesis.KinesisProducerWriter;
 import io.leoplatform.sdk.aws.kinesis.KinesisQueue;
 import io.leoplatform.sdk.aws.kinesis.KinesisResults;
+import io.leoplatform.sdk.aws.kinesis.KinesisShards;
+import io.leoplatform.sdk.aws.kinesis.KinesisWriter;
+import io.leoplatform.sdk.aws.kinesis.KinesisWriterStyle;
+import io.leoplatform.sdk.aws.kinesis.PartitionKeys;
+import io.leoplatform.sdk.aws.kinesis.PutRecordsWriter;
 import io.leoplatform.sdk.aws.payload.*;
 import io.leoplatform.sdk.aws.s3.S3Queue;
+import io.leoplatform.sdk.aws.s3.S3RangeReader;
 import io.leoplatform.sdk.aws.s3.S3Results;
 import io.leoplatform.sdk.aws.s3.S3TransferManager;
 import io.leoplatform.sdk.aws.s3.S3Writer;
+import io.leoplatform.sdk.aws.wal.WriteAheadLog;
 import io.leoplatform.sdk.bus.LoadingBot;
+import io.leoplatform.sdk.bus.OffloadingBot;
 import io.leoplatform.sdk.config.ConnectorConfig;
 import io.leoplatform.sdk.payload.ThresholdMonitor;
 
@@ -26,21 +36,62 @@ final class AWSModule {
     @Singleton
     @Provides
     @Named("AwsLoadingStream")
-    static LoadingStream provideLoadingStream(@Named("Proxy") AsyncWorkQueue transferProxy, ExecutorManager executorManager) {
-        return new AWSLoadingStream(transferProxy, executorManager);
+    static LoadingStream provideLoadingStream(@Named("Proxy") AsyncWorkQueue transferProxy, ExecutorManager executorManager,
+                                              AdmissionControl admission) {
+        return new AWSLoadingStream(transferProxy, executorManager, admission);
+    }
+
+    @Singleton
+    @Provides
+    static AdmissionControl provideAdmissionControl(ConnectorConfig config, @Named("Proxy") AsyncWorkQueue transferProxy,
+                                                    ExecutorManager executorManager, FlowGate flowGate, WriteAheadLog wal) {
+        return new AdmissionControl(config, transferProxy, executorManager, flowGate, wal);
+    }
+
+    @Singleton
+    @Provides
+    static WriteAheadLog provideWriteAheadLog(ConnectorConfig config, ExecutorManager executorManager) {
+        return new WriteAheadLog(config, executorManager);
+    }
+
+    @Singleton
+    @Provides
+    static FlowGate provideFlowGate(ConnectorConfig config, LoadingBot bot) {
+        return new FlowGate(config, bot.destination().name());
+    }
+
+    @Singleton
+    @Provides
+    static RouteStats provideRouteStats() {
+        return new RouteStats();
     }
 
     @Singleton
     @Provides
     @Named("AwsOffloadingStream")
-    static OffloadingStream provideOffloadingStream(ExecutorManager executorManager) {
-        return new AWSOffloadingStream(executorManager);
+    static OffloadingStream provideOffloadingStream(ConnectorConfig config, ExecutorManager executorManager,
+                                                    OffloadingBot bot, KinesisShards shards, S3RangeReader s3) {
+        return new AWSOffloadingStream(config, executorManager, bot, shards, s3);
     }
 
     @Singleton
     @Provides
-    static WorkQueues provideWorkQueues(ConnectorConfig config, @Named("Stream") AsyncWorkQueue kinesisQueue, @Named("Storage") AsyncWorkQueue s3Queue) {
-        return new WorkQueues(config, kinesisQueue, s3Queue);
+    static KinesisShards provideKinesisShards(ConnectorConfig config) {
+        return new KinesisShards(config);
+    }
+
+    @Singleton
+    @Provides
+    static S3RangeReader provideS3RangeReader(ConnectorConfig config) {
+        return new S3RangeReader(config);
+    }
+
+    @Singleton
+    @Provides
+    static WorkQueues provideWorkQueues(ConnectorConfig config, @Named("Stream") AsyncWorkQueue kinesisQueue,
+                                        @Named("Storage") AsyncWorkQueue s3Queue,
+                                        @Named("Batch") Lazy<AsyncWorkQueue> firehoseQueue, CompressionWriter compression) {
+        return new WorkQueues(config, kinesisQueue, s3Queue, firehoseQueue, compression);
     }
 
     @Singleton
@@ -54,15 +105,26 @@ final class AWSModule {
     @Provides
     @Named("Stream")
     static AsyncWorkQueue provideKinesisQueue(ConnectorConfig config, ExecutorManager executorManager,
-                                              CompressionWriter compression, KinesisProducerWriter writer) {
-        return new KinesisQueue(config, executorManager, compression, writer);
+                                              CompressionWriter compression, KinesisWriter writer,
+                                              PartitionKeys partitionKeys, FlowGate flowGate, RouteStats routeStats) {
+        return new KinesisQueue(config, executorManager, compression, writer, partitionKeys, flowGate, routeStats);
     }
 
     @Singleton
     @Provides
     @Named("Storage")
-    static AsyncWorkQueue provideS3Queue(ExecutorManager executorManager, CompressionWriter compression, S3Writer s3Writer) {
-        return new S3Queue(executorManager, compression, s3Writer);
+    static AsyncWorkQueue provideS3Queue(ConnectorConfig config, ExecutorManager executorManager,
+                                         @Named("Storage") CompressionWriter compression, FlowGate flowGate,
+                                         S3Writer s3Writer) {
+        return new S3Queue(config, executorManager, compression, flowGate, s3Writer);
+    }
+
+    @Singleton
+    @Provides
+    @Named("Batch")
+    static AsyncWorkQueue provideFirehoseQueue(ConnectorConfig config, ExecutorManager executorManager,
+                                               CompressionWriter compression, FlowGate flowGate, RouteStats routeStats) {
+        return new FirehoseQueue(config, executorManager, compression, flowGate, routeStats);
     }
 
     @Singleton
@@ -73,21 +135,44 @@ final class AWSModule {
 
     @Singleton
     @Provides
-    static S3Writer provideS3Writer(ConnectorConfig config, S3TransferManager transferManager, ExecutorManager executorManager) {
-        return new S3Writer(config, transferManager, executorManager);
+    static S3Writer provideS3Writer(ConnectorConfig config, S3TransferManager transferManager,
+                                    ExecutorManager executorManager, FlowGate flowGate, RouteStats routeStats) {
+        return new S3Writer(config, transferManager, executorManager, flowGate, routeStats);
     }
 
     @Singleton
     @Provides
-    static S3TransferManager provideS3TransferManager(ConnectorConfig config, ExecutorManager executorManager,
-                                                      S3Results resultsProcessor, LoadingBot bot) {
-        return new S3TransferManager(config, executorManager, resultsProcessor, bot);
+    static S3TransferManager provideS3TransferManager(ConnectorConfig config, S3Results resultsProcessor,
+                                                      LoadingBot bot, FlowGate flowGate) {
+        return new S3TransferManager(config, resultsProcessor, bot, flowGate);
     }
 
     @Singleton
     @Provides
-    static CompressionWriter provideKinesisCompression(S3JsonPayload streamJson) {
-        return new JCraftGzipWriter(streamJson);
+    static CompressionWriter provideKinesisCompression(ConnectorConfig config, S3JsonPayload streamJson, CompressionCodec codec) {
+        return new StreamingCompressionWriter(streamJson, codec, compressionPoolSize(config));
+    }
+
+    @Singleton
+    @Provides
+    @Named("Storage")
+    static CompressionWriter provideStorageCompression(ConnectorConfig config, CompressionWriter compression, ExecutorManager executorManager) {
+        int chunks = config.intValueOrElse("Storage.CompressionChunks", 1);
+        if (chunks > 1) {
+            return new ParallelCompressionWriter(compression, executorManager, chunks, config.intValueOrElse("Storage.MinChunkRecords", 250));
+        }
+        return compression;
+    }
+
+    @Singleton
+    @Provides
+    static CompressionCodec provideCompressionCodec(ConnectorConfig config) {
+        return CodecType.fromName(config.valueOrElse("Compression.Codec", "Gzip"))
+                .withLevel(config.intValueOrElse("Compression.Level", CodecType.DEFAULT_LEVEL), compressionPoolSize(config));
+    }
+
+    private static int compressionPoolSize(ConnectorConfig config) {
+        return config.intValueOrElse("Compression.PoolSize", config.intValueOrElse("ThreadPoolSize", CodecType.DEFAULT_POOL_SIZE));
     }
 
     @Singleton
@@ -98,8 +183,11 @@ final class AWSModule {
 
     @Singleton
     @Provides
-    static KinesisProducerWriter provideKinesisWrite(ConnectorConfig config, ExecutorManager executorManager, KinesisResults resultsProcessor) {
-        return new KinesisProducerWriter(config, executorManager, resultsProcessor);
+    static KinesisWriter provideKinesisWrite(ConnectorConfig config, ExecutorManager executorManager, KinesisResults resultsProcessor) {
+        if (KinesisWriterStyle.fromName(config.valueOrElse("Stream.Writer", "Producer")) == KinesisWriterStyle.PUT_RECORDS) {
+            return new PutRecordsWriter(config, executorManager, resultsProcessor);
+        }
+        return new KinesisProducerWriter(config, resultsProcessor);
     }
 
     @Singleton
@@ -110,7 +198,14 @@ final class AWSModule {
 
     @Singleton
     @Provides
-    static S3Results provideS3Results(CompressionWriter compression, KinesisProducerWriter kinesis, ThresholdMonitor thresholdMonitor) {
-        return new S3Results(compression, kinesis, thresholdMonitor);
+    static S3Results provideS3Results(CompressionWriter compression, KinesisWriter kinesis,
+                                      PartitionKeys partitionKeys, ThresholdMonitor thresholdMonitor) {
+        return new S3Results(compression, kinesis, partitionKeys, thresholdMonitor);
+    }
+
+    @Singleton
+    @Provides
+    static PartitionKeys providePartitionKeys(ConnectorConfig config) {
+        return new PartitionKeys(config);
     }
 }
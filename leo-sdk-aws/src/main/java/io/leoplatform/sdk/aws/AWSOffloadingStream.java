@@ -1,48 +1,276 @@
 package io.leoplatform.sdk.aws;
 
+import com.amazonaws.services.kinesis.model.Record;
 import io.leoplatform.sdk.ExecutorManager;
 import io.leoplatform.sdk.OffloadingStream;
 import io.leoplatform.sdk.StreamStats;
+import io.leoplatform.sdk.aws.kinesis.KinesisShards;
+import io.leoplatform.sdk.aws.kinesis.ShardReader;
+import io.leoplatform.sdk.aws.payload.BusJson;
+import io.leoplatform.sdk.aws.s3.S3RangeReader;
+import io.leoplatform.sdk.bus.OffloadingBot;
+import io.leoplatform.sdk.config.ConnectorConfig;
 import io.leoplatform.sdk.payload.EntityPayload;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import javax.json.JsonObject;
+import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Reads the bot's source queue from the bus. The Kinesis shards are split between <code>Offload.Readers</code>
+ * readers (default 4), which run in parallel and each poll their own shards in turn. A reader waits
+ * <code>Offload.IdleWait</code> milliseconds once all of its shards are caught up.
+ * <p>
+ * Records hold gzipped events, or pointers to the S3 files events were stored in. Only the pointed-to file's
+ * segments for the source queue are fetched, with ranged GETs at their gzip offsets. Events for other queues are
+ * skipped. Events that cannot be read, including those in a segment that could not be fetched, are counted as
+ * failures in the stream's stats.
+ * <p>
+ * {@link #offload()} starts the readers on first use and returns a lazily evaluated stream. Readers hand events
+ * over through a buffer of at most <code>Offload.BufferCapacity</code> events, so they stop reading while the
+ * stream's consumer falls behind. Events keep their order within a shard. The stream ends once {@link #end()} is
+ * called, or every shard is closed, and the buffered events have been consumed. Each reader holds one executor
+ * thread until then.
+ */
 @Singleton
 public final class AWSOffloadingStream implements OffloadingStream {
     private static final Logger log = LoggerFactory.getLogger(AWSOffloadingStream.class);
 
+    private static final long POLL_MILLIS = 100L;
+
+    private final String queue;
+    private final int readerCount;
+    private final long idleWait;
     private final ExecutorManager executorManager;
+    private final KinesisShards shards;
+    private final S3RangeReader s3;
+    private final BlockingQueue<EntityPayload> buffer;
+    private final List<CompletableFuture<Void>> readers = new ArrayList<>();
     private final AtomicBoolean streaming;
+    private volatile CompletableFuture<Void> readersDone;
+    private final AtomicLong successes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final Instant start = Instant.now();
 
     @Inject
-    public AWSOffloadingStream(ExecutorManager executorManager) {
+    public AWSOffloadingStream(ConnectorConfig config, ExecutorManager executorManager, OffloadingBot bot,
+                               KinesisShards shards, S3RangeReader s3) {
+        this.queue = bot.source().name();
+        this.readerCount = Math.max(1, config.intValueOrElse("Offload.Readers", 4));
+        this.idleWait = config.longValueOrElse("Offload.IdleWait", 1_000L);
         this.executorManager = executorManager;
+        this.shards = shards;
+        this.s3 = s3;
+        this.buffer = new ArrayBlockingQueue<>(config.intValueOrElse("Offload.BufferCapacity", 10_000));
         this.streaming = new AtomicBoolean(true);
     }
 
     @Override
     public Stream<EntityPayload> offload() {
-        return Stream.empty();
+        if (!streaming.get()) {
+            log.warn("Attempt to offload from a closed stream");
+            return Stream.empty();
+        }
+        synchronized (readers) {
+            if (readersDone == null) {
+                startReaders();
+                readersDone = CompletableFuture.allOf(readers.toArray(new CompletableFuture<?>[0]));
+            }
+        }
+        return StreamSupport.stream(new BufferSpliterator(), false);
     }
 
     @Override
     public CompletableFuture<StreamStats> end() {
         if (streaming.getAndSet(false)) {
             log.info("Stopping offload stream");
-            return null;
+            return CompletableFuture.supplyAsync(() -> {
+                readersDone().join();
+                shards.end();
+                s3.end();
+                executorManager.end();
+                return getStats();
+            });
         } else {
             return noStats();
         }
     }
 
+    private void startReaders() {
+        List<ShardReader> all = shards.readers();
+        int count = Math.min(readerCount, all.size());
+        IntStream.range(0, count)
+                .mapToObj(r -> IntStream.range(0, all.size())
+                        .filter(i -> i % count == r)
+                        .mapToObj(all::get)
+                        .collect(toList()))
+                .map(owned -> CompletableFuture.runAsync(() -> read(owned), executorManager.get()))
+                .forEach(readers::add);
+        log.info("Offloading {} queue from {} shards with {} readers", queue, all.size(), count);
+    }
+
+    private void read(List<ShardReader> owned) {
+        while (streaming.get() && !Thread.currentThread().isInterrupted() && !owned.stream().allMatch(ShardReader::closed)) {
+            boolean idle = true;
+            for (ShardReader shard : owned) {
+                if (!streaming.get()) {
+                    return;
+                }
+                List<Record> records = poll(shard);
+                records.forEach(this::decode);
+                idle &= records.isEmpty() || shard.caughtUp();
+            }
+            if (idle) {
+                pause();
+            }
+        }
+    }
+
+    private List<Record> poll(ShardReader shard) {
+        try {
+            return shard.poll();
+        } catch (RuntimeException e) {
+            log.warn("Could not read shard {}: {}", shard.shardId(), e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    private void decode(Record record) {
+        try {
+            BusJson.forEachLine(toBytes(record.getData()), this::event);
+        } catch (RuntimeException e) {
+            failures.incrementAndGet();
+            log.warn("Skipping unreadable record {}: {}", record.getSequenceNumber(), e.getMessage());
+        }
+    }
+
+    /**
+     * Buffers an event, or the events a pointer refers to. Each event that cannot be read or fetched is counted
+     * as a failure.
+     */
+    private void event(JsonObject json) {
+        try {
+            if (BusJson.isPointer(json)) {
+                failures.addAndGet(s3.read(BusJson.toPointer(json), queue, range -> BusJson.forEachLine(range, this::event)));
+            } else {
+                add(BusJson.toEntity(json));
+            }
+        } catch (RuntimeException e) {
+            failures.incrementAndGet();
+            log.warn("Skipping unreadable event: {}", e.getMessage());
+        }
+    }
+
+    private void add(EntityPayload entity) {
+        if (!queue.equals(entity.getEvent())) {
+            return;
+        }
+        try {
+            while (streaming.get()) {
+                if (buffer.offer(entity, POLL_MILLIS, MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(idleWait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return Completes once every reader has stopped, or at once if the readers were never started
+     */
+    private CompletableFuture<Void> readersDone() {
+        return Optional.ofNullable(readersDone).orElse(CompletableFuture.completedFuture(null));
+    }
+
+    private static byte[] toBytes(ByteBuffer data) {
+        byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Takes events from the buffer as the stream is consumed, waiting while readers are still adding them.
+     */
+    private final class BufferSpliterator extends Spliterators.AbstractSpliterator<EntityPayload> {
+        private BufferSpliterator() {
+            super(Long.MAX_VALUE, Spliterator.NONNULL);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super EntityPayload> action) {
+            try {
+                EntityPayload next = buffer.poll(POLL_MILLIS, MILLISECONDS);
+                while (next == null) {
+                    if (!streaming.get() || readersDone().isDone()) {
+                        next = buffer.poll();
+                        if (next == null) {
+                            return false;
+                        }
+                    } else {
+                        next = buffer.poll(POLL_MILLIS, MILLISECONDS);
+                    }
+                }
+                successes.incrementAndGet();
+                action.accept(next);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    private StreamStats getStats() {
+        return new StreamStats() {
+            @Override
+            public Long successes() {
+                return successes.get();
+            }
+
+            @Override
+            public Long failures() {
+                return failures.get();
+            }
+
+            @Override
+            public Duration totalTime() {
+                return Duration.between(start, Instant.now());
+            }
+        };
+    }
+
     private CompletableFuture<StreamStats> noStats() {
         return CompletableFuture.completedFuture(new StreamStats() {
             @Override
@@ -6,8 +6,8 @@ import io.leoplatform.sdk.ExecutorManager;
 import io.leoplatform.sdk.LoadingStream;
 import io.leoplatform.sdk.SDKModule;
 import io.leoplatform.sdk.SDKPlatform;
-import io.leoplatform.sdk.aws.kinesis.KinesisProducerWriter;
 import io.leoplatform.sdk.aws.kinesis.KinesisResults;
+import io.leoplatform.sdk.aws.kinesis.KinesisWriter;
 import io.leoplatform.sdk.changes.PayloadWriter;
 import io.leoplatform.sdk.payload.ThresholdMonitor;
 
@@ -32,7 +32,9 @@ public interface AWSPlatform extends SDKPlatform {
 
     ThresholdMonitor thresholdMonitor();
 
-    KinesisProducerWriter kinesisWrite();
+    KinesisWriter kinesisWrite();
 
     KinesisResults kinesisResults();
+
+    RouteStats routeStats();
 }
@@ -0,0 +1,267 @@
+package io.leoplatform.sdk.aws;
+
+import io.leoplatform.sdk.AsyncWorkQueue;
+import io.leoplatform.sdk.ExecutorManager;
+import io.leoplatform.sdk.aws.payload.PayloadSizeEstimator;
+import io.leoplatform.sdk.aws.wal.WriteAheadLog;
+import io.leoplatform.sdk.config.ConnectorConfig;
+import io.leoplatform.sdk.payload.EventPayload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Applies the configured {@link BackpressurePolicy} to payloads entering the loading pipeline. Every admitted
+ * payload is counted by the {@link FlowGate} until its destination queue reports it delivered, and is recorded
+ * in the {@link WriteAheadLog} when one is enabled.
+ * <p>
+ * Spilled payloads are kept in <code>Backpressure.SpillDirectory</code> rather than the write-ahead log, and are
+ * only logged once they are replayed into the pipeline. The spill files stand in for the log until then: each
+ * spill is flushed to its file before returning, and files left by an earlier process are replayed on startup.
+ * <p>
+ * Offers parked under the blocking policy are tracked until they are admitted. {@link #drain()} waits for them
+ * while the pipeline is still delivering, and any left when the pipeline closes are failed rather than dropped.
+ */
+@Singleton
+public final class AdmissionControl {
+    private static final Logger log = LoggerFactory.getLogger(AdmissionControl.class);
+
+    private final AsyncWorkQueue transferProxy;
+    private final ExecutorManager executorManager;
+    private final FlowGate flowGate;
+    private final WriteAheadLog wal;
+    private final BackpressurePolicy policy;
+    private final SpillBuffer spill;
+    private final PayloadSizeEstimator sizeEstimator = new PayloadSizeEstimator();
+    private final AtomicBoolean replaying = new AtomicBoolean(false);
+    private final AtomicLong replayFailures = new AtomicLong();
+    private final Set<CompletableFuture<Void>> parked = ConcurrentHashMap.newKeySet();
+    private final Lock lock = new ReentrantLock();
+    private final Condition replayEnded = lock.newCondition();
+
+    @Inject
+    public AdmissionControl(ConnectorConfig config, @Named("Proxy") AsyncWorkQueue transferProxy,
+                            ExecutorManager executorManager, FlowGate flowGate, WriteAheadLog wal) {
+        this.transferProxy = transferProxy;
+        this.executorManager = executorManager;
+        this.flowGate = flowGate;
+        this.wal = wal;
+        this.policy = BackpressurePolicy.fromName(config.valueOrElse("Backpressure.Policy", "Block"));
+        this.spill = new SpillBuffer(Paths.get(config.valueOrElse("Backpressure.SpillDirectory",
+                Paths.get(System.getProperty("java.io.tmpdir"), "leo-spill").toString())));
+        if (wal.enabled()) {
+            CompletableFuture.runAsync(() -> wal.replay(this::readmit), executorManager.get());
+        }
+        if (!spill.isEmpty()) {
+            scheduleReplay();
+        }
+    }
+
+    /**
+     * Admits a payload, waiting, failing or spilling to disk if the pipeline is full.
+     *
+     * @throws RejectedExecutionException if the pipeline is full and the policy is fail-fast
+     */
+    void admit(EventPayload payload) {
+        long bytes = sizeEstimator.estimate(payload);
+        switch (policy) {
+            case FAIL_FAST:
+                if (!flowGate.tryAcquire(payload.destination(), bytes)) {
+                    throw new RejectedExecutionException("Loading pipeline is full");
+                }
+                break;
+            case SPILL:
+                if (!spill.isEmpty() || !flowGate.tryAcquire(payload.destination(), bytes)) {
+                    spill.append(payload);
+                    scheduleReplay();
+                    return;
+                }
+                break;
+            default:
+                acquire(payload.destination(), bytes);
+        }
+        enqueue(payload);
+    }
+
+    /**
+     * Admits a payload without blocking the caller. When the pipeline is full under the blocking policy, the
+     * payload is admitted once the pipeline drains. Payloads waiting together are not admitted in any
+     * guaranteed order.
+     *
+     * @return A stage completed when the payload has entered the pipeline, or exceptionally if it was rejected
+     */
+    CompletionStage<Void> offer(EventPayload payload) {
+        if (policy != BackpressurePolicy.BLOCK) {
+            try {
+                admit(payload);
+                return CompletableFuture.completedFuture(null);
+            } catch (RuntimeException e) {
+                CompletableFuture<Void> rejected = new CompletableFuture<>();
+                rejected.completeExceptionally(e);
+                return rejected;
+            }
+        }
+        long bytes = sizeEstimator.estimate(payload);
+        if (flowGate.tryAcquire(payload.destination(), bytes)) {
+            enqueue(payload);
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> admitted = new CompletableFuture<>();
+        parked.add(admitted);
+        admitted.whenComplete((v, t) -> parked.remove(admitted));
+        park(payload, bytes, admitted);
+        return admitted;
+    }
+
+    private void park(EventPayload payload, long bytes, CompletableFuture<Void> admitted) {
+        flowGate.whenOpen(payload.destination())
+                .thenRunAsync(() -> retry(payload, bytes, admitted), executorManager.get())
+                .whenComplete((v, t) -> {
+                    if (t != null) {
+                        admitted.completeExceptionally(t);
+                    }
+                });
+    }
+
+    private void retry(EventPayload payload, long bytes, CompletableFuture<Void> admitted) {
+        if (admitted.isDone()) {
+            return;
+        }
+        if (flowGate.tryAcquire(payload.destination(), bytes)) {
+            enqueue(payload);
+            admitted.complete(null);
+        } else {
+            park(payload, bytes, admitted);
+        }
+    }
+
+    /**
+     * Replays anything still spilled to disk into the pipeline, then waits for parked offers to be admitted. If a
+     * replay fails, the payloads it could not replay are left on disk.
+     */
+    void drain() {
+        replaySpill();
+        awaitParked();
+    }
+
+    private void replaySpill() {
+        if (!spill.isEmpty()) {
+            log.info("Replaying {} spilled payloads before stopping", spill.size());
+        }
+        long failures = replayFailures.get();
+        lock.lock();
+        try {
+            while (!spill.isEmpty() || replaying.get()) {
+                if (replayFailures.get() != failures) {
+                    log.warn("Stopped with {} spilled payloads not replayed", spill.size());
+                    return;
+                }
+                scheduleReplay();
+                replayEnded.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Stopped with {} spilled payloads not replayed", spill.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitParked() {
+        while (!parked.isEmpty()) {
+            log.info("Waiting for {} parked payloads to be admitted", parked.size());
+            try {
+                CompletableFuture.allOf(parked.toArray(new CompletableFuture<?>[0]))
+                        .get();
+            } catch (ExecutionException e) {
+                log.warn("Could not admit a parked payload", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Stopped with {} parked payloads not admitted", parked.size());
+                return;
+            }
+        }
+    }
+
+    private void scheduleReplay() {
+        if (replaying.compareAndSet(false, true)) {
+            CompletableFuture.runAsync(this::replay, executorManager.get());
+        }
+    }
+
+    /**
+     * A failed replay is not retried until the next payload is spilled, or the pipeline drains.
+     */
+    private void replay() {
+        boolean failed = false;
+        try {
+            while (!spill.isEmpty()) {
+                spill.replayNext(this::readmit);
+            }
+        } catch (RuntimeException e) {
+            failed = true;
+            replayFailures.incrementAndGet();
+            log.error("Could not replay spilled payloads", e);
+        } finally {
+            replaying.set(false);
+            signalReplayEnded();
+        }
+        if (!failed && !spill.isEmpty()) {
+            scheduleReplay();
+        }
+    }
+
+    private void signalReplayEnded() {
+        lock.lock();
+        try {
+            replayEnded.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Fails any offers still parked, then syncs and closes the write-ahead log once the pipeline has stopped.
+     */
+    void close() {
+        if (!parked.isEmpty()) {
+            log.warn("Rejecting {} parked payloads on close", parked.size());
+            IllegalStateException stopped = new IllegalStateException("Loading stream stopped before the payload was admitted");
+            parked.forEach(admitted -> admitted.completeExceptionally(stopped));
+        }
+        wal.end();
+    }
+
+    private void readmit(EventPayload payload) {
+        acquire(payload.destination(), sizeEstimator.estimate(payload));
+        enqueue(payload);
+    }
+
+    private void enqueue(EventPayload payload) {
+        transferProxy.addEntity(wal.append(payload));
+    }
+
+    private void acquire(String destination, long bytes) {
+        try {
+            flowGate.acquire(destination, bytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for loading capacity", e);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package io.leoplatform.sdk.aws;
+
+import java.util.stream.Stream;
+
+/**
+ * What a loader does when the pipeline is above its high watermark.
+ */
+public enum BackpressurePolicy {
+    /**
+     * Wait until enough in-flight work completes to fall below the low watermark
+     */
+    BLOCK("Block"),
+    /**
+     * Reject the payload with a {@link java.util.concurrent.RejectedExecutionException}
+     */
+    FAIL_FAST("FailFast"),
+    /**
+     * Write payloads to local disk and replay them, in order, once the pipeline drains
+     */
+    SPILL("Spill");
+
+    private final String policy;
+
+    BackpressurePolicy(String policy) {
+        this.policy = policy;
+    }
+
+    public String policy() {
+        return policy;
+    }
+
+    public static BackpressurePolicy fromName(String policy) {
+        return Stream.of(values())
+                .filter(p -> p.policy().equalsIgnoreCase(policy))
+                .findAny()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown backpressure policy: " + policy));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{policy='%s'}", name(), policy);
+    }
+}
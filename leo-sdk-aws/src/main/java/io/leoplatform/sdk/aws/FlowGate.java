@@ -0,0 +1,248 @@
+package io.leoplatform.sdk.aws;
+
+import io.leoplatform.sdk.config.ConnectorConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Counts records and estimated bytes admitted to the loading pipeline but not yet delivered. Once either
+ * count reaches its high watermark the gate closes, and it stays closed until both fall to their low
+ * watermarks, so loaders resume in bursts rather than one record at a time.
+ * <p>
+ * Records are also counted per destination queue. While another queue has records in flight, a queue holding
+ * <code>Backpressure.QueueShare</code> (default 0.5) of either high watermark is refused even though the gate is
+ * open, so one hot queue cannot fill the pipeline and keep the others out. A single busy queue still has the
+ * whole pipeline to itself.
+ * <p>
+ * Admission is a few atomic adds. Deliveries release records in batches; bytes are released in proportion to
+ * the queue's records being released, since individual payload estimates are not carried through compression.
+ */
+@Singleton
+public final class FlowGate {
+    private static final Logger log = LoggerFactory.getLogger(FlowGate.class);
+
+    private final long highRecords;
+    private final long lowRecords;
+    private final long highBytes;
+    private final long lowBytes;
+    private final long shareRecords;
+    private final long shareBytes;
+    private final String defaultQueue;
+
+    private final ConcurrentMap<String, Share> shares = new ConcurrentHashMap<>();
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final Lock lock = new ReentrantLock();
+    private final Condition opened = lock.newCondition();
+    private final List<CompletableFuture<Void>> waiters = new LinkedList<>();
+    private volatile boolean closed = false;
+
+    @Inject
+    public FlowGate(ConnectorConfig config) {
+        this(config, "");
+    }
+
+    /**
+     * @param defaultQueue The queue payloads without a destination of their own are delivered to
+     */
+    public FlowGate(ConnectorConfig config, String defaultQueue) {
+        highRecords = config.longValueOrElse("Backpressure.HighRecords", 50_000L);
+        lowRecords = config.longValueOrElse("Backpressure.LowRecords", highRecords * 3 / 4);
+        highBytes = config.longValueOrElse("Backpressure.HighBytes", 67_108_864L);
+        lowBytes = config.longValueOrElse("Backpressure.LowBytes", highBytes * 3 / 4);
+        if (lowRecords > highRecords || lowBytes > highBytes || highRecords < 1 || highBytes < 1) {
+            throw new IllegalArgumentException("Backpressure low watermarks must be positive and not above the high watermarks");
+        }
+        String share = config.valueOrElse("Backpressure.QueueShare", "0.5");
+        double queueShare = Double.parseDouble(share);
+        if (queueShare <= 0.0 || queueShare > 1.0) {
+            throw new IllegalArgumentException("Backpressure.QueueShare must be above 0 and at most 1: " + share);
+        }
+        shareRecords = Math.max(1L, (long) (highRecords * queueShare));
+        shareBytes = Math.max(1L, (long) (highBytes * queueShare));
+        this.defaultQueue = defaultQueue;
+    }
+
+    /**
+     * Admits one record for a destination queue without waiting.
+     *
+     * @param destination The payload's destination, or null for the default queue
+     * @return false if the gate is closed, or the queue holds its share while others are waiting on delivery
+     */
+    public boolean tryAcquire(String destination, long estimatedBytes) {
+        if (closed) {
+            return false;
+        }
+        Share share = share(destination);
+        if (overShare(share)) {
+            return false;
+        }
+        share.records.incrementAndGet();
+        share.bytes.addAndGet(estimatedBytes);
+        long r = records.incrementAndGet();
+        long b = bytes.addAndGet(estimatedBytes);
+        if (r >= highRecords || b >= highBytes) {
+            close(r, b);
+        }
+        return true;
+    }
+
+    /**
+     * Counts work already inside the pipeline, such as uploads recovered after a restart, without waiting.
+     */
+    public void admit(String destination, long admitted, long estimatedBytes) {
+        Share share = share(destination);
+        share.records.addAndGet(admitted);
+        share.bytes.addAndGet(estimatedBytes);
+        long r = records.addAndGet(admitted);
+        long b = bytes.addAndGet(estimatedBytes);
+        if (r >= highRecords || b >= highBytes) {
+            close(r, b);
+        }
+    }
+
+    /**
+     * Admits one record, waiting while the gate is closed or the queue holds its share.
+     */
+    public void acquire(String destination, long estimatedBytes) throws InterruptedException {
+        Share share = share(destination);
+        while (!tryAcquire(destination, estimatedBytes)) {
+            lock.lockInterruptibly();
+            try {
+                while (closed || overShare(share)) {
+                    opened.await();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return A future completed once the gate may admit the queue's records, which may be immediately
+     */
+    public CompletableFuture<Void> whenOpen(String destination) {
+        Share share = share(destination);
+        lock.lock();
+        try {
+            if (!closed && !overShare(share)) {
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Void> waiter = new CompletableFuture<>();
+            waiters.add(waiter);
+            return waiter;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks a destination queue's records as delivered (or abandoned) downstream.
+     */
+    public void release(String destination, long delivered) {
+        if (delivered <= 0) {
+            return;
+        }
+        List<CompletableFuture<Void>> toComplete;
+        lock.lock();
+        try {
+            Share share = share(destination);
+            long queueRecords = share.records.get();
+            long r = records.get();
+            long b = bytes.get();
+            long released = queueRecords > 0 ? proportion(share.bytes.get(), delivered, queueRecords) : proportion(b, delivered, r);
+            share.records.addAndGet(-Math.min(delivered, queueRecords));
+            share.bytes.addAndGet(-Math.min(released, share.bytes.get()));
+            records.addAndGet(-Math.min(delivered, r));
+            bytes.addAndGet(-Math.min(released, b));
+            toComplete = openIfDrained();
+            if (!closed) {
+                // A queue waiting on its share may now be admitted
+                opened.signalAll();
+                toComplete.addAll(waiters);
+                waiters.clear();
+            }
+        } finally {
+            lock.unlock();
+        }
+        toComplete.forEach(w -> w.complete(null));
+    }
+
+    public long records() {
+        return records.get();
+    }
+
+    public long bytes() {
+        return bytes.get();
+    }
+
+    /**
+     * @return Records in flight to a destination queue
+     */
+    public long records(String destination) {
+        return share(destination).records.get();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private Share share(String destination) {
+        return shares.computeIfAbsent(Optional.ofNullable(destination).orElse(defaultQueue), d -> new Share());
+    }
+
+    private boolean overShare(Share share) {
+        long r = share.records.get();
+        return (r >= shareRecords || share.bytes.get() >= shareBytes) && records.get() > r;
+    }
+
+    private static long proportion(long bytes, long delivered, long records) {
+        return delivered >= records ? bytes : (long) ((double) bytes * delivered / records);
+    }
+
+    private void close(long r, long b) {
+        List<CompletableFuture<Void>> toComplete;
+        lock.lock();
+        try {
+            if (!closed) {
+                closed = true;
+                log.info("Loading paused at {} records and {} bytes in flight", r, b);
+            }
+            // A release may have drained the pipeline between the adds and taking the lock
+            toComplete = openIfDrained();
+        } finally {
+            lock.unlock();
+        }
+        toComplete.forEach(w -> w.complete(null));
+    }
+
+    private List<CompletableFuture<Void>> openIfDrained() {
+        List<CompletableFuture<Void>> toComplete = new LinkedList<>();
+        if (closed && records.get() <= lowRecords && bytes.get() <= lowBytes) {
+            closed = false;
+            opened.signalAll();
+            toComplete.addAll(waiters);
+            waiters.clear();
+            log.info("Loading resumed at {} records and {} bytes in flight", records.get(), bytes.get());
+        }
+        return toComplete;
+    }
+
+    private static final class Share {
+        private final AtomicLong records = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+    }
+}
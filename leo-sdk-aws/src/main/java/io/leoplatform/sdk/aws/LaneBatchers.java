@@ -0,0 +1,233 @@
+package io.leoplatform.sdk.aws;
+
+import io.leoplatform.sdk.payload.EventPayload;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * One {@link RingBatcher} per destination queue, all drained by a single consumer thread. Each queue fills its own
+ * ring, so producers for a hot queue wait on their own ring rather than on room the others need. The consumer
+ * takes at most one batch from each ready queue in turn, so a queue's batches never wait behind another queue's
+ * backlog.
+ * <p>
+ * Queues are added on their first payload. Their rings share one budget of slots: a new queue's ring takes half
+ * of what the other queues have left, and never less than one batch, so a single queue gets a large ring while
+ * many queues stay within roughly the budget. A queue that has been empty and received nothing for a while is
+ * evicted by the consumer and its slots returned to the budget; its next payload creates a new ring.
+ */
+public final class LaneBatchers {
+    private static final Duration IDLE_LANE = Duration.ofMinutes(1);
+
+    private final IntFunction<RingBatcher<EventPayload>> newLane;
+    private final int budget;
+    private final long idleNanos;
+    private final ConcurrentMap<String, Lane> lanes = new ConcurrentHashMap<>();
+    private int allocated = 0;
+
+    private volatile Thread consumer;
+    private volatile boolean open = true;
+
+    /**
+     * @param newLane Creates the batcher for a queue seen for the first time, given its share of the budget
+     * @param budget  Ring slots shared by all queues
+     */
+    public LaneBatchers(IntFunction<RingBatcher<EventPayload>> newLane, int budget) {
+        this(newLane, budget, IDLE_LANE);
+    }
+
+    LaneBatchers(IntFunction<RingBatcher<EventPayload>> newLane, int budget, Duration idleAfter) {
+        if (budget < 1) {
+            throw new IllegalArgumentException("Lane budget must be positive");
+        }
+        this.newLane = newLane;
+        this.budget = budget;
+        this.idleNanos = idleAfter.toNanos();
+    }
+
+    /**
+     * Adds a payload to its destination queue's batcher, waiting while that batcher is full.
+     *
+     * @return false if the batchers were closed before the payload could be added
+     */
+    public boolean offer(EventPayload payload) {
+        String destination = Objects.toString(payload.destination(), "");
+        while (true) {
+            Lane lane = lane(destination);
+            if (lane == null) {
+                return false;
+            }
+            // Announced before checking for eviction, so the consumer never evicts a ring with a write under way
+            lane.writers.incrementAndGet();
+            try {
+                if (!lane.retired) {
+                    return lane.ring.offer(payload);
+                }
+            } finally {
+                lane.writers.decrementAndGet();
+            }
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Parks the calling (consumer) thread until at least one queue has a batch to send.
+     *
+     * @return The queues with a batch ready, or none if the wait was interrupted or the batchers closed
+     */
+    public List<RingBatcher<EventPayload>> awaitBatches() {
+        Thread waiter = Thread.currentThread();
+        consumer = waiter;
+        while (open && !waiter.isInterrupted()) {
+            evictIdle();
+            List<RingBatcher<EventPayload>> all = lanes();
+            // Registered before checking, so a payload added after its lane was checked still wakes the consumer
+            all.forEach(lane -> lane.consumerWaiting(waiter));
+            List<RingBatcher<EventPayload>> ready = new ArrayList<>();
+            long parkNanos = Long.MAX_VALUE;
+            for (RingBatcher<EventPayload> lane : all) {
+                long due = lane.nanosToBatch();
+                if (due == 0L) {
+                    ready.add(lane);
+                } else {
+                    parkNanos = Math.min(parkNanos, due);
+                }
+            }
+            if (ready.isEmpty() && open && lanes.size() == all.size()) {
+                LockSupport.parkNanos(this, parkNanos);
+            }
+            all.forEach(RingBatcher::consumerAwake);
+            if (!ready.isEmpty()) {
+                return ready;
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * @return Every queue's batcher, including those with nothing pending
+     */
+    public List<RingBatcher<EventPayload>> lanes() {
+        return lanes.values().stream()
+                .map(lane -> lane.ring)
+                .collect(toList());
+    }
+
+    /**
+     * Asks the consumer to send whatever every queue has pending without waiting for full batches.
+     */
+    public void flush() {
+        lanes().forEach(RingBatcher::flush);
+        wakeConsumer();
+    }
+
+    /**
+     * Rejects further payloads and releases a parked consumer. Payloads already added remain available to each
+     * queue's {@link RingBatcher#drain()}.
+     */
+    public void close() {
+        synchronized (this) {
+            open = false;
+        }
+        lanes().forEach(RingBatcher::close);
+        wakeConsumer();
+    }
+
+    public long size() {
+        return lanes().stream()
+                .mapToLong(RingBatcher::size)
+                .sum();
+    }
+
+    public boolean isEmpty() {
+        return lanes().stream().allMatch(RingBatcher::isEmpty);
+    }
+
+    /**
+     * @return Ring slots held by the current queues
+     */
+    synchronized int allocated() {
+        return allocated;
+    }
+
+    /**
+     * Lanes are only created while open, so none is left out of the consumer's final drain.
+     */
+    private Lane lane(String destination) {
+        Lane lane = lanes.get(destination);
+        if (lane != null) {
+            return lane;
+        }
+        synchronized (this) {
+            if (!open) {
+                return null;
+            }
+            lane = lanes.get(destination);
+            if (lane == null) {
+                RingBatcher<EventPayload> ring = newLane.apply(Math.max(1, (budget - allocated) / 2));
+                allocated += ring.capacity();
+                lane = new Lane(ring);
+                lanes.put(destination, lane);
+            }
+        }
+        wakeConsumer();
+        return lane;
+    }
+
+    /**
+     * Run by the consumer, which is the only thread that drains, so an empty ring stays empty unless a producer
+     * is writing to it.
+     */
+    private void evictIdle() {
+        long now = System.nanoTime();
+        for (Map.Entry<String, Lane> entry : lanes.entrySet()) {
+            Lane lane = entry.getValue();
+            long offered = lane.ring.offered();
+            if (offered != lane.seenOffered || !lane.ring.isEmpty()) {
+                lane.seenOffered = offered;
+                lane.activeAt = now;
+            } else if (now - lane.activeAt >= idleNanos) {
+                lane.retired = true;
+                if (lane.writers.get() == 0 && lane.ring.isEmpty()) {
+                    synchronized (this) {
+                        lanes.remove(entry.getKey(), lane);
+                        allocated -= lane.ring.capacity();
+                    }
+                } else {
+                    lane.retired = false;
+                    lane.activeAt = now;
+                }
+            }
+        }
+    }
+
+    private void wakeConsumer() {
+        Thread c = consumer;
+        if (c != null) {
+            LockSupport.unpark(c);
+        }
+    }
+
+    private static final class Lane {
+        private final RingBatcher<EventPayload> ring;
+        private final AtomicInteger writers = new AtomicInteger();
+        private volatile boolean retired = false;
+        // Only read and written by the consumer
+        private long seenOffered = 0L;
+        private long activeAt = System.nanoTime();
+
+        private Lane(RingBatcher<EventPayload> ring) {
+            this.ring = ring;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package io.leoplatform.sdk.aws;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records and compressed bytes delivered to one bus queue, over Kinesis and S3 together.
+ */
+public final class QueueStats {
+    private final String queue;
+    private final LongAdder records = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+
+    QueueStats(String queue) {
+        this.queue = queue;
+    }
+
+    void add(long records, long bytes) {
+        this.records.add(records);
+        this.bytes.add(bytes);
+    }
+
+    public String queue() {
+        return queue;
+    }
+
+    public long records() {
+        return records.sum();
+    }
+
+    public long bytes() {
+        return bytes.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("QueueStats{queue='%s', records=%d, bytes=%d}", queue, records(), bytes());
+    }
+}
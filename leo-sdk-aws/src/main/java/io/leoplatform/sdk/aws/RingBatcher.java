@@ -0,0 +1,277 @@
+package io.leoplatform.sdk.aws;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
+
+/**
+ * Bounded multi-producer, single-consumer ring buffer that hands out batches. Producers claim a slot with a
+ * single compare-and-set on the tail and publish it through a per-slot sequence number (Vyukov's bounded
+ * queue), so {@link #offer(Object)} takes no locks. A producer only wakes the consumer when the pending
+ * records or bytes reach a batch, or when the ring fills.
+ * <p>
+ * The consumer parks in {@link #awaitBatch()} until a full batch by records or bytes is pending, the oldest
+ * pending item reaches the maximum age, a flush is requested or the batcher is closed. {@link #drain()}
+ * removes at most one batch. Draining is serialized by a lock that producers never touch, so a final drain
+ * from a stopping thread cannot race the consumer thread.
+ */
+public final class RingBatcher<T> {
+    private static final long FULL_BACKOFF_NANOS = 50_000L;
+
+    private final int mask;
+    private final Object[] items;
+    private final long[] weights;
+    private final long[] enqueuedAt;
+    private final AtomicLongArray sequence;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private final LongAdder pendingBytes = new LongAdder();
+    private final Lock drainLock = new ReentrantLock();
+
+    private final int maxRecords;
+    private final long maxBytes;
+    private final long maxAgeNanos;
+    private final ToLongFunction<T> weigher;
+
+    private volatile Thread consumer;
+    private volatile boolean waiting = false;
+    private volatile boolean flushRequested = false;
+    private volatile boolean open = true;
+    private volatile long oldestPending = 0L;
+
+    public RingBatcher(int capacity, int maxRecords, Duration maxAge) {
+        this(capacity, maxRecords, Long.MAX_VALUE, maxAge, item -> 0L);
+    }
+
+    /**
+     * @param capacity   Slots in the ring, rounded up to a power of two and to at least one batch
+     * @param maxRecords Most items in one batch
+     * @param maxBytes   Most weighed bytes in one batch; a single heavier item is still delivered alone
+     * @param maxAge     Longest an item waits for a batch to fill
+     * @param weigher    Estimated size of an item
+     */
+    public RingBatcher(int capacity, int maxRecords, long maxBytes, Duration maxAge, ToLongFunction<T> weigher) {
+        if (capacity < 1 || maxRecords < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("Ring capacity and batch limits must be positive");
+        }
+        int size = 1;
+        while (size < Math.max(capacity, maxRecords)) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.items = new Object[size];
+        this.weights = new long[size];
+        this.enqueuedAt = new long[size];
+        this.sequence = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequence.set(i, i);
+        }
+        this.maxRecords = maxRecords;
+        this.maxBytes = maxBytes;
+        this.maxAgeNanos = maxAge.toNanos();
+        this.weigher = weigher;
+    }
+
+    /**
+     * Adds an item, waiting for the consumer to make room when the ring is full.
+     *
+     * @return false if the batcher was closed before the item could be added
+     */
+    public boolean offer(T item) {
+        if (!open) {
+            return false;
+        }
+        long weight = weigher.applyAsLong(item);
+        long pos;
+        while ((pos = claim()) < 0) {
+            if (!open) {
+                return false;
+            }
+            wakeConsumer();
+            LockSupport.parkNanos(this, FULL_BACKOFF_NANOS);
+        }
+        int index = (int) pos & mask;
+        items[index] = item;
+        weights[index] = weight;
+        enqueuedAt[index] = System.nanoTime();
+        // Ordered store publishes the item, weight and time to the consumer's volatile read of the sequence
+        sequence.lazySet(index, pos + 1);
+        if (weight != 0) {
+            pendingBytes.add(weight);
+        }
+
+        if (waiting && batchReady(pos + 1 - head.get(), weight)) {
+            wakeConsumer();
+        }
+        return true;
+    }
+
+    /**
+     * Removes up to one batch of published items in the order they were claimed.
+     */
+    public List<T> drain() {
+        drainLock.lock();
+        try {
+            long pos = head.get();
+            List<T> batch = new ArrayList<>((int) Math.min(maxRecords, Math.max(0L, tail.get() - pos)));
+            long bytes = 0L;
+            while (batch.size() < maxRecords) {
+                int index = (int) pos & mask;
+                if (sequence.get(index) != pos + 1) {
+                    break;
+                }
+                long weight = weights[index];
+                if (!batch.isEmpty() && bytes + weight > maxBytes) {
+                    break;
+                }
+                @SuppressWarnings("unchecked")
+                T item = (T) items[index];
+                items[index] = null;
+                batch.add(item);
+                bytes += weight;
+                sequence.lazySet(index, pos + mask + 1);
+                head.set(++pos);
+            }
+            if (bytes != 0) {
+                pendingBytes.add(-bytes);
+            }
+            // Items left behind keep their own age; an unpublished head is timed when the consumer next looks
+            int index = (int) pos & mask;
+            oldestPending = sequence.get(index) == pos + 1 ? enqueuedAt[index] : 0L;
+            return batch;
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    /**
+     * Parks the calling (consumer) thread until a batch should be sent.
+     *
+     * @return true if a batch is ready, false if the wait was interrupted or the batcher closed
+     */
+    public boolean awaitBatch() {
+        consumer = Thread.currentThread();
+        while (open && !Thread.currentThread().isInterrupted()) {
+            long pending = size();
+            long parkNanos = nanosToBatch(pending);
+            if (parkNanos == 0L) {
+                return true;
+            }
+            waiting = true;
+            if (size() == pending && !flushRequested && open) {
+                LockSupport.parkNanos(this, parkNanos);
+            }
+            waiting = false;
+        }
+        return false;
+    }
+
+    /**
+     * For a consumer waiting on several batchers at once: wake the thread as {@link #awaitBatch()} would, until
+     * {@link #consumerAwake()}.
+     */
+    void consumerWaiting(Thread waiter) {
+        consumer = waiter;
+        waiting = true;
+    }
+
+    void consumerAwake() {
+        waiting = false;
+    }
+
+    /**
+     * @return 0 if a batch should be sent now, otherwise how long the consumer may wait before one is due
+     */
+    long nanosToBatch() {
+        return nanosToBatch(size());
+    }
+
+    private long nanosToBatch(long pending) {
+        if (flushRequested || pending >= maxRecords || pendingBytes.sum() >= maxBytes) {
+            flushRequested = false;
+            return 0L;
+        }
+        if (pending == 0) {
+            return Math.max(1L, maxAgeNanos);
+        }
+        long now = System.nanoTime();
+        if (oldestPending == 0L) {
+            oldestPending = now;
+        }
+        long age = now - oldestPending;
+        return age >= maxAgeNanos ? 0L : maxAgeNanos - age;
+    }
+
+    /**
+     * Asks the consumer to send whatever is pending without waiting for a full batch.
+     */
+    public void flush() {
+        flushRequested = true;
+        wakeConsumer();
+    }
+
+    /**
+     * Rejects further items and releases a parked consumer. Items already added remain available to
+     * {@link #drain()}.
+     */
+    public void close() {
+        open = false;
+        wakeConsumer();
+    }
+
+    public long size() {
+        return Math.max(0L, tail.get() - head.get());
+    }
+
+    /**
+     * @return Slots in the ring
+     */
+    int capacity() {
+        return items.length;
+    }
+
+    /**
+     * @return Items claimed since the ring was created
+     */
+    long offered() {
+        return tail.get();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    private long claim() {
+        while (true) {
+            long pos = tail.get();
+            long available = sequence.get((int) pos & mask) - pos;
+            if (available == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    return pos;
+                }
+            } else if (available < 0) {
+                return -1L;
+            }
+        }
+    }
+
+    private boolean batchReady(long pending, long weight) {
+        // Only weighed items can carry the pending bytes over the limit, so unweighed offers skip the sum
+        return pending >= maxRecords || pending == 1
+                || (weight != 0 && pendingBytes.sum() >= maxBytes);
+    }
+
+    private void wakeConsumer() {
+        Thread c = consumer;
+        if (c != null) {
+            LockSupport.unpark(c);
+        }
+    }
+}
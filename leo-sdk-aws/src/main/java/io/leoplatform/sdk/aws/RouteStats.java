@@ -0,0 +1,37 @@
+package io.leoplatform.sdk.aws;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Delivery counts for each bus queue a loading stream routes to. Queues are added the first time a payload
+ * is delivered to them.
+ */
+@Singleton
+public final class RouteStats {
+    private final ConcurrentMap<String, QueueStats> queues = new ConcurrentHashMap<>();
+
+    @Inject
+    public RouteStats() {
+    }
+
+    public void delivered(String queue, long records, long bytes) {
+        queues.computeIfAbsent(queue, QueueStats::new).add(records, bytes);
+    }
+
+    public QueueStats queue(String queue) {
+        return queues.getOrDefault(queue, new QueueStats(queue));
+    }
+
+    /**
+     * @return Every queue delivered to so far, by name
+     */
+    public Map<String, QueueStats> queues() {
+        return Collections.unmodifiableMap(new TreeMap<>(queues));
+    }
+}
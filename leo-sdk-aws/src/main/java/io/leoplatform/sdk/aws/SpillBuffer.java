@@ -0,0 +1,213 @@
+package io.leoplatform.sdk.aws;
+
+import io.leoplatform.sdk.aws.payload.EventPayloadCodec;
+import io.leoplatform.sdk.payload.EventPayload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A first-in, first-out queue of payloads on local disk, one JSON document per line. Payloads are appended
+ * to an open segment file; a replay closes that segment and reads it back while new payloads go to the next.
+ * <p>
+ * Each append is flushed to the file before it returns, so spilled payloads survive the process dying, though
+ * not the host. Segments left in the directory by an earlier process are found on startup and replayed first,
+ * in the order they were written. A payload is only deleted from disk once its whole segment has been replayed,
+ * so a restart during a replay can load some of that segment twice.
+ */
+final class SpillBuffer {
+    private static final Logger log = LoggerFactory.getLogger(SpillBuffer.class);
+
+    private static final String PREFIX = "leo-spill-";
+    private static final String SUFFIX = ".jsonl";
+
+    private final Path directory;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final AtomicLong pending = new AtomicLong();
+    private final Lock lock = new ReentrantLock();
+    private Segment writing;
+    private BufferedWriter writer;
+    private int nextId = 0;
+
+    SpillBuffer(Path directory) {
+        this.directory = directory;
+        findSegments();
+    }
+
+    void append(EventPayload payload) {
+        String line = EventPayloadCodec.toJson(payload);
+        lock.lock();
+        try {
+            if (writer == null) {
+                Files.createDirectories(directory);
+                writing = new Segment(Files.createFile(directory.resolve(String.format("%s%06d%s", PREFIX, nextId++, SUFFIX))));
+                writer = Files.newBufferedWriter(writing.path, UTF_8);
+            }
+            writer.write(line);
+            writer.newLine();
+            writer.flush();
+            pending.incrementAndGet();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not spill payload to " + directory, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hands every payload in the oldest segment to the sink, then deletes the segment. Only one thread may
+     * replay at a time. If the sink fails, the segment is kept and the next replay resumes with the payload
+     * that failed. Lines that cannot be decoded are discarded.
+     */
+    void replayNext(Consumer<EventPayload> sink) {
+        Segment segment = nextSegment();
+        if (segment == null) {
+            return;
+        }
+        try (BufferedReader reader = reader(segment.path)) {
+            String line;
+            long position = 0;
+            while ((line = reader.readLine()) != null) {
+                if (position++ < segment.replayed) {
+                    continue;
+                }
+                EventPayload payload = decode(segment, line);
+                if (payload != null) {
+                    sink.accept(payload);
+                }
+                segment.replayed++;
+                pending.decrementAndGet();
+            }
+        } catch (IOException e) {
+            resume(segment);
+            throw new IllegalStateException("Could not read spilled payloads from " + segment.path, e);
+        } catch (RuntimeException e) {
+            resume(segment);
+            throw e;
+        }
+        delete(segment.path);
+    }
+
+    boolean isEmpty() {
+        return pending.get() == 0;
+    }
+
+    long size() {
+        return pending.get();
+    }
+
+    private Segment nextSegment() {
+        lock.lock();
+        try {
+            if (segments.isEmpty() && writer != null) {
+                writer.close();
+                segments.add(writing);
+                writer = null;
+            }
+            return segments.poll();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not close spill segment " + writing.path, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void resume(Segment segment) {
+        lock.lock();
+        try {
+            segments.addFirst(segment);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private EventPayload decode(Segment segment, String line) {
+        try {
+            return EventPayloadCodec.fromJson(line);
+        } catch (RuntimeException e) {
+            log.error("Discarded unreadable spilled payload from {}", segment.path, e);
+            return null;
+        }
+    }
+
+    private void findSegments() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        List<Path> paths = new ArrayList<>();
+        try {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+                files.forEach(paths::add);
+            }
+            paths.sort(Comparator.comparing(Path::toString));
+            for (Path path : paths) {
+                nextId = Math.max(nextId, segmentId(path) + 1);
+                segments.add(new Segment(path));
+                pending.addAndGet(lines(path));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read spill directory " + directory, e);
+        }
+        if (!paths.isEmpty()) {
+            log.info("Found {} spilled payloads to replay in {}", pending.get(), directory);
+        }
+    }
+
+    private static long lines(Path segment) throws IOException {
+        try (BufferedReader reader = reader(segment)) {
+            return reader.lines().count();
+        }
+    }
+
+    /**
+     * Malformed text, such as a line cut short when an earlier process died, is replaced rather than failing
+     * the read, so the line is discarded as unreadable.
+     */
+    private static BufferedReader reader(Path segment) throws IOException {
+        return new BufferedReader(new InputStreamReader(Files.newInputStream(segment), UTF_8));
+    }
+
+    private static int segmentId(Path path) {
+        String name = path.getFileName().toString();
+        try {
+            return Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private void delete(Path segment) {
+        try {
+            Files.deleteIfExists(segment);
+        } catch (IOException e) {
+            log.warn("Could not delete spill segment {}", segment);
+        }
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private long replayed;
+
+        private Segment(Path path) {
+            this.path = path;
+        }
+    }
+}
@@ -11,15 +11,38 @@ import org.slf4j.LoggerFactory;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Routes events to the work queue, or to the failover queue while the threshold monitor is in failover.
+ * <p>
+ * Each switch between the two starts a new epoch. Events are sent to the new epoch's queue as soon as the
+ * switch is seen, and the previous epoch's queue is flushed in the background, so producers never wait on a
+ * Kinesis flush or on S3 uploads to change routes. Background flushes run one at a time in epoch order on the
+ * proxy's own drain thread, so a slow flush never holds a shared executor thread.
+ * <p>
+ * Ordering: events keep their order within a queue, as before. There is no order across queues, so an event
+ * sent after a switch may be delivered before events from the previous epoch that are still being flushed.
+ * An event added while another thread makes the switch may still go to the previous epoch's queue; that
+ * queue delivers it with its next batch, and {@link #flush()} waits for it.
+ */
 @Singleton
 public final class TransferProxy implements AsyncWorkQueue {
     private static final Logger log = LoggerFactory.getLogger(TransferProxy.class);
 
     private final WorkQueues workQueues;
     private final ThresholdMonitor thresholdMonitor;
-    private final AtomicBoolean failover = new AtomicBoolean(false);
+    private final ExecutorService drainer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "transfer-proxy-drain");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Lock lock = new ReentrantLock();
+    private volatile Epoch epoch = new Epoch(0L, false);
+    private CompletableFuture<Void> drains = CompletableFuture.completedFuture(null);
 
     @Inject
     public TransferProxy(WorkQueues workQueues, ThresholdMonitor thresholdMonitor) {
@@ -32,23 +55,17 @@ public final class TransferProxy implements AsyncWorkQueue {
 
     @Override
     public void addEntity(EventPayload entity) {
-        AsyncWorkQueue queue;
-        if (thresholdMonitor.isFailover()) {
-            if (!failover.getAndSet(true)) {
-                flushWorkQueue();
-            }
-            queue = workQueues.failoverQueue();
-        } else {
-            if (failover.getAndSet(false)) {
-                flushFailoverQueue();
-            }
-            queue = workQueues.workQueue();
+        boolean failover = thresholdMonitor.isFailover();
+        Epoch current = epoch;
+        if (current.failover != failover) {
+            current = switchTo(failover);
         }
-        queue.addEntity(entity);
+        queue(current).addEntity(entity);
     }
 
     @Override
     public void flush() {
+        drained().join();
         CompletableFuture<Void> cf1 = CompletableFuture.runAsync(this::flushFailoverQueue);
         CompletableFuture<Void> cf2 = CompletableFuture.runAsync(this::flushWorkQueue);
         CompletableFuture.allOf(cf1, cf2)
@@ -56,13 +73,56 @@ public final class TransferProxy implements AsyncWorkQueue {
         log.info("Flushed all work queues");
     }
 
+    private Epoch switchTo(boolean failover) {
+        lock.lock();
+        try {
+            Epoch previous = epoch;
+            if (previous.failover == failover) {
+                return previous;
+            }
+            epoch = new Epoch(previous.number + 1, failover);
+            log.info("Epoch {} sends to {} queue, draining epoch {} in the background",
+                    epoch.number, failover ? "failover" : "work", previous.number);
+            drains = drains.thenRunAsync(() -> drain(previous), drainer);
+            return epoch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drain(Epoch previous) {
+        try {
+            if (previous.failover) {
+                flushFailoverQueue();
+            } else {
+                flushWorkQueue();
+            }
+            log.info("Drained epoch {}", previous.number);
+        } catch (RuntimeException e) {
+            log.warn("Could not drain epoch {}", previous.number, e);
+        }
+    }
+
+    private CompletableFuture<Void> drained() {
+        lock.lock();
+        try {
+            return drains;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private AsyncWorkQueue queue(Epoch e) {
+        return e.failover ? workQueues.failoverQueue() : workQueues.workQueue();
+    }
+
     private void flushWorkQueue() {
-        log.info("Flushing Kinesis payloads");
+        log.info("Flushing work queue");
         workQueues.workQueue().flush();
     }
 
     private void flushFailoverQueue() {
-        log.info("Flushing S3 uploads");
+        log.info("Flushing failover queue");
         workQueues.failoverQueue().flush();
     }
 
@@ -70,6 +130,7 @@ public final class TransferProxy implements AsyncWorkQueue {
     public StreamStats end() {
         log.info("Stopping transfer proxy");
         flush();
+        drainer.shutdown();
         thresholdMonitor.end();
         return workQueues.endAll();
     }
@@ -78,4 +139,14 @@ public final class TransferProxy implements AsyncWorkQueue {
     public TransferStyle style() {
         return TransferStyle.PROXY;
     }
+
+    private static final class Epoch {
+        private final long number;
+        private final boolean failover;
+
+        private Epoch(long number, boolean failover) {
+            this.number = number;
+            this.failover = failover;
+        }
+    }
 }
@@ -1,8 +1,10 @@
 package io.leoplatform.sdk.aws;
 
+import dagger.Lazy;
 import io.leoplatform.sdk.AsyncWorkQueue;
 import io.leoplatform.sdk.StreamStats;
 import io.leoplatform.sdk.TransferStyle;
+import io.leoplatform.sdk.aws.payload.CompressionWriter;
 import io.leoplatform.sdk.config.ConnectorConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,6 +15,7 @@ import javax.inject.Singleton;
 import java.time.Duration;
 import java.util.Collections;
 import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Stream;
 
 import static java.util.function.Function.identity;
@@ -23,18 +26,27 @@ import static java.util.stream.Collectors.toMap;
 public final class WorkQueues {
     private static final Logger log = LoggerFactory.getLogger(WorkQueues.class);
 
-    private static final TransferStyle failoverStyle = TransferStyle.STORAGE;
     private final TransferStyle configuredStyle;
+    private final TransferStyle failoverStyle;
     private final Map<TransferStyle, AsyncWorkQueue> transferQueue;
+    private final CompressionWriter compression;
 
     @Inject
-    public WorkQueues(ConnectorConfig config,
-                      @Named("Stream") AsyncWorkQueue kinesisQueue, @Named("Storage") AsyncWorkQueue s3Queue) {
+    public WorkQueues(ConnectorConfig config, @Named("Stream") AsyncWorkQueue kinesisQueue,
+                      @Named("Storage") AsyncWorkQueue s3Queue, @Named("Batch") Lazy<AsyncWorkQueue> firehoseQueue,
+                      CompressionWriter compression) {
         configuredStyle = TransferStyle.fromType(config.value("Writer"));
-        transferQueue = Stream.of(kinesisQueue, s3Queue)
+        failoverStyle = TransferStyle.fromType(config.valueOrElse("FailoverWriter", TransferStyle.STORAGE.style()));
+        // The Firehose client is only built when a Firehose queue is configured
+        Stream<AsyncWorkQueue> batchQueue = Stream.of(configuredStyle, failoverStyle)
+                .filter(s -> s == TransferStyle.BATCH)
+                .limit(1)
+                .map(s -> firehoseQueue.get());
+        transferQueue = Stream.concat(Stream.of(kinesisQueue, s3Queue), batchQueue)
                 .collect(collectingAndThen(
                         toMap(AsyncWorkQueue::style, identity()),
                         Collections::unmodifiableMap));
+        this.compression = compression;
         log.info("AWS {} {} write configured", awsTypeLabel(configuredStyle), configuredStyle.style());
         log.info("AWS {} {} write configured for threshold failover", awsTypeLabel(failoverStyle), failoverStyle.style());
     }
@@ -60,20 +72,15 @@ public final class WorkQueues {
     }
 
     StreamStats endAll() {
-        StreamStats storageStats = transferQueue.values().stream()
-                .filter(q -> q.style() == TransferStyle.STORAGE)
+        // S3 pointers are written to Kinesis, so storage must end before the stream
+        StreamStats stats = Stream.of(TransferStyle.STORAGE, TransferStyle.STREAM, TransferStyle.BATCH)
+                .map(transferQueue::get)
+                .filter(Objects::nonNull)
                 .map(AsyncWorkQueue::end)
-                .findFirst()
-                .orElse(emptyStats());
-
-        StreamStats streamStats = transferQueue.values().stream()
-                .filter(q -> q.style() == TransferStyle.STREAM)
-                .map(AsyncWorkQueue::end)
-                .findFirst()
-                .orElse(emptyStats());
-        return Stream.of(storageStats, streamStats)
                 .reduce(this::combineStats)
                 .orElse(emptyStats());
+        compression.end();
+        return stats;
     }
 
     private StreamStats combineStats(StreamStats ss1, StreamStats ss2) {
@@ -0,0 +1,426 @@
+package io.leoplatform.sdk.aws.firehose;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.auth.profile.ProfileCredentialsProvider;
+import com.amazonaws.client.builder.AwsClientBuilder.EndpointConfiguration;
+import com.amazonaws.services.kinesisfirehose.AmazonKinesisFirehose;
+import com.amazonaws.services.kinesisfirehose.AmazonKinesisFirehoseClientBuilder;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordBatchRequest;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordBatchResponseEntry;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordBatchResult;
+import com.amazonaws.services.kinesisfirehose.model.Record;
+import io.leoplatform.sdk.AsyncWorkQueue;
+import io.leoplatform.sdk.ExecutorManager;
+import io.leoplatform.sdk.StreamStats;
+import io.leoplatform.sdk.TransferStyle;
+import io.leoplatform.sdk.aws.FlowGate;
+import io.leoplatform.sdk.aws.LaneBatchers;
+import io.leoplatform.sdk.aws.RingBatcher;
+import io.leoplatform.sdk.aws.RouteStats;
+import io.leoplatform.sdk.aws.payload.CompressionWriter;
+import io.leoplatform.sdk.aws.wal.LoggedPayload;
+import io.leoplatform.sdk.config.ConnectorConfig;
+import io.leoplatform.sdk.payload.EventPayload;
+import io.leoplatform.sdk.payload.FileSegment;
+import io.leoplatform.sdk.payload.StorageEventOffset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Singleton;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Loads events through the Kinesis Data Firehose delivery stream named by <code>Batch.Name</code>. Firehose
+ * buffers records into S3 itself, which costs far less than the Kinesis and S3 pair for analytics-only queues.
+ * <p>
+ * Events are batched for up to <code>Batch.MaxAge</code> milliseconds, and each destination queue in a batch is
+ * compressed into records of at most <code>Batch.MaxRecordSize</code> bytes. Records are sent with PutRecordBatch,
+ * up to 500 records or <code>Batch.MaxSize</code> bytes per call. At most <code>Batch.MaxRequestsInFlight</code>
+ * batches (default 4) are sent at once; beyond that the batch consumer waits for one to finish. Records Firehose
+ * rejects are retried on their own with full-jitter exponential backoff until <code>Batch.MaxUploadAttempts</code>
+ * is reached. Retries are scheduled rather than slept on, so a backing-off batch does not hold an executor thread.
+ * <code>Batch.Endpoint</code> points the client at another endpoint, such as a local stub.
+ */
+@Singleton
+public final class FirehoseQueue implements AsyncWorkQueue {
+    private static final Logger log = LoggerFactory.getLogger(FirehoseQueue.class);
+
+    static final int MAX_BATCH_RECORDS = 500;
+    static final long MAX_BATCH_BYTES = 4_194_304L;
+    static final long MAX_RECORD_BYTES = 1_024_000L;
+
+    private final String deliveryStream;
+    private final long maxRecordSize;
+    private final long maxBatchSize;
+    private final int maxBatchRecords;
+    private final int maxAttempts;
+    private final long baseBackoff;
+    private final long maxBackoff;
+    private final Semaphore requestSlots;
+    private final ScheduledExecutorService retries = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "firehose-put-record-batch-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorManager executorManager;
+    private final CompressionWriter compression;
+    private final AmazonKinesisFirehose firehose;
+    private final FlowGate flowGate;
+    private final RouteStats routeStats;
+    private final LaneBatchers payloads;
+    private final List<CompletableFuture<Void>> pendingWrites = new LinkedList<>();
+    private final AtomicLong successes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final Instant start = Instant.now();
+    private final AtomicBoolean running;
+    private final Lock lock = new ReentrantLock();
+    private final Condition batchSend = lock.newCondition();
+
+    public FirehoseQueue(ConnectorConfig config, ExecutorManager executorManager, CompressionWriter compression,
+                         FlowGate flowGate, RouteStats routeStats) {
+        this(config, executorManager, compression, flowGate, routeStats, client(config));
+    }
+
+    public FirehoseQueue(ConnectorConfig config, ExecutorManager executorManager, CompressionWriter compression,
+                         FlowGate flowGate, RouteStats routeStats, AmazonKinesisFirehose firehose) {
+        deliveryStream = config.value("Batch.Name");
+        maxRecordSize = Math.min(MAX_RECORD_BYTES, config.longValueOrElse("Batch.MaxRecordSize", MAX_RECORD_BYTES));
+        maxBatchSize = Math.min(MAX_BATCH_BYTES, config.longValueOrElse("Batch.MaxSize", MAX_BATCH_BYTES));
+        maxBatchRecords = config.intValueOrElse("Batch.MaxRecords", 1000);
+        maxAttempts = Math.max(1, config.intValueOrElse("Batch.MaxUploadAttempts", 10));
+        baseBackoff = config.longValueOrElse("Batch.BaseBackoff", 100L);
+        maxBackoff = config.longValueOrElse("Batch.MaxBackoff", 5_000L);
+        requestSlots = new Semaphore(maxRequests(config.intValueOrElse("Batch.MaxRequestsInFlight", 4)));
+        long maxBatchAge = config.longValueOrElse("Batch.MaxAge", 1_000L);
+        int capacity = config.intValueOrElse("Batch.BufferCapacity", 65_536);
+        payloads = new LaneBatchers(slots -> new RingBatcher<>(slots, maxBatchRecords, Duration.ofMillis(maxBatchAge)), capacity);
+        this.executorManager = executorManager;
+        this.compression = compression;
+        this.firehose = firehose;
+        this.flowGate = flowGate;
+        this.routeStats = routeStats;
+        running = new AtomicBoolean(true);
+        CompletableFuture.runAsync(this::asyncBatchSend, executorManager.get());
+    }
+
+    @Override
+    public void addEntity(EventPayload entity) {
+        if (!running.get() || !payloads.offer(entity)) {
+            log.warn("Attempt to add Firehose payload to a stopped queue");
+            flowGate.release(entity.destination(), 1);
+        }
+    }
+
+    @Override
+    public void flush() {
+        payloads.flush();
+        sendAll();
+        completePendingWrites();
+    }
+
+    @Override
+    public StreamStats end() {
+        flush();
+        running.set(false);
+        payloads.close();
+        retries.shutdown();
+        log.info("Stopping Firehose client");
+        firehose.shutdown();
+        return getStats();
+    }
+
+    @Override
+    public TransferStyle style() {
+        return TransferStyle.BATCH;
+    }
+
+    /**
+     * Sends one batch from each queue that has one ready, so a hot queue's backlog is shared out in turn.
+     */
+    private void asyncBatchSend() {
+        while (running.get()) {
+            List<RingBatcher<EventPayload>> ready = payloads.awaitBatches();
+            if (ready.isEmpty() && Thread.currentThread().isInterrupted()) {
+                running.set(false);
+                log.info("Firehose queue stopped with {} pending", payloads.size());
+            }
+            ready.forEach(this::send);
+        }
+    }
+
+    private void sendAll() {
+        payloads.lanes().forEach(lane -> {
+            while (!lane.isEmpty() && !Thread.currentThread().isInterrupted()) {
+                send(lane);
+            }
+        });
+    }
+
+    /**
+     * Waits for a request slot, then drains and registers the batch under one lock, so a flush never sees an
+     * empty batcher while a drained batch is not yet pending. The slot is returned once the batch is delivered
+     * or has failed.
+     */
+    private void send(RingBatcher<EventPayload> lane) {
+        try {
+            requestSlots.acquire();
+        } catch (InterruptedException e) {
+            log.warn("Firehose queue interrupted with {} pending", payloads.size());
+            Thread.currentThread().interrupt();
+            return;
+        }
+        lock.lock();
+        try {
+            List<EventPayload> toSend = lane.drain();
+            if (toSend.isEmpty()) {
+                requestSlots.release();
+                return;
+            }
+            Executor e = executorManager.get();
+            CompletableFuture<Void> cf = CompletableFuture
+                    .supplyAsync(() -> sendLane(toSend), e)
+                    .thenCompose(delivered -> delivered)
+                    .thenAccept(delivered -> {
+                        if (delivered) {
+                            LoggedPayload.confirmAll(toSend);
+                        }
+                    })
+                    .whenComplete((v, t) -> {
+                        requestSlots.release();
+                        flowGate.release(toSend.get(0).destination(), toSend.size());
+                    })
+                    .thenRunAsync(this::removeCompleted, e);
+            pendingWrites.add(cf);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sends each PutRecordBatch request in turn.
+     *
+     * @return Completed with whether every record was accepted
+     */
+    private CompletableFuture<Boolean> sendLane(List<EventPayload> lane) {
+        List<FileSegment> records = new ArrayList<>();
+        compressWithinLimit(lane, records);
+        CompletableFuture<Boolean> delivered = CompletableFuture.completedFuture(true);
+        for (List<FileSegment> batch : batches(records)) {
+            delivered = delivered.thenCompose(d -> put(batch, 1).thenApply(p -> d && p));
+        }
+        return delivered;
+    }
+
+    /**
+     * A compressed batch past the record limit is halved until each part fits.
+     */
+    private void compressWithinLimit(List<EventPayload> toSend, List<FileSegment> records) {
+        FileSegment compressed = compression.compressWithOffsets(toSend);
+        StorageEventOffset offset = compressed.getOffset();
+        if (offset.getGzipSize() <= maxRecordSize) {
+            records.add(compressed);
+        } else if (toSend.size() == 1) {
+            log.error("Skipping {} byte payload which exceeds maximum of {} bytes", offset.getGzipSize(), maxRecordSize);
+            LoggedPayload.confirmAll(toSend);
+        } else {
+            int half = toSend.size() / 2;
+            compressWithinLimit(toSend.subList(0, half), records);
+            compressWithinLimit(toSend.subList(half, toSend.size()), records);
+        }
+    }
+
+    private List<List<FileSegment>> batches(List<FileSegment> records) {
+        List<List<FileSegment>> batches = new ArrayList<>();
+        List<FileSegment> batch = new ArrayList<>();
+        long batchBytes = 0;
+        for (FileSegment record : records) {
+            long bytes = record.getSegment().length;
+            if (batch.size() == MAX_BATCH_RECORDS || (!batch.isEmpty() && batchBytes + bytes > maxBatchSize)) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchBytes = 0;
+            }
+            batch.add(record);
+            batchBytes += bytes;
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * @return Completed with whether every record was accepted
+     */
+    private CompletableFuture<Boolean> put(List<FileSegment> records, int attempt) {
+        return CompletableFuture
+                .supplyAsync(() -> attempt(records, attempt), executorManager.get())
+                .thenCompose(failed -> retry(failed, attempt));
+    }
+
+    private CompletableFuture<Boolean> retry(List<FileSegment> failed, int attempt) {
+        if (failed.isEmpty()) {
+            return CompletableFuture.completedFuture(true);
+        }
+        if (attempt >= maxAttempts) {
+            fail(failed, attempt);
+            return CompletableFuture.completedFuture(false);
+        }
+        CompletableFuture<Boolean> retried = new CompletableFuture<>();
+        try {
+            retries.schedule(() -> put(failed, attempt + 1).whenComplete((delivered, t) -> retried.complete(t == null && delivered)),
+                    backoff(attempt), MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            fail(failed, attempt);
+            retried.complete(false);
+        }
+        return retried;
+    }
+
+    private void fail(List<FileSegment> failed, int attempt) {
+        long events = failed.stream().mapToLong(r -> r.getOffset().getRecords()).sum();
+        failures.addAndGet(events);
+        log.error("Firehose did not accept {} records holding {} events in {} attempt{}", failed.size(), events, attempt, attempt == 1 ? "" : "s");
+    }
+
+    /**
+     * @return The records to retry
+     */
+    private List<FileSegment> attempt(List<FileSegment> records, int attempt) {
+        PutRecordBatchRequest request = new PutRecordBatchRequest()
+                .withDeliveryStreamName(deliveryStream)
+                .withRecords(records.stream()
+                        .map(r -> new Record().withData(ByteBuffer.wrap(r.getSegment())))
+                        .collect(toList()));
+        PutRecordBatchResult result;
+        try {
+            result = firehose.putRecordBatch(request);
+        } catch (RuntimeException e) {
+            log.warn("PutRecordBatch attempt {} of {} records failed: {}", attempt, records.size(), e.getMessage());
+            return records;
+        }
+        List<FileSegment> failed = new ArrayList<>();
+        List<PutRecordBatchResponseEntry> responses = result.getRequestResponses();
+        for (int i = 0; i < records.size(); i++) {
+            FileSegment record = records.get(i);
+            PutRecordBatchResponseEntry response = responses.get(i);
+            if (response.getErrorCode() == null) {
+                StorageEventOffset offset = record.getOffset();
+                successes.addAndGet(offset.getRecords());
+                routeStats.delivered(offset.getEvent(), offset.getRecords(), offset.getGzipSize());
+            } else {
+                log.debug("Firehose rejected record on attempt {}: {} {}", attempt, response.getErrorCode(), response.getErrorMessage());
+                failed.add(record);
+            }
+        }
+        return failed;
+    }
+
+    private long backoff(int attempt) {
+        long ceiling = Math.min(maxBackoff, baseBackoff << Math.min(attempt - 1, 30));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static int maxRequests(int maxRequests) {
+        if (maxRequests < 1) {
+            throw new IllegalArgumentException("Batch.MaxRequestsInFlight must be at least 1");
+        }
+        return maxRequests;
+    }
+
+    private void completePendingWrites() {
+        removeCompleted();
+        while (!pendingWrites.isEmpty()) {
+            lock.lock();
+            try {
+                batchSend.await(100, MILLISECONDS);
+            } catch (InterruptedException i) {
+                log.warn("Stopped with incomplete pending Firehose batch tasks");
+                pendingWrites.clear();
+            } finally {
+                lock.unlock();
+            }
+            removeCompleted();
+        }
+    }
+
+    private void removeCompleted() {
+        lock.lock();
+        try {
+            pendingWrites.removeIf(CompletableFuture::isDone);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static AmazonKinesisFirehose client(ConnectorConfig config) {
+        ClientConfiguration http = new ClientConfiguration()
+                .withMaxConnections(config.intValueOrElse("Batch.Http.MaxConnections", 50))
+                .withConnectionTimeout(config.intValueOrElse("Batch.Http.ConnectionTimeout", 10_000))
+                .withSocketTimeout(config.intValueOrElse("Batch.Http.SocketTimeout", 50_000))
+                .withTcpKeepAlive(true)
+                .withMaxErrorRetry(0);
+        AmazonKinesisFirehoseClientBuilder builder = AmazonKinesisFirehoseClientBuilder.standard()
+                .withCredentials(credentials(config))
+                .withClientConfiguration(http);
+        String region = config.valueOrElse("Region", "us-east-1");
+        String endpoint = config.valueOrElse("Batch.Endpoint", "").trim();
+        if (endpoint.isEmpty()) {
+            builder.withRegion(region);
+        } else {
+            builder.withEndpointConfiguration(new EndpointConfiguration(endpoint, region));
+        }
+        return builder.build();
+    }
+
+    private static AWSCredentialsProvider credentials(ConnectorConfig config) {
+        return Optional.of(config.valueOrElse("AwsProfile", ""))
+                .map(String::trim)
+                .filter(profile -> !profile.isEmpty())
+                .map(ProfileCredentialsProvider::new)
+                .map(AWSCredentialsProvider.class::cast)
+                .orElse(DefaultAWSCredentialsProviderChain.getInstance());
+    }
+
+    private StreamStats getStats() {
+        return new StreamStats() {
+            @Override
+            public Long successes() {
+                return successes.get();
+            }
+
+            @Override
+            public Long failures() {
+                return failures.get();
+            }
+
+            @Override
+            public Duration totalTime() {
+                return Duration.between(start, Instant.now());
+            }
+        };
+    }
+}
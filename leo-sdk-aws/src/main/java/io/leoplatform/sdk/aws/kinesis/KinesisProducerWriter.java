@@ -6,7 +6,7 @@ import com.amazonaws.auth.profile.ProfileCredentialsProvider;
 import com.amazonaws.services.kinesis.producer.KinesisProducer;
 import com.amazonaws.services.kinesis.producer.KinesisProducerConfiguration;
 import com.amazonaws.services.kinesis.producer.UserRecordResult;
-import io.leoplatform.sdk.ExecutorManager;
+import com.google.common.util.concurrent.ListenableFuture;
 import io.leoplatform.sdk.StreamStats;
 import io.leoplatform.sdk.config.ConnectorConfig;
 import org.slf4j.Logger;
@@ -17,75 +17,111 @@ import javax.inject.Singleton;
 import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
+/**
+ * Writes records through the KPL without holding a thread per record. Each record's KPL future completes the
+ * returned future from the producer's callback thread. At most <code>Stream.MaxOutstandingRecords</code> records
+ * are in the KPL at once; beyond that <code>write</code> blocks the caller until one is acknowledged.
+ */
 @Singleton
-public final class KinesisProducerWriter {
+public final class KinesisProducerWriter implements KinesisWriter {
     private static final Logger log = LoggerFactory.getLogger(KinesisProducerWriter.class);
     private final KinesisResults resultsProcessor;
     private final KinesisProducer kinesis;
     private final String stream;
-    private final ExecutorManager executorManager;
-    private final List<CompletableFuture<Void>> pendingWrites = new LinkedList<>();
+    private final Semaphore outstanding;
+    private final AtomicInteger inFlight = new AtomicInteger();
     private final Lock lock = new ReentrantLock();
     private final Condition asyncUpload = lock.newCondition();
 
     @Inject
-    public KinesisProducerWriter(ConnectorConfig config, ExecutorManager executorManager,
-                                 KinesisResults resultsProcessor) {
+    public KinesisProducerWriter(ConnectorConfig config, KinesisResults resultsProcessor) {
         this.stream = config.value("Stream.Name");
         KinesisProducerConfiguration kCfg = new KinesisProducerConfiguration()
                 .setCredentialsProvider(credentials(config))
                 .setRegion(config.valueOrElse("Region", "us-east-1"))
-                .setAggregationEnabled(false)
-                .setRecordMaxBufferedTime(200L)
-                .setRequestTimeout(60000)
-                .setMaxConnections(48)
                 .setCredentialsRefreshDelay(100)
                 .setMetricsNamespace("LEO Java SDK")
                 .setLogLevel("info");
-        this.kinesis = new KinesisProducer(kCfg);
-        this.executorManager = executorManager;
+        this.kinesis = new KinesisProducer(new KplSettings(config).applyTo(kCfg));
+        this.outstanding = new Semaphore(maxOutstanding(config.intValueOrElse("Stream.MaxOutstandingRecords", 10_000)));
         this.resultsProcessor = resultsProcessor;
     }
 
-    public void write(ByteBuffer payload) {
-        lock.lock();
+    @Override
+    public CompletableFuture<Void> write(ByteBuffer payload, PartitionKey key) {
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        int length = payload.array().length;
         try {
-            Executor e = executorManager.get();
-            CompletableFuture<Void> cf = CompletableFuture
-                    .supplyAsync(() -> addRecord(payload), e)
-                    .thenAcceptAsync(r -> resultsProcessor.add(r, payload.array().length), e)
-                    .thenRunAsync(this::removeCompleted, e);
-            pendingWrites.add(cf);
-        } finally {
-            lock.unlock();
+            outstanding.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            resultsProcessor.addFailure(e);
+            written.completeExceptionally(e);
+            return written;
         }
+        inFlight.incrementAndGet();
+        try {
+            ListenableFuture<UserRecordResult> added = kinesis.addUserRecord(stream, key.partitionKey(), key.explicitHashKey(), payload);
+            // Completes the returned future on the KPL's callback thread, so its dependents run there too; callers
+            // only release permits, count deliveries and confirm logged payloads, none of which block
+            added.addListener(() -> completed(added, length, written), Runnable::run);
+        } catch (Exception e) {
+            resultsProcessor.addFailure(e);
+            release();
+            written.completeExceptionally(e);
+        }
+        return written;
     }
 
-    void flush() {
-        kinesis.flushSync();
-    }
-
-    private UserRecordResult addRecord(ByteBuffer payload) {
+    private void completed(ListenableFuture<UserRecordResult> added, int length, CompletableFuture<Void> written) {
         try {
-            return kinesis.addUserRecord(stream, "0", payload).get();
-        } catch (Exception e) {
+            UserRecordResult result = added.get();
+            resultsProcessor.add(result, length);
+            if (result != null && !result.isSuccessful()) {
+                throw new IllegalStateException("Kinesis did not accept record");
+            }
+            release();
+            written.complete(null);
+        } catch (ExecutionException e) {
             resultsProcessor.addFailure(e);
-            throw new RuntimeException("Error adding record");
+            release();
+            written.completeExceptionally(e.getCause());
+        } catch (Exception e) {
+            release();
+            written.completeExceptionally(e);
+        }
+    }
+
+    private void release() {
+        outstanding.release();
+        if (inFlight.decrementAndGet() == 0) {
+            lock.lock();
+            try {
+                asyncUpload.signalAll();
+            } finally {
+                lock.unlock();
+            }
         }
     }
 
-    StreamStats end() {
+    @Override
+    public void flush() {
+        kinesis.flushSync();
+    }
+
+    @Override
+    public StreamStats end() {
         completePendingTasks();
 
         try {
@@ -105,39 +141,29 @@ public final class KinesisProducerWriter {
     }
 
     private void completePendingTasks() {
-        while (!pendingWrites.isEmpty()) {
-            lock.lock();
-            try {
-                asyncUpload.await(100, MILLISECONDS);
-            } catch (InterruptedException i) {
-                log.warn("Stopped Kinesis upload manager with incomplete pending tasks");
-                pendingWrites.clear();
-            } finally {
-                lock.unlock();
-            }
-            removeCompleted();
+        int pending = inFlight.get();
+        if (pending > 0) {
+            log.info("Waiting for {} Kinesis record{} to complete", pending, pending == 1 ? "" : "s");
+            kinesis.flush();
         }
         lock.lock();
         try {
-            long inFlight = pendingWrites.parallelStream()
-                    .map(CompletableFuture::join)
-                    .count();
-            if (inFlight > 0) {
-                log.info("Waited for {} Kinesis upload{} to complete", inFlight, inFlight == 1 ? "" : "s");
+            while (inFlight.get() > 0) {
+                asyncUpload.await(100, MILLISECONDS);
             }
+        } catch (InterruptedException i) {
+            log.warn("Stopped Kinesis upload manager with {} incomplete records", inFlight.get());
+            Thread.currentThread().interrupt();
         } finally {
             lock.unlock();
         }
     }
 
-    private void removeCompleted() {
-        lock.lock();
-        try {
-            pendingWrites.removeIf(CompletableFuture::isDone);
-            asyncUpload.signalAll();
-        } finally {
-            lock.unlock();
+    private static int maxOutstanding(int maxOutstanding) {
+        if (maxOutstanding < 1) {
+            throw new IllegalArgumentException("Stream.MaxOutstandingRecords must be at least 1");
         }
+        return maxOutstanding;
     }
 
     private AWSCredentialsProvider credentials(ConnectorConfig config) {
@@ -4,41 +4,55 @@ import io.leoplatform.sdk.AsyncWorkQueue;
 import io.leoplatform.sdk.ExecutorManager;
 import io.leoplatform.sdk.StreamStats;
 import io.leoplatform.sdk.TransferStyle;
+import io.leoplatform.sdk.aws.FlowGate;
+import io.leoplatform.sdk.aws.LaneBatchers;
+import io.leoplatform.sdk.aws.RingBatcher;
+import io.leoplatform.sdk.aws.RouteStats;
+import io.leoplatform.sdk.aws.payload.CompressionRatio;
 import io.leoplatform.sdk.aws.payload.CompressionWriter;
+import io.leoplatform.sdk.aws.payload.PayloadSizeEstimator;
+import io.leoplatform.sdk.aws.wal.LoggedPayload;
 import io.leoplatform.sdk.config.ConnectorConfig;
 import io.leoplatform.sdk.payload.EventPayload;
 import io.leoplatform.sdk.payload.FileSegment;
+import io.leoplatform.sdk.payload.StorageEventOffset;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.nio.ByteBuffer;
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.stream.Stream;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
-import static java.util.stream.Collectors.toCollection;
 
 @Singleton
 public final class KinesisQueue implements AsyncWorkQueue {
     private static final Logger log = LoggerFactory.getLogger(KinesisQueue.class);
 
+    private static final double TARGET_FILL = 0.9;
+    private static final double INITIAL_RATIO = 0.5;
+    private static final double RATIO_WEIGHT = 0.2;
+
     private final long maxBatchAge;
     private final int maxBatchRecords;
     private final long maxBatchSize;
     private final ExecutorManager executorManager;
     private final CompressionWriter compression;
-    private final KinesisProducerWriter writer;
-    private final BlockingQueue<EventPayload> payloads = new LinkedBlockingQueue<>();
+    private final KinesisWriter writer;
+    private final PartitionKeys partitionKeys;
+    private final FlowGate flowGate;
+    private final RouteStats routeStats;
+    private final PayloadSizeEstimator sizeEstimator = new PayloadSizeEstimator();
+    private final CompressionRatio compressionRatio = new CompressionRatio(INITIAL_RATIO, RATIO_WEIGHT);
+    private final LaneBatchers payloads;
     private final List<CompletableFuture<Void>> pendingWrites = new LinkedList<>();
     private final AtomicBoolean running;
     private final Lock lock = new ReentrantLock();
@@ -46,26 +60,30 @@ public final class KinesisQueue implements AsyncWorkQueue {
 
     @Inject
     public KinesisQueue(ConnectorConfig config, ExecutorManager executorManager,
-                        CompressionWriter compression, KinesisProducerWriter writer) {
+                        CompressionWriter compression, KinesisWriter writer, PartitionKeys partitionKeys,
+                        FlowGate flowGate, RouteStats routeStats) {
         maxBatchAge = config.longValueOrElse("Stream.MaxBatchAge", 400L);
         maxBatchRecords = config.intValueOrElse("Stream.MaxBatchRecords", 1000);
         maxBatchSize = config.longValueOrElse("Stream.MaxBatchSize", 1_048_576L);
+        int capacity = config.intValueOrElse("Stream.BufferCapacity", 65_536);
+        long targetBatchSize = (long) (maxBatchSize * TARGET_FILL);
+        payloads = new LaneBatchers(slots -> new RingBatcher<>(slots, maxBatchRecords, targetBatchSize,
+                Duration.ofMillis(maxBatchAge), this::estimatedCompressedSize), capacity);
         this.executorManager = executorManager;
         this.compression = compression;
         this.writer = writer;
+        this.partitionKeys = partitionKeys;
+        this.flowGate = flowGate;
+        this.routeStats = routeStats;
         running = new AtomicBoolean(true);
         pendingWrites.add(CompletableFuture.runAsync(this::asyncBatchSend, executorManager.get()));
     }
 
     @Override
     public void addEntity(EventPayload entity) {
-        if (running.get()) {
-            add(entity);
-            if (exceedsMaxRecords()) {
-                signalBatch();
-            }
-        } else {
+        if (!running.get() || !payloads.offer(entity)) {
             log.warn("Attempt to add kinesis payload to a stopped queue");
+            flowGate.release(entity.destination(), 1);
         }
     }
 
@@ -77,46 +95,32 @@ public final class KinesisQueue implements AsyncWorkQueue {
     @Override
     public StreamStats end() {
         running.set(false);
-        signalBatch();
+        payloads.close();
         sendAll();
         completePendingTasks();
         return writer.end();
     }
 
-    private void add(EventPayload entity) {
-        lock.lock();
-        try {
-            payloads.add(entity);
-        } finally {
-            lock.unlock();
-        }
-    }
-
+    /**
+     * Sends one batch from each queue that has one ready, so a hot queue's backlog is shared out in turn.
+     */
     private void asyncBatchSend() {
         while (running.get()) {
-            lock.lock();
-            try {
-                batchSend.await(maxBatchAge, MILLISECONDS);
-            } catch (InterruptedException i) {
+            List<RingBatcher<EventPayload>> ready = payloads.awaitBatches();
+            if (ready.isEmpty() && Thread.currentThread().isInterrupted()) {
                 running.set(false);
                 log.info("Kinesis queue stopped with {} pending", payloads.size());
-            } finally {
-                lock.unlock();
             }
-            sendBatch();
+            ready.forEach(this::send);
         }
     }
 
-    private void sendBatch() {
-        do {
-            send();
-        } while (exceedsMaxRecords());
-    }
-
     private void sendAll() {
-        while (!payloads.isEmpty()) {
-            send();
-        }
+        payloads.lanes().forEach(lane -> {
+            while (!lane.isEmpty()) {
+                send(lane);
+            }
+        });
     }
 
     private void completePendingTasks() {
@@ -144,12 +148,20 @@ public final class KinesisQueue implements AsyncWorkQueue {
         }
     }
 
-    private void send() {
-        Set<EventPayload> toSend = drainToSet();
+    /**
+     * Each queue's batch is compressed into its own records.
+     */
+    private void send(RingBatcher<EventPayload> lane) {
+        List<EventPayload> toSend = lane.drain();
+        if (toSend.isEmpty()) {
+            return;
+        }
         Executor e = executorManager.get();
+        EventPayload first = toSend.get(0);
         CompletableFuture<Void> cf = CompletableFuture
-                .supplyAsync(() -> compressPayloads(toSend), e)
-                .thenAcceptAsync(this::toKinesis, e)
+                .supplyAsync(() -> toKinesis(compressPayloads(toSend), first), e)
+                .thenAccept(written -> written.thenRun(() -> LoggedPayload.confirmAll(toSend)))
+                .whenComplete((v, t) -> flowGate.release(first.destination(), toSend.size()))
                 .thenRunAsync(this::removeCompleted, e);
         lock.lock();
         try {
@@ -159,56 +171,50 @@ public final class KinesisQueue implements AsyncWorkQueue {
         }
     }
 
-    private Queue<FileSegment> compressPayloads(Set<EventPayload> toSend) {
-        FileSegment compressedBatch = compression.compressWithOffsets(toSend);
-        if (compressedBatch.getOffset().getGzipSize() > maxBatchSize) {
-            log.warn("Compressed payload batch exceeds {} bytes", compressedBatch.getOffset().getGzipSize());
-            return toSend.parallelStream()
-                    .map(Collections::singletonList)
-                    .map(compression::compressWithOffsets)
-                    .peek(this::checkSize)
-                    .filter(s -> s.getOffset().getGzipSize() <= maxBatchSize)
-                    .collect(toCollection(LinkedList::new));
-        } else {
-            return Stream.of(compressedBatch)
-                    .collect(toCollection(LinkedList::new));
-        }
+    private long estimatedCompressedSize(EventPayload payload) {
+        return compressionRatio.compressedSize(sizeEstimator.estimate(payload));
     }
 
-    private void checkSize(FileSegment fileSegment) {
-        Long compressed = fileSegment.getOffset().getGzipSize();
-        if (compressed > maxBatchSize) {
-            log.error("Skipping {} byte payload which exceeds maximum of {} bytes", compressed, maxBatchSize);
-        }
+    private Queue<FileSegment> compressPayloads(List<EventPayload> toSend) {
+        Queue<FileSegment> segments = new LinkedList<>();
+        compressWithinLimit(toSend, segments);
+        return segments;
     }
 
-    private void toKinesis(Queue<FileSegment> segments) {
-        segments.stream()
-                .filter(Objects::nonNull)
-                .map(FileSegment::getSegment)
-                .filter(b -> b.length > 0)
-                .map(ByteBuffer::wrap)
-                .forEachOrdered(writer::write);
+    /**
+     * Batches are cut from estimated sizes, so one can still compress past the limit. When it does, the
+     * batch is halved until each part fits rather than falling back to one Kinesis record per event.
+     */
+    private void compressWithinLimit(List<EventPayload> toSend, Queue<FileSegment> segments) {
+        FileSegment compressedBatch = compression.compressWithOffsets(toSend);
+        StorageEventOffset offset = compressedBatch.getOffset();
+        compressionRatio.observe(offset.getSize(), offset.getGzipSize());
+        if (offset.getGzipSize() <= maxBatchSize) {
+            segments.add(compressedBatch);
+        } else if (toSend.size() == 1) {
+            log.error("Skipping {} byte payload which exceeds maximum of {} bytes", offset.getGzipSize(), maxBatchSize);
+            // It can never be delivered, so it must not be replayed either
+            LoggedPayload.confirmAll(toSend);
+        } else {
+            log.warn("Compressed batch of {} records is {} bytes; splitting", toSend.size(), offset.getGzipSize());
+            int half = toSend.size() / 2;
+            compressWithinLimit(toSend.subList(0, half), segments);
+            compressWithinLimit(toSend.subList(half, toSend.size()), segments);
+        }
     }
 
-    private Set<EventPayload> drainToSet() {
-        Set<EventPayload> toSend = new LinkedHashSet<>();
-        lock.lock();
-        try {
-            payloads.drainTo(toSend, maxBatchRecords);
-        } finally {
-            lock.unlock();
-        }
-        return toSend;
+    private CompletableFuture<Void> toKinesis(Queue<FileSegment> segments, EventPayload first) {
+        CompletableFuture<?>[] written = segments.stream()
+                .filter(Objects::nonNull)
+                .filter(s -> s.getSegment().length > 0)
+                .map(s -> writer.write(ByteBuffer.wrap(s.getSegment()), partitionKeys.keyFor(s.getOffset().getEvent(), first.payload()))
+                        .thenRun(() -> delivered(s.getOffset())))
+                .toArray(CompletableFuture<?>[]::new);
+        return CompletableFuture.allOf(written);
     }
 
-    private void signalBatch() {
-        lock.lock();
-        try {
-            batchSend.signalAll();
-        } finally {
-            lock.unlock();
-        }
+    private void delivered(StorageEventOffset offset) {
+        routeStats.delivered(offset.getEvent(), offset.getRecords(), offset.getGzipSize());
     }
 
     private void removeCompleted() {
@@ -224,8 +230,4 @@ public final class KinesisQueue implements AsyncWorkQueue {
     public TransferStyle style() {
         return TransferStyle.STREAM;
     }
-
-    private boolean exceedsMaxRecords() {
-        return payloads.size() >= maxBatchRecords;
-    }
 }
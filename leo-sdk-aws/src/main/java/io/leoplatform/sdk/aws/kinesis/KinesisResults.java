@@ -32,6 +32,12 @@ public final class KinesisResults {
                 .ifPresent(this::log);
     }
 
+    void addSuccess(int length, String sequenceNumber, String shardId, int attempts) {
+        thresholdMonitor.addBytes((long) length);
+        successes.incrementAndGet();
+        log.info("Successfully uploaded record {} to {} in {} attempt{}", sequenceNumber, shardId, attempts, attempts == 1 ? "" : "s");
+    }
+
     void addFailure(Exception e) {
         failures.incrementAndGet();
         log.error("Unable to add payload to Kinesis: {}", e.getMessage());
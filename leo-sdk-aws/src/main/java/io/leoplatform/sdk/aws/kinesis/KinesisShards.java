@@ -0,0 +1,129 @@
+package io.leoplatform.sdk.aws.kinesis;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.auth.profile.ProfileCredentialsProvider;
+import com.amazonaws.client.builder.AwsClientBuilder.EndpointConfiguration;
+import com.amazonaws.services.kinesis.AmazonKinesis;
+import com.amazonaws.services.kinesis.AmazonKinesisClientBuilder;
+import com.amazonaws.services.kinesis.model.GetShardIteratorRequest;
+import com.amazonaws.services.kinesis.model.ListShardsRequest;
+import com.amazonaws.services.kinesis.model.ListShardsResult;
+import com.amazonaws.services.kinesis.model.ShardIteratorType;
+import io.leoplatform.sdk.config.ConnectorConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The shards of the bus stream named by <code>Stream.Name</code>. Shards are read from
+ * <code>Offload.StartPosition</code>: LATEST (the default), TRIM_HORIZON, or AT_TIMESTAMP with
+ * <code>Offload.StartTime</code> in epoch milliseconds. Each GetRecords call returns at most
+ * <code>Offload.MaxRecords</code> records.
+ */
+@Singleton
+public final class KinesisShards {
+    private static final Logger log = LoggerFactory.getLogger(KinesisShards.class);
+
+    static final int MAX_GET_RECORDS = 10_000;
+
+    private final String stream;
+    private final ShardIteratorType startPosition;
+    private final long startTime;
+    private final int maxRecords;
+    private final AmazonKinesis kinesis;
+
+    public KinesisShards(ConnectorConfig config) {
+        this(config, client(config));
+    }
+
+    public KinesisShards(ConnectorConfig config, AmazonKinesis kinesis) {
+        stream = config.value("Stream.Name");
+        startPosition = startPosition(config.valueOrElse("Offload.StartPosition", "LATEST"));
+        startTime = config.longValueOrElse("Offload.StartTime", -1L);
+        if (startPosition == ShardIteratorType.AT_TIMESTAMP && startTime < 0) {
+            throw new IllegalArgumentException("Offload.StartTime is required to start at a timestamp");
+        }
+        maxRecords = Math.max(1, Math.min(MAX_GET_RECORDS, config.intValueOrElse("Offload.MaxRecords", MAX_GET_RECORDS)));
+        this.kinesis = kinesis;
+    }
+
+    /**
+     * @return A reader for each shard of the stream, including closed shards still within the retention period
+     */
+    public List<ShardReader> readers() {
+        List<ShardReader> readers = new ArrayList<>();
+        ListShardsRequest request = new ListShardsRequest().withStreamName(stream);
+        do {
+            ListShardsResult result = kinesis.listShards(request);
+            result.getShards().forEach(s -> readers.add(new ShardReader(kinesis, start(s.getShardId()), maxRecords)));
+            request = Optional.ofNullable(result.getNextToken())
+                    .map(token -> new ListShardsRequest().withNextToken(token))
+                    .orElse(null);
+        } while (request != null);
+        log.info("Found {} shards in {} stream", readers.size(), stream);
+        return readers;
+    }
+
+    public void end() {
+        log.info("Stopping Kinesis reader");
+        kinesis.shutdown();
+    }
+
+    private GetShardIteratorRequest start(String shardId) {
+        GetShardIteratorRequest request = new GetShardIteratorRequest()
+                .withStreamName(stream)
+                .withShardId(shardId)
+                .withShardIteratorType(startPosition);
+        if (startPosition == ShardIteratorType.AT_TIMESTAMP) {
+            request.withTimestamp(new Date(startTime));
+        }
+        return request;
+    }
+
+    private static ShardIteratorType startPosition(String position) {
+        switch (position.trim().toUpperCase()) {
+            case "LATEST":
+                return ShardIteratorType.LATEST;
+            case "TRIM_HORIZON":
+                return ShardIteratorType.TRIM_HORIZON;
+            case "AT_TIMESTAMP":
+                return ShardIteratorType.AT_TIMESTAMP;
+        }
+        throw new IllegalArgumentException("Unknown Offload.StartPosition: " + position);
+    }
+
+    private static AmazonKinesis client(ConnectorConfig config) {
+        ClientConfiguration http = new ClientConfiguration()
+                .withMaxConnections(config.intValueOrElse("Stream.Http.MaxConnections", 50))
+                .withConnectionTimeout(config.intValueOrElse("Stream.Http.ConnectionTimeout", 10_000))
+                .withSocketTimeout(config.intValueOrElse("Stream.Http.SocketTimeout", 50_000))
+                .withTcpKeepAlive(true);
+        AmazonKinesisClientBuilder builder = AmazonKinesisClientBuilder.standard()
+                .withCredentials(credentials(config))
+                .withClientConfiguration(http);
+        String region = config.valueOrElse("Region", "us-east-1");
+        String endpoint = config.valueOrElse("Stream.Endpoint", "").trim();
+        if (endpoint.isEmpty()) {
+            builder.withRegion(region);
+        } else {
+            builder.withEndpointConfiguration(new EndpointConfiguration(endpoint, region));
+        }
+        return builder.build();
+    }
+
+    private static AWSCredentialsProvider credentials(ConnectorConfig config) {
+        return Optional.of(config.valueOrElse("AwsProfile", ""))
+                .map(String::trim)
+                .filter(profile -> !profile.isEmpty())
+                .map(ProfileCredentialsProvider::new)
+                .map(AWSCredentialsProvider.class::cast)
+                .orElse(DefaultAWSCredentialsProviderChain.getInstance());
+    }
+}
@@ -0,0 +1,17 @@
+package io.leoplatform.sdk.aws.kinesis;
+
+import io.leoplatform.sdk.StreamStats;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+public interface KinesisWriter {
+    /**
+     * @return A future completed once the record has been accepted by Kinesis, or exceptionally if it was not
+     */
+    CompletableFuture<Void> write(ByteBuffer payload, PartitionKey key);
+
+    void flush();
+
+    StreamStats end();
+}
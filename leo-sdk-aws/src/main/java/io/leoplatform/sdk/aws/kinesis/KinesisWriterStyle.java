@@ -0,0 +1,25 @@
+package io.leoplatform.sdk.aws.kinesis;
+
+import java.util.stream.Stream;
+
+public enum KinesisWriterStyle {
+    PRODUCER("Producer"), PUT_RECORDS("PutRecords");
+
+    private final String style;
+
+    KinesisWriterStyle(String style) {
+        this.style = style;
+    }
+
+    @Override
+    public String toString() {
+        return style;
+    }
+
+    public static KinesisWriterStyle fromName(String style) {
+        return Stream.of(values())
+                .filter(s -> s.toString().equalsIgnoreCase(style))
+                .findFirst()
+                .orElse(PRODUCER);
+    }
+}
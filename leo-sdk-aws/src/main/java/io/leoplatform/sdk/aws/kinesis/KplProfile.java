@@ -0,0 +1,76 @@
+package io.leoplatform.sdk.aws.kinesis;
+
+import java.util.stream.Stream;
+
+/**
+ * Starting points for the KPL settings under <code>Stream.Kpl.*</code>. Any individual setting overrides the
+ * profile's value.
+ * <ul>
+ * <li><code>Default</code> matches the settings the SDK has always used</li>
+ * <li><code>LowLatency</code> sends records almost as soon as they are added. The SDK already batches records
+ * for up to <code>Stream.MaxBatchAge</code>, so KPL buffering only adds to delivery latency</li>
+ * <li><code>MaxThroughput</code> buffers longer and packs more records into each PutRecords call, trading
+ * latency for fewer, fuller requests</li>
+ * </ul>
+ * Aggregation stays off in every profile because bus consumers read each Kinesis record as one batch.
+ */
+public enum KplProfile {
+    DEFAULT("Default", 200L, 48L, 60_000L, 500L, 5_242_880L, "detailed"),
+    LOW_LATENCY("LowLatency", 10L, 48L, 6_000L, 500L, 5_242_880L, "none"),
+    MAX_THROUGHPUT("MaxThroughput", 1_000L, 96L, 60_000L, 500L, 5_242_880L, "summary");
+
+    private final String profile;
+    private final long recordMaxBufferedTime;
+    private final long maxConnections;
+    private final long requestTimeout;
+    private final long collectionMaxCount;
+    private final long collectionMaxSize;
+    private final String metricsLevel;
+
+    KplProfile(String profile, long recordMaxBufferedTime, long maxConnections, long requestTimeout,
+               long collectionMaxCount, long collectionMaxSize, String metricsLevel) {
+        this.profile = profile;
+        this.recordMaxBufferedTime = recordMaxBufferedTime;
+        this.maxConnections = maxConnections;
+        this.requestTimeout = requestTimeout;
+        this.collectionMaxCount = collectionMaxCount;
+        this.collectionMaxSize = collectionMaxSize;
+        this.metricsLevel = metricsLevel;
+    }
+
+    long recordMaxBufferedTime() {
+        return recordMaxBufferedTime;
+    }
+
+    long maxConnections() {
+        return maxConnections;
+    }
+
+    long requestTimeout() {
+        return requestTimeout;
+    }
+
+    long collectionMaxCount() {
+        return collectionMaxCount;
+    }
+
+    long collectionMaxSize() {
+        return collectionMaxSize;
+    }
+
+    String metricsLevel() {
+        return metricsLevel;
+    }
+
+    @Override
+    public String toString() {
+        return profile;
+    }
+
+    static KplProfile fromName(String profile) {
+        return Stream.of(values())
+                .filter(p -> p.toString().equalsIgnoreCase(profile))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown KPL profile: " + profile));
+    }
+}
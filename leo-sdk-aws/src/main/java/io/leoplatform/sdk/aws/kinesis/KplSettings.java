@@ -0,0 +1,99 @@
+package io.leoplatform.sdk.aws.kinesis;
+
+import com.amazonaws.services.kinesis.producer.KinesisProducerConfiguration;
+import io.leoplatform.sdk.config.ConnectorConfig;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * KPL producer settings read from <code>Stream.Kpl.*</code>, starting from the values of
+ * <code>Stream.Kpl.Profile</code>. Each value is checked against the range the KPL accepts, so a bad setting
+ * fails when the writer is built rather than inside the native producer.
+ */
+public final class KplSettings {
+    private static final List<String> METRICS_LEVELS = Arrays.asList("none", "summary", "detailed");
+
+    private final KplProfile profile;
+    private final boolean aggregationEnabled;
+    private final long aggregationMaxCount;
+    private final long aggregationMaxSize;
+    private final long collectionMaxCount;
+    private final long collectionMaxSize;
+    private final long recordMaxBufferedTime;
+    private final long maxConnections;
+    private final long requestTimeout;
+    private final long rateLimit;
+    private final String metricsLevel;
+
+    public KplSettings(ConnectorConfig config) {
+        profile = KplProfile.fromName(config.valueOrElse("Stream.Kpl.Profile", "Default"));
+        aggregationEnabled = Boolean.parseBoolean(config.valueOrElse("Stream.Kpl.AggregationEnabled", "false"));
+        aggregationMaxCount = within(config, "Stream.Kpl.AggregationMaxCount", 4_294_967_295L, 1L, Long.MAX_VALUE);
+        aggregationMaxSize = within(config, "Stream.Kpl.AggregationMaxSize", 51_200L, 64L, 1_048_576L);
+        collectionMaxCount = within(config, "Stream.Kpl.CollectionMaxCount", profile.collectionMaxCount(), 1L, 500L);
+        collectionMaxSize = within(config, "Stream.Kpl.CollectionMaxSize", profile.collectionMaxSize(), 52_224L, Long.MAX_VALUE);
+        recordMaxBufferedTime = within(config, "Stream.Kpl.RecordMaxBufferedTime", profile.recordMaxBufferedTime(), 0L, Long.MAX_VALUE);
+        maxConnections = within(config, "Stream.Kpl.MaxConnections", profile.maxConnections(), 1L, 256L);
+        requestTimeout = within(config, "Stream.Kpl.RequestTimeout", profile.requestTimeout(), 100L, 600_000L);
+        rateLimit = within(config, "Stream.Kpl.RateLimit", 150L, 1L, Long.MAX_VALUE);
+        metricsLevel = config.valueOrElse("Stream.Kpl.MetricsLevel", profile.metricsLevel()).toLowerCase();
+        if (!METRICS_LEVELS.contains(metricsLevel)) {
+            throw new IllegalArgumentException("Stream.Kpl.MetricsLevel must be one of " + METRICS_LEVELS);
+        }
+    }
+
+    KinesisProducerConfiguration applyTo(KinesisProducerConfiguration kpl) {
+        return kpl
+                .setAggregationEnabled(aggregationEnabled)
+                .setAggregationMaxCount(aggregationMaxCount)
+                .setAggregationMaxSize(aggregationMaxSize)
+                .setCollectionMaxCount(collectionMaxCount)
+                .setCollectionMaxSize(collectionMaxSize)
+                .setRecordMaxBufferedTime(recordMaxBufferedTime)
+                .setMaxConnections(maxConnections)
+                .setRequestTimeout(requestTimeout)
+                .setRateLimit(rateLimit)
+                .setMetricsLevel(metricsLevel);
+    }
+
+    KplProfile profile() {
+        return profile;
+    }
+
+    boolean aggregationEnabled() {
+        return aggregationEnabled;
+    }
+
+    long collectionMaxCount() {
+        return collectionMaxCount;
+    }
+
+    long recordMaxBufferedTime() {
+        return recordMaxBufferedTime;
+    }
+
+    long maxConnections() {
+        return maxConnections;
+    }
+
+    long requestTimeout() {
+        return requestTimeout;
+    }
+
+    long rateLimit() {
+        return rateLimit;
+    }
+
+    String metricsLevel() {
+        return metricsLevel;
+    }
+
+    private static long within(ConnectorConfig config, String key, long orElse, long min, long max) {
+        long value = config.longValueOrElse(key, orElse);
+        if (value < min || value > max) {
+            throw new IllegalArgumentException(String.format("%s must be between %d and %d", key, min, max));
+        }
+        return value;
+    }
+}
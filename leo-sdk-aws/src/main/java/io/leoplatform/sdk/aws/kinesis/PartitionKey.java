@@ -0,0 +1,38 @@
+package io.leoplatform.sdk.aws.kinesis;
+
+import java.util.Optional;
+
+/**
+ * The key Kinesis hashes to choose a shard for a record. When an explicit hash key is present Kinesis uses it
+ * in place of the hash of the partition key.
+ */
+public final class PartitionKey {
+    private final String partitionKey;
+    private final String explicitHashKey;
+
+    private PartitionKey(String partitionKey, String explicitHashKey) {
+        this.partitionKey = Optional.ofNullable(partitionKey)
+                .filter(k -> !k.isEmpty())
+                .orElseThrow(() -> new IllegalArgumentException("Missing partition key"));
+        this.explicitHashKey = explicitHashKey;
+    }
+
+    public static PartitionKey of(String partitionKey) {
+        return new PartitionKey(partitionKey, null);
+    }
+
+    public static PartitionKey of(String partitionKey, String explicitHashKey) {
+        return new PartitionKey(partitionKey, explicitHashKey);
+    }
+
+    public String partitionKey() {
+        return partitionKey;
+    }
+
+    /**
+     * @return The decimal hash key placing the record on a specific shard, or null to hash the partition key
+     */
+    public String explicitHashKey() {
+        return explicitHashKey;
+    }
+}
@@ -0,0 +1,25 @@
+package io.leoplatform.sdk.aws.kinesis;
+
+import java.util.stream.Stream;
+
+public enum PartitionKeyStrategy {
+    RANDOM("Random"), QUEUE("Queue"), PAYLOAD_FIELD("PayloadField"), EXPLICIT_HASH("ExplicitHash");
+
+    private final String strategy;
+
+    PartitionKeyStrategy(String strategy) {
+        this.strategy = strategy;
+    }
+
+    @Override
+    public String toString() {
+        return strategy;
+    }
+
+    static PartitionKeyStrategy fromName(String strategy) {
+        return Stream.of(values())
+                .filter(s -> s.toString().equalsIgnoreCase(strategy))
+                .findFirst()
+                .orElse(QUEUE);
+    }
+}
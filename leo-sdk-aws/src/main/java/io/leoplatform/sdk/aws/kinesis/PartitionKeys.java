@@ -0,0 +1,90 @@
+package io.leoplatform.sdk.aws.kinesis;
+
+import io.leoplatform.sdk.config.ConnectorConfig;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Chooses the partition key for each Kinesis record according to <code>Stream.PartitionKey</code>:
+ * <ul>
+ * <li><code>Queue</code> (default) keys records by their destination queue, keeping each queue in order on one
+ * shard</li>
+ * <li><code>PayloadField</code> keys records by the value of <code>Stream.PartitionField</code> in the first
+ * payload of the batch, falling back to the queue when it is missing</li>
+ * <li><code>Random</code> spreads records over every shard with no ordering</li>
+ * <li><code>ExplicitHash</code> deals records round-robin across <code>Stream.ShardCount</code> evenly split
+ * hash ranges, so consecutive batches land on different shards with no ordering</li>
+ * </ul>
+ */
+@Singleton
+public final class PartitionKeys {
+    private static final BigInteger HASH_SPACE = BigInteger.ONE.shiftLeft(128);
+
+    private final PartitionKeyStrategy strategy;
+    private final String partitionField;
+    private final List<String> shardHashKeys;
+    private final AtomicLong nextShard = new AtomicLong();
+
+    @Inject
+    public PartitionKeys(ConnectorConfig config) {
+        strategy = PartitionKeyStrategy.fromName(config.valueOrElse("Stream.PartitionKey", "Queue"));
+        partitionField = config.valueOrElse("Stream.PartitionField", "id");
+        shardHashKeys = shardHashKeys(config.intValueOrElse("Stream.ShardCount", 1));
+    }
+
+    /**
+     * @param queue   The queue the record is bound for
+     * @param payload The first payload in the record, or null when the record is not built from payloads
+     */
+    public PartitionKey keyFor(String queue, JsonObject payload) {
+        switch (strategy) {
+            case RANDOM:
+                return PartitionKey.of(Long.toHexString(ThreadLocalRandom.current().nextLong()));
+            case PAYLOAD_FIELD:
+                return PartitionKey.of(fieldValue(payload).orElse(queue));
+            case EXPLICIT_HASH:
+                int shard = (int) (nextShard.getAndIncrement() % shardHashKeys.size());
+                return PartitionKey.of(queue, shardHashKeys.get(shard));
+            default:
+                return PartitionKey.of(queue);
+        }
+    }
+
+    public PartitionKey keyFor(String queue) {
+        return keyFor(queue, null);
+    }
+
+    private Optional<String> fieldValue(JsonObject payload) {
+        return Optional.ofNullable(payload)
+                .map(p -> p.get(partitionField))
+                .filter(v -> v.getValueType() != JsonValue.ValueType.NULL)
+                .map(v -> v instanceof JsonString ? ((JsonString) v).getString() : v.toString())
+                .filter(v -> !v.isEmpty());
+    }
+
+    /**
+     * The midpoint of each shard's range, assuming the stream's hash key space is split evenly between shards
+     * as it is when a stream is created or resharded with UpdateShardCount.
+     */
+    private static List<String> shardHashKeys(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Stream.ShardCount must be at least 1");
+        }
+        BigInteger range = HASH_SPACE.divide(BigInteger.valueOf(shardCount));
+        BigInteger half = range.shiftRight(1);
+        return IntStream.range(0, shardCount)
+                .mapToObj(i -> range.multiply(BigInteger.valueOf(i)).add(half).toString())
+                .collect(Collectors.toList());
+    }
+}
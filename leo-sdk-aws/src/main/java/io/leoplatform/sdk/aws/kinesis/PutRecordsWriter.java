@@ -0,0 +1,355 @@
+package io.leoplatform.sdk.aws.kinesis;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.auth.profile.ProfileCredentialsProvider;
+import com.amazonaws.client.builder.AwsClientBuilder.EndpointConfiguration;
+import com.amazonaws.services.kinesis.AmazonKinesis;
+import com.amazonaws.services.kinesis.AmazonKinesisClientBuilder;
+import com.amazonaws.services.kinesis.model.PutRecordsRequest;
+import com.amazonaws.services.kinesis.model.PutRecordsRequestEntry;
+import com.amazonaws.services.kinesis.model.PutRecordsResult;
+import com.amazonaws.services.kinesis.model.PutRecordsResultEntry;
+import io.leoplatform.sdk.ExecutorManager;
+import io.leoplatform.sdk.StreamStats;
+import io.leoplatform.sdk.config.ConnectorConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Writes records with the Kinesis PutRecords API, without the KPL's native daemon. Selected with
+ * <code>Stream.Writer=PutRecords</code>, which suits short-lived bots where starting the daemon dominates.
+ * <p>
+ * Records are buffered for up to <code>Stream.PutRecords.MaxBufferedTime</code> and sent up to 500 records or 5MB
+ * per call. At most <code>Stream.PutRecords.MaxRequestsInFlight</code> calls are made at once; beyond that
+ * <code>write</code> blocks the caller until one completes. Records Kinesis rejects are retried on their own with
+ * full-jitter exponential backoff until <code>Stream.MaxUploadAttempts</code> is reached. Retries are scheduled
+ * rather than slept on, so a backing-off request does not hold an executor thread. The HTTP client is configured
+ * with <code>Stream.Http.*</code>, and <code>Stream.Endpoint</code> points the client at another endpoint, such as
+ * a local mock.
+ */
+public final class PutRecordsWriter implements KinesisWriter {
+    private static final Logger log = LoggerFactory.getLogger(PutRecordsWriter.class);
+
+    static final int MAX_RECORDS = 500;
+    static final long MAX_REQUEST_BYTES = 5_242_880L;
+
+    private final String stream;
+    private final AmazonKinesis kinesis;
+    private final KinesisResults resultsProcessor;
+    private final ExecutorManager executorManager;
+    private final int maxAttempts;
+    private final long baseBackoff;
+    private final long maxBackoff;
+    private final long maxBufferedTime;
+    private final Semaphore requestSlots;
+    private final ScheduledExecutorService retries = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "kinesis-put-records-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<PendingRecord> buffered = new ArrayList<>();
+    private long bufferedBytes = 0;
+    private Instant bufferStart;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicBoolean running = new AtomicBoolean(true);
+    private final Lock lock = new ReentrantLock();
+    private final Condition bufferReady = lock.newCondition();
+    private final Condition requestsDone = lock.newCondition();
+
+    public PutRecordsWriter(ConnectorConfig config, ExecutorManager executorManager, KinesisResults resultsProcessor) {
+        this(config, executorManager, resultsProcessor, client(config));
+    }
+
+    public PutRecordsWriter(ConnectorConfig config, ExecutorManager executorManager,
+                            KinesisResults resultsProcessor, AmazonKinesis kinesis) {
+        this.stream = config.value("Stream.Name");
+        this.kinesis = kinesis;
+        this.resultsProcessor = resultsProcessor;
+        this.executorManager = executorManager;
+        this.maxAttempts = Math.max(1, config.intValueOrElse("Stream.MaxUploadAttempts", 10));
+        this.baseBackoff = config.longValueOrElse("Stream.PutRecords.BaseBackoff", 100L);
+        this.maxBackoff = config.longValueOrElse("Stream.PutRecords.MaxBackoff", 5_000L);
+        this.maxBufferedTime = config.longValueOrElse("Stream.PutRecords.MaxBufferedTime", 50L);
+        this.requestSlots = new Semaphore(maxRequests(config.intValueOrElse("Stream.PutRecords.MaxRequestsInFlight", 16)));
+        CompletableFuture.runAsync(this::asyncBatchSend, executorManager.get());
+    }
+
+    @Override
+    public CompletableFuture<Void> write(ByteBuffer payload, PartitionKey key) {
+        PendingRecord record = new PendingRecord(payload, key);
+        lock.lock();
+        try {
+            if (buffered.size() == MAX_RECORDS || bufferedBytes + record.bytes > MAX_REQUEST_BYTES) {
+                dispatch();
+            }
+            if (buffered.isEmpty()) {
+                bufferStart = Instant.now();
+                bufferReady.signalAll();
+            }
+            buffered.add(record);
+            bufferedBytes += record.bytes;
+        } finally {
+            lock.unlock();
+        }
+        return record.written;
+    }
+
+    @Override
+    public void flush() {
+        lock.lock();
+        try {
+            dispatch();
+            while (inFlight.get() > 0) {
+                requestsDone.await(100, MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            log.warn("Kinesis flush interrupted with {} requests in flight", inFlight.get());
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public StreamStats end() {
+        flush();
+        running.set(false);
+        lock.lock();
+        try {
+            bufferReady.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        log.info("Stopping Kinesis writer");
+        retries.shutdown();
+        kinesis.shutdown();
+        log.info("Stopped Kinesis writer");
+        return getStats();
+    }
+
+    private void asyncBatchSend() {
+        while (running.get()) {
+            lock.lock();
+            try {
+                long untilSend = Optional.ofNullable(bufferStart)
+                        .filter(s -> !buffered.isEmpty())
+                        .map(s -> Duration.between(Instant.now(), s.plusMillis(maxBufferedTime)).toMillis())
+                        .orElse(maxBufferedTime);
+                if (untilSend > 0) {
+                    bufferReady.await(untilSend, MILLISECONDS);
+                } else {
+                    dispatch();
+                }
+            } catch (InterruptedException i) {
+                running.set(false);
+                log.info("Kinesis writer stopped with {} buffered", buffered.size());
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Called with the lock held; blocks while the maximum number of requests are in flight
+    private void dispatch() {
+        if (buffered.isEmpty()) {
+            return;
+        }
+        List<PendingRecord> request = new ArrayList<>(buffered);
+        buffered.clear();
+        bufferedBytes = 0;
+        try {
+            requestSlots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            request.forEach(r -> {
+                resultsProcessor.addFailure(e);
+                r.written.completeExceptionally(e);
+            });
+            return;
+        }
+        inFlight.incrementAndGet();
+        send(request, 1).whenComplete((v, t) -> requestDone());
+    }
+
+    private void requestDone() {
+        // The slot is returned before taking the lock, which a blocked dispatch may be holding
+        requestSlots.release();
+        lock.lock();
+        try {
+            inFlight.decrementAndGet();
+            requestsDone.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private CompletableFuture<Void> send(List<PendingRecord> records, int attempt) {
+        return CompletableFuture
+                .supplyAsync(() -> attempt(records, attempt), executorManager.get())
+                .thenCompose(failed -> retry(failed, attempt))
+                .exceptionally(t -> {
+                    fail(records.stream().filter(r -> !r.written.isDone()).collect(toList()),
+                            new IllegalStateException("Kinesis request failed", t));
+                    return null;
+                });
+    }
+
+    private CompletableFuture<Void> retry(List<PendingRecord> failed, int attempt) {
+        if (failed.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (attempt >= maxAttempts) {
+            fail(failed, new IllegalStateException(String.format("Kinesis did not accept record in %d attempts", attempt)));
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> retried = new CompletableFuture<>();
+        try {
+            retries.schedule(() -> send(failed, attempt + 1).whenComplete((v, t) -> retried.complete(null)),
+                    backoff(attempt), MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            fail(failed, new IllegalStateException("Kinesis writer stopped before record was accepted", e));
+            retried.complete(null);
+        }
+        return retried;
+    }
+
+    private void fail(List<PendingRecord> records, Exception e) {
+        records.forEach(r -> {
+            resultsProcessor.addFailure(e);
+            r.written.completeExceptionally(e);
+        });
+    }
+
+    /**
+     * @return The records to retry
+     */
+    private List<PendingRecord> attempt(List<PendingRecord> records, int attempt) {
+        PutRecordsRequest request = new PutRecordsRequest()
+                .withStreamName(stream)
+                .withRecords(records.stream().map(r -> r.entry).collect(toList()));
+        PutRecordsResult result;
+        try {
+            result = kinesis.putRecords(request);
+        } catch (RuntimeException e) {
+            log.warn("PutRecords attempt {} of {} records failed: {}", attempt, records.size(), e.getMessage());
+            return records;
+        }
+        List<PendingRecord> failed = new ArrayList<>();
+        List<PutRecordsResultEntry> entries = result.getRecords();
+        for (int i = 0; i < records.size(); i++) {
+            PendingRecord record = records.get(i);
+            PutRecordsResultEntry entry = entries.get(i);
+            if (entry.getErrorCode() == null) {
+                resultsProcessor.addSuccess(record.length, entry.getSequenceNumber(), entry.getShardId(), attempt);
+                record.written.complete(null);
+            } else {
+                log.debug("Kinesis rejected record on attempt {}: {} {}", attempt, entry.getErrorCode(), entry.getErrorMessage());
+                failed.add(record);
+            }
+        }
+        return failed;
+    }
+
+    private long backoff(int attempt) {
+        long ceiling = Math.min(maxBackoff, baseBackoff << Math.min(attempt - 1, 30));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static int maxRequests(int maxRequests) {
+        if (maxRequests < 1) {
+            throw new IllegalArgumentException("Stream.PutRecords.MaxRequestsInFlight must be at least 1");
+        }
+        return maxRequests;
+    }
+
+    private static AmazonKinesis client(ConnectorConfig config) {
+        ClientConfiguration http = new ClientConfiguration()
+                .withMaxConnections(config.intValueOrElse("Stream.Http.MaxConnections", 50))
+                .withConnectionTimeout(config.intValueOrElse("Stream.Http.ConnectionTimeout", 10_000))
+                .withSocketTimeout(config.intValueOrElse("Stream.Http.SocketTimeout", 50_000))
+                .withRequestTimeout(config.intValueOrElse("Stream.Http.RequestTimeout", 0))
+                .withTcpKeepAlive(true)
+                .withMaxErrorRetry(0);
+        AmazonKinesisClientBuilder builder = AmazonKinesisClientBuilder.standard()
+                .withCredentials(credentials(config))
+                .withClientConfiguration(http);
+        String region = config.valueOrElse("Region", "us-east-1");
+        String endpoint = config.valueOrElse("Stream.Endpoint", "").trim();
+        if (endpoint.isEmpty()) {
+            builder.withRegion(region);
+        } else {
+            builder.withEndpointConfiguration(new EndpointConfiguration(endpoint, region));
+        }
+        return builder.build();
+    }
+
+    private static AWSCredentialsProvider credentials(ConnectorConfig config) {
+        return Optional.of(config.valueOrElse("AwsProfile", ""))
+                .map(String::trim)
+                .filter(profile -> !profile.isEmpty())
+                .map(ProfileCredentialsProvider::new)
+                .map(AWSCredentialsProvider.class::cast)
+                .orElse(DefaultAWSCredentialsProviderChain.getInstance());
+    }
+
+    private StreamStats getStats() {
+        return new StreamStats() {
+            @Override
+            public Long successes() {
+                return resultsProcessor.successes();
+            }
+
+            @Override
+            public Long failures() {
+                return resultsProcessor.failures();
+            }
+
+            @Override
+            public Duration totalTime() {
+                return Duration.between(resultsProcessor.start(), Instant.now());
+            }
+        };
+    }
+
+    private static final class PendingRecord {
+        private final PutRecordsRequestEntry entry;
+        private final int length;
+        private final long bytes;
+        private final CompletableFuture<Void> written = new CompletableFuture<>();
+
+        private PendingRecord(ByteBuffer payload, PartitionKey key) {
+            this.entry = new PutRecordsRequestEntry()
+                    .withData(payload)
+                    .withPartitionKey(key.partitionKey())
+                    .withExplicitHashKey(key.explicitHashKey());
+            this.length = payload.remaining();
+            // Kinesis counts the partition key towards the request size limit
+            this.bytes = length + key.partitionKey().getBytes(StandardCharsets.UTF_8).length;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package io.leoplatform.sdk.aws.kinesis;
+
+import com.amazonaws.services.kinesis.AmazonKinesis;
+import com.amazonaws.services.kinesis.model.ExpiredIteratorException;
+import com.amazonaws.services.kinesis.model.GetRecordsRequest;
+import com.amazonaws.services.kinesis.model.GetRecordsResult;
+import com.amazonaws.services.kinesis.model.GetShardIteratorRequest;
+import com.amazonaws.services.kinesis.model.ProvisionedThroughputExceededException;
+import com.amazonaws.services.kinesis.model.Record;
+import com.amazonaws.services.kinesis.model.ShardIteratorType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reads one shard of the bus stream with GetRecords. Each {@link #poll()} returns the next page of records, or none
+ * when the shard is caught up or its read throughput is exceeded. An expired iterator is replaced with one after the
+ * last record read, so records are neither skipped nor read twice.
+ * <p>
+ * Not thread safe; a shard is read by one thread at a time.
+ */
+public final class ShardReader {
+    private static final Logger log = LoggerFactory.getLogger(ShardReader.class);
+
+    private final AmazonKinesis kinesis;
+    private final GetShardIteratorRequest start;
+    private final int maxRecords;
+    private String iterator;
+    private String lastSequence;
+    private long millisBehind = Long.MAX_VALUE;
+    private boolean closed = false;
+
+    ShardReader(AmazonKinesis kinesis, GetShardIteratorRequest start, int maxRecords) {
+        this.kinesis = kinesis;
+        this.start = start;
+        this.maxRecords = maxRecords;
+    }
+
+    public List<Record> poll() {
+        if (closed) {
+            return Collections.emptyList();
+        }
+        if (iterator == null) {
+            iterator = kinesis.getShardIterator(iteratorRequest()).getShardIterator();
+        }
+        GetRecordsResult result;
+        try {
+            result = kinesis.getRecords(new GetRecordsRequest()
+                    .withShardIterator(iterator)
+                    .withLimit(maxRecords));
+        } catch (ExpiredIteratorException e) {
+            log.info("Iterator for shard {} expired, resuming after {}", shardId(), lastSequence);
+            iterator = null;
+            return Collections.emptyList();
+        } catch (ProvisionedThroughputExceededException e) {
+            log.debug("Read throughput exceeded on shard {}", shardId());
+            return Collections.emptyList();
+        }
+        iterator = result.getNextShardIterator();
+        if (iterator == null) {
+            closed = true;
+            log.info("Shard {} is closed", shardId());
+        }
+        millisBehind = Optional.ofNullable(result.getMillisBehindLatest()).orElse(0L);
+        List<Record> records = result.getRecords();
+        if (!records.isEmpty()) {
+            lastSequence = records.get(records.size() - 1).getSequenceNumber();
+        }
+        return records;
+    }
+
+    public String shardId() {
+        return start.getShardId();
+    }
+
+    /**
+     * @return Whether the last page read reached the tip of the shard
+     */
+    public boolean caughtUp() {
+        return millisBehind == 0L;
+    }
+
+    /**
+     * @return Whether the shard was closed by a reshard and every record in it has been read
+     */
+    public boolean closed() {
+        return closed;
+    }
+
+    private GetShardIteratorRequest iteratorRequest() {
+        if (lastSequence == null) {
+            return start;
+        }
+        return new GetShardIteratorRequest()
+                .withStreamName(start.getStreamName())
+                .withShardId(start.getShardId())
+                .withShardIteratorType(ShardIteratorType.AFTER_SEQUENCE_NUMBER)
+                .withStartingSequenceNumber(lastSequence);
+    }
+}
@@ -0,0 +1,120 @@
+package io.leoplatform.sdk.aws.payload;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of expensive objects. Each thread starts at a home slot derived from its id so that a
+ * thread usually gets back the instance it last returned; other slots are probed before a new instance is
+ * created. Instances that do not fit back in the pool are disposed immediately rather than left to
+ * finalization.
+ */
+final class AffinityPool<T> implements PoolMetrics {
+    private final AtomicReferenceArray<T> slots;
+    private final Supplier<T> factory;
+    private final Predicate<T> recycle;
+    private final Consumer<T> dispose;
+    private final AtomicBoolean open = new AtomicBoolean(true);
+    private final AtomicInteger idle = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder discards = new LongAdder();
+
+    /**
+     * @param capacity Maximum idle instances retained
+     * @param factory  Creates a new instance on a pool miss
+     * @param recycle  Resets a returned instance, answering whether it may be pooled again
+     * @param dispose  Frees an instance that leaves the pool
+     */
+    AffinityPool(int capacity, Supplier<T> factory, Predicate<T> recycle, Consumer<T> dispose) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Pool capacity must be positive: " + capacity);
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.factory = factory;
+        this.recycle = recycle;
+        this.dispose = dispose;
+    }
+
+    T borrow() {
+        int home = home();
+        for (int i = 0; i < slots.length(); i++) {
+            T pooled = slots.getAndSet((home + i) % slots.length(), null);
+            if (pooled != null) {
+                idle.decrementAndGet();
+                hits.increment();
+                return pooled;
+            }
+        }
+        misses.increment();
+        return factory.get();
+    }
+
+    void release(T instance) {
+        if (open.get() && recycle.test(instance)) {
+            int home = home();
+            for (int i = 0; i < slots.length(); i++) {
+                int slot = (home + i) % slots.length();
+                if (slots.compareAndSet(slot, null, instance)) {
+                    idle.incrementAndGet();
+                    if (!open.get()) {
+                        disposeSlot(slot);
+                    }
+                    return;
+                }
+            }
+        }
+        discards.increment();
+        dispose.accept(instance);
+    }
+
+    void end() {
+        if (open.getAndSet(false)) {
+            for (int i = 0; i < slots.length(); i++) {
+                disposeSlot(i);
+            }
+        }
+    }
+
+    @Override
+    public long hits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long misses() {
+        return misses.sum();
+    }
+
+    @Override
+    public long discards() {
+        return discards.sum();
+    }
+
+    @Override
+    public int size() {
+        return idle.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d, misses=%d, discards=%d, idle=%d", hits(), misses(), discards(), size());
+    }
+
+    private void disposeSlot(int slot) {
+        T pooled = slots.getAndSet(slot, null);
+        if (pooled != null) {
+            idle.decrementAndGet();
+            dispose.accept(pooled);
+        }
+    }
+
+    private int home() {
+        return (int) (Thread.currentThread().getId() % slots.length());
+    }
+}
@@ -0,0 +1,101 @@
+package io.leoplatform.sdk.aws.payload;
+
+import io.leoplatform.sdk.aws.s3.S3LocationPayload;
+import io.leoplatform.sdk.aws.s3.S3Payload;
+import io.leoplatform.sdk.payload.EntityPayload;
+import io.leoplatform.sdk.payload.StorageEventOffset;
+import io.leoplatform.sdk.payload.StreamCorrelation;
+
+import javax.json.*;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Reads the gzipped, newline-delimited JSON of the LEO bus: events, and the S3 pointer events written in place of
+ * events stored in files. The reverse of {@link JacksonPayload}.
+ */
+public final class BusJson {
+    private static final int BUFFER_SIZE = 65_536;
+
+    private BusJson() {
+    }
+
+    /**
+     * Decompresses one or more concatenated gzip members and calls back with each JSON line in order.
+     */
+    public static void forEachLine(byte[] gzip, Consumer<JsonObject> lines) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(gzip), BUFFER_SIZE), UTF_8), BUFFER_SIZE)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    lines.accept(toJson(line));
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not decompress bus payload", e);
+        }
+    }
+
+    public static boolean isPointer(JsonObject json) {
+        return json.containsKey("s3");
+    }
+
+    public static S3Payload toPointer(JsonObject json) {
+        JsonObject s3 = json.getJsonObject("s3");
+        S3LocationPayload location = new S3LocationPayload(s3.getString("bucket"), s3.getString("key"));
+        List<StorageEventOffset> offsets = Optional.ofNullable(json.getJsonArray("offsets"))
+                .map(a -> a.getValuesAs(JsonObject.class).stream()
+                        .map(BusJson::toOffset)
+                        .collect(toList()))
+                .orElse(Collections.emptyList());
+        return new S3Payload(json.getString("event", null), json.getString("start", null), json.getString("end", null),
+                location, offsets, longOrNull(json, "gzipSize"), longOrNull(json, "size"), longOrNull(json, "records"), null);
+    }
+
+    public static EntityPayload toEntity(JsonObject json) {
+        StreamCorrelation correlation = Optional.ofNullable(json.get("correlation_id"))
+                .filter(c -> c.getValueType() == JsonValue.ValueType.OBJECT)
+                .map(JsonObject.class::cast)
+                .map(c -> new StreamCorrelation(c.getString("source", null), longOrNull(c, "start"),
+                        longOrNull(c, "units"), longOrNull(c, "end")))
+                .orElse(null);
+        JsonObject payload = Optional.ofNullable(json.get("payload"))
+                .filter(p -> p.getValueType() == JsonValue.ValueType.OBJECT)
+                .map(JsonObject.class::cast)
+                .orElse(null);
+        return new EntityPayload(payload, json.getString("id", null), json.getString("event", null),
+                longOrNull(json, "event_source_timestamp"), longOrNull(json, "timestamp"), correlation);
+    }
+
+    private static StorageEventOffset toOffset(JsonObject json) {
+        return new StorageEventOffset(json.getString("event", null), longOrNull(json, "start"), longOrNull(json, "end"),
+                longOrNull(json, "size"), longOrNull(json, "offset"), longOrNull(json, "records"),
+                longOrNull(json, "gzipSize"), longOrNull(json, "gzipOffset"));
+    }
+
+    private static JsonObject toJson(String line) {
+        try (JsonReader reader = Json.createReader(new StringReader(line))) {
+            return reader.readObject();
+        }
+    }
+
+    private static Long longOrNull(JsonObject json, String key) {
+        return Optional.ofNullable(json.get(key))
+                .filter(JsonNumber.class::isInstance)
+                .map(JsonNumber.class::cast)
+                .map(JsonNumber::longValue)
+                .orElse(null);
+    }
+}
@@ -0,0 +1,82 @@
+package io.leoplatform.sdk.aws.payload;
+
+import java.util.stream.Stream;
+
+public enum CodecType {
+    GZIP("Gzip", 0, 9) {
+        @Override
+        CompressionCodec create(int level, int poolSize) {
+            return new GzipCodec(level, poolSize);
+        }
+    },
+    JZLIB("JZlib", 0, 9) {
+        @Override
+        CompressionCodec create(int level, int poolSize) {
+            return new JZlibCodec(level);
+        }
+    },
+    ZSTD("Zstd", 1, 22) {
+        @Override
+        CompressionCodec create(int level, int poolSize) {
+            return new ZstdCodec(level);
+        }
+    },
+    LZ4("LZ4", -1, -1) {
+        @Override
+        CompressionCodec create(int level, int poolSize) {
+            return new Lz4Codec();
+        }
+    };
+
+    /**
+     * Level value that leaves the choice to the codec: 6 for gzip and 3 for zstd.
+     */
+    public static final int DEFAULT_LEVEL = -1;
+
+    /**
+     * Idle native compressors retained per codec when no pool size is given.
+     */
+    public static final int DEFAULT_POOL_SIZE = 16;
+
+    private final String codec;
+    private final int minLevel;
+    private final int maxLevel;
+
+    CodecType(String codec, int minLevel, int maxLevel) {
+        this.codec = codec;
+        this.minLevel = minLevel;
+        this.maxLevel = maxLevel;
+    }
+
+    abstract CompressionCodec create(int level, int poolSize);
+
+    public CompressionCodec withLevel(int level) {
+        return withLevel(level, DEFAULT_POOL_SIZE);
+    }
+
+    public CompressionCodec withLevel(int level, int poolSize) {
+        if (level != DEFAULT_LEVEL && (level < minLevel || level > maxLevel)) {
+            throw new IllegalArgumentException(String.format("Invalid %s compression level %d", codec, level));
+        }
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("Invalid compression pool size " + poolSize);
+        }
+        return create(level, poolSize);
+    }
+
+    public String codec() {
+        return codec;
+    }
+
+    public static CodecType fromName(String codec) {
+        return Stream.of(values())
+                .filter(c -> c.codec().equalsIgnoreCase(codec))
+                .findAny()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown compression codec: " + codec));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{codec='%s'}", name(), codec);
+    }
+}
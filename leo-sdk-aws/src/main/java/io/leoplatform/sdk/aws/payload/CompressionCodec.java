@@ -0,0 +1,21 @@
+package io.leoplatform.sdk.aws.payload;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A compression format applied to serialized payloads before they are written to the bus. Implementations
+ * wrap the destination stream; closing the returned stream must finish the compressed frame.
+ */
+public interface CompressionCodec {
+    String name();
+
+    OutputStream compressor(OutputStream out) throws IOException;
+
+    /**
+     * Releases any native resources held between payloads. Compressors obtained afterwards still work but
+     * are no longer pooled.
+     */
+    default void end() {
+    }
+}
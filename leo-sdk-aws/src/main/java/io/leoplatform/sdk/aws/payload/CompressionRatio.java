@@ -0,0 +1,53 @@
+package io.leoplatform.sdk.aws.payload;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Exponentially weighted moving average of compressed size over inflated size, updated from every batch
+ * the compressor actually produces.
+ */
+public final class CompressionRatio {
+    private static final double MIN_RATIO = 0.01;
+    private static final double MAX_RATIO = 1.5;
+
+    private final double weight;
+    private final AtomicLong ratioBits;
+
+    /**
+     * @param initial Ratio assumed before the first observation; a high value starts with small batches
+     * @param weight  Share of each new observation in the average, between 0 and 1
+     */
+    public CompressionRatio(double initial, double weight) {
+        if (weight <= 0 || weight > 1) {
+            throw new IllegalArgumentException("Invalid compression ratio weight " + weight);
+        }
+        this.weight = weight;
+        this.ratioBits = new AtomicLong(Double.doubleToLongBits(clamp(initial)));
+    }
+
+    public void observe(long inflated, long compressed) {
+        if (inflated <= 0) {
+            return;
+        }
+        double observed = clamp((double) compressed / inflated);
+        long current;
+        long updated;
+        do {
+            current = ratioBits.get();
+            double average = Double.longBitsToDouble(current);
+            updated = Double.doubleToLongBits(average + weight * (observed - average));
+        } while (!ratioBits.compareAndSet(current, updated));
+    }
+
+    public double ratio() {
+        return Double.longBitsToDouble(ratioBits.get());
+    }
+
+    public long compressedSize(long inflated) {
+        return (long) Math.ceil(inflated * ratio());
+    }
+
+    private static double clamp(double ratio) {
+        return Math.max(MIN_RATIO, Math.min(MAX_RATIO, ratio));
+    }
+}
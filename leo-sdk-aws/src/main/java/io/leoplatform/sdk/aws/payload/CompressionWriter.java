@@ -6,9 +6,18 @@ import io.leoplatform.sdk.payload.FileSegment;
 
 import java.nio.ByteBuffer;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 public interface CompressionWriter {
     FileSegment compressWithOffsets(Collection<EventPayload> payload);
 
     ByteBuffer compress(S3Payload payload);
+
+    default List<FileSegment> compressSegments(Collection<EventPayload> payloads) {
+        return Collections.singletonList(compressWithOffsets(payloads));
+    }
+
+    default void end() {
+    }
 }
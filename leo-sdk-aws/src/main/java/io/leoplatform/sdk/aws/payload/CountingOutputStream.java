@@ -0,0 +1,33 @@
+package io.leoplatform.sdk.aws.payload;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Passes bytes through unchanged while keeping a running total, used to measure the inflated size of a
+ * payload without materializing it.
+ */
+final class CountingOutputStream extends FilterOutputStream {
+    private long count = 0L;
+
+    CountingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        count += len;
+    }
+
+    long getCount() {
+        return count;
+    }
+}
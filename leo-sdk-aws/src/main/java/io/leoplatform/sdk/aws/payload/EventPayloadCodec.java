@@ -0,0 +1,64 @@
+package io.leoplatform.sdk.aws.payload;
+
+import io.leoplatform.sdk.payload.EventPayload;
+import io.leoplatform.sdk.payload.RoutedPayload;
+import io.leoplatform.sdk.payload.SimplePayload;
+import io.leoplatform.sdk.payload.StreamCorrelation;
+
+import javax.json.*;
+import java.io.StringReader;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Writes an event, with its id, event time, correlation and destination, as a single-line JSON document that can be read
+ * back into an equivalent {@link EventPayload}. Used for the SDK's own local files, not for the bus.
+ */
+public final class EventPayloadCodec {
+
+    private EventPayloadCodec() {
+    }
+
+    public static String toJson(EventPayload payload) {
+        JsonObjectBuilder json = Json.createObjectBuilder()
+                .add("id", payload.id())
+                .add("event_time", payload.eventTime().toEpochMilli())
+                .add("payload", payload.payload());
+        Optional.ofNullable(payload.streamCorrelation())
+                .map(EventPayloadCodec::toJson)
+                .ifPresent(c -> json.add("correlation", c));
+        Optional.ofNullable(payload.destination())
+                .ifPresent(d -> json.add("destination", d));
+        return json.build().toString();
+    }
+
+    public static EventPayload fromJson(String line) {
+        try (JsonReader reader = Json.createReader(new StringReader(line))) {
+            JsonObject json = reader.readObject();
+            StreamCorrelation correlation = Optional.ofNullable(json.getJsonObject("correlation"))
+                    .map(c -> new StreamCorrelation(c.getString("source", null), longOrNull(c, "start"),
+                            longOrNull(c, "units"), longOrNull(c, "end")))
+                    .orElse(null);
+            Instant eventTime = Instant.ofEpochMilli(json.getJsonNumber("event_time").longValue());
+            EventPayload payload = new SimplePayload(json.getString("id"), eventTime, json.getJsonObject("payload"), correlation);
+            return Optional.ofNullable(json.getString("destination", null))
+                    .<EventPayload>map(d -> new RoutedPayload(d, payload))
+                    .orElse(payload);
+        }
+    }
+
+    private static JsonObject toJson(StreamCorrelation correlation) {
+        JsonObjectBuilder json = Json.createObjectBuilder();
+        Optional.ofNullable(correlation.getSource()).ifPresent(s -> json.add("source", s));
+        Optional.ofNullable(correlation.getStart()).ifPresent(s -> json.add("start", s));
+        Optional.ofNullable(correlation.getUnits()).ifPresent(u -> json.add("units", u));
+        Optional.ofNullable(correlation.getEnd()).ifPresent(e -> json.add("end", e));
+        return json.build();
+    }
+
+    private static Long longOrNull(JsonObject json, String key) {
+        return Optional.ofNullable(json.getJsonNumber(key))
+                .map(JsonNumber::longValue)
+                .orElse(null);
+    }
+}
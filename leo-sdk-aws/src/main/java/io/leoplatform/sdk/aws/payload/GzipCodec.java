@@ -0,0 +1,49 @@
+package io.leoplatform.sdk.aws.payload;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * Gzip through the JDK's native zlib binding, with a configurable deflate level. Native deflaters are
+ * pooled and reset between payloads rather than allocated per stream and freed by finalization.
+ */
+final class GzipCodec implements CompressionCodec {
+    private static final Logger log = LoggerFactory.getLogger(GzipCodec.class);
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final AffinityPool<Deflater> deflaters;
+
+    GzipCodec(int level, int poolSize) {
+        this.deflaters = new AffinityPool<>(poolSize, () -> new Deflater(level, true), GzipCodec::recycle, Deflater::end);
+    }
+
+    @Override
+    public String name() {
+        return CodecType.GZIP.codec();
+    }
+
+    @Override
+    public OutputStream compressor(OutputStream out) throws IOException {
+        return PooledGzipOutputStream.open(out, deflaters, BUFFER_SIZE);
+    }
+
+    @Override
+    public void end() {
+        log.info("Deflater pool {}", deflaters);
+        deflaters.end();
+    }
+
+    PoolMetrics deflaterPool() {
+        return deflaters;
+    }
+
+    private static boolean recycle(Deflater deflater) {
+        deflater.reset();
+        return true;
+    }
+}
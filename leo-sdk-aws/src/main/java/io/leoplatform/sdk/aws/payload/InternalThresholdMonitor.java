@@ -8,7 +8,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import java.math.BigDecimal;
+import java.time.Clock;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
@@ -16,38 +16,65 @@ import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
-import static java.math.RoundingMode.HALF_EVEN;
-import static java.math.RoundingMode.HALF_UP;
-import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
+/**
+ * Switches the stream to failover from the rate of bytes over a sliding one second window.
+ * <p>
+ * Failover starts once the rate rises above <code>Stream.BytesPerSecondFailover</code> and clears once it falls
+ * to <code>Stream.BytesPerSecondRecovery</code>, 80% of the failover rate by default. Neither switch happens
+ * until the current state has held for <code>Stream.FailoverMinDwell</code> milliseconds, so a bursty loader
+ * does not flap between Kinesis and S3. Time is read from a {@link Clock}.
+ */
 @Singleton
 public class InternalThresholdMonitor implements ThresholdMonitor {
     private static final Logger log = LoggerFactory.getLogger(InternalThresholdMonitor.class);
 
     private final long maxBytesPerSecond;
-    private final BigDecimal warningThreshold;
-    private final ExecutorManager executorManager;
-    private final AtomicBoolean running;
+    private final long recoveryBytesPerSecond;
+    private final long warningBytesPerSecond;
+    private final long minDwell;
+    private final Clock clock;
+    private final AtomicBoolean running = new AtomicBoolean(true);
+    private final AtomicBoolean failover = new AtomicBoolean(false);
+    private final AtomicLong failovers = new AtomicLong();
     private final Lock lock = new ReentrantLock();
     private final Condition thresholdCheck = lock.newCondition();
-    private final AtomicLong currentLevel = new AtomicLong();
-    private final AtomicBoolean failover = new AtomicBoolean(false);
+    private final RateWindow window = new RateWindow();
+    private long lastChange;
+    private long peakBytesPerSecond = 0;
+    private boolean warned = false;
 
     @Inject
     public InternalThresholdMonitor(ConnectorConfig config, ExecutorManager executorManager) {
+        this(config, executorManager, Clock.systemUTC());
+    }
+
+    InternalThresholdMonitor(ConnectorConfig config, ExecutorManager executorManager, Clock clock) {
         maxBytesPerSecond = config.longValueOrElse("Stream.BytesPerSecondFailover", 50000L);
-        warningThreshold = eightyPercentOfMax();
-        this.executorManager = executorManager;
-        this.running = new AtomicBoolean(true);
+        warningBytesPerSecond = maxBytesPerSecond / 5 * 4;
+        recoveryBytesPerSecond = config.longValueOrElse("Stream.BytesPerSecondRecovery", warningBytesPerSecond);
+        minDwell = config.longValueOrElse("Stream.FailoverMinDwell", 10_000L);
+        this.clock = clock;
+        this.lastChange = clock.millis() - minDwell;
         if (maxBytesPerSecond > 0) {
+            validate();
             CompletableFuture.runAsync(this::checkThresholds, executorManager.get());
         }
     }
 
     @Override
     public void addBytes(Long bytes) {
-        currentLevel.addAndGet(bytes);
-        signalAll();
+        if (maxBytesPerSecond > 0) {
+            lock.lock();
+            try {
+                long now = clock.millis();
+                window.add(now, bytes);
+                evaluate(now);
+            } finally {
+                lock.unlock();
+            }
+        }
     }
 
     @Override
@@ -58,92 +85,107 @@ public class InternalThresholdMonitor implements ThresholdMonitor {
     @Override
     public void end() {
         running.set(false);
-        signalAll();
-    }
-
-    private void signalAll() {
         lock.lock();
         try {
+            failover.set(false);
             thresholdCheck.signalAll();
         } finally {
             lock.unlock();
         }
+        log.info("Peak of {} bytes/second with {} failover{}", peakBytesPerSecond, failovers.get(), failovers.get() == 1 ? "" : "s");
     }
 
-    private boolean wasOverThreshold() {
-        return currentLevel.getAndSet(0) > maxBytesPerSecond;
+    /**
+     * @return Bytes added over the last second
+     */
+    public long bytesPerSecond() {
+        lock.lock();
+        try {
+            return window.bytesPerSecond(clock.millis());
+        } finally {
+            lock.unlock();
+        }
     }
 
-    private boolean isOverThreshold() {
-        return currentLevel.get() > maxBytesPerSecond;
+    /**
+     * @return The highest rate seen by the monitor
+     */
+    public long peakBytesPerSecond() {
+        lock.lock();
+        try {
+            return peakBytesPerSecond;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    private void checkThresholds() {
-        do {
-            if (wasOverThreshold()) {
-                boolean wasFailover = failover.getAndSet(true);
-                if (!wasFailover) {
-                    log.info("Exceeded {} bytes/second", maxBytesPerSecond);
-                    log.warn("Failover enabled", maxBytesPerSecond);
-                }
-            } else {
-                CompletableFuture.runAsync(this::delayedClearCheck, executorManager.get());
-            }
+    /**
+     * @return Times the stream has entered failover
+     */
+    public long failovers() {
+        return failovers.get();
+    }
 
-            lock.lock();
-            try {
-                thresholdCheck.await(1, SECONDS);
-            } catch (InterruptedException i) {
-                running.set(false);
-                log.info("Threshold monitor stopped");
-            } finally {
-                lock.unlock();
-            }
-        } while (running.get());
-        failover.set(false);
+    /**
+     * Checks the rate at the clock's current time, so failover clears while no bytes are being added.
+     */
+    void evaluate() {
+        lock.lock();
+        try {
+            evaluate(clock.millis());
+        } finally {
+            lock.unlock();
+        }
     }
 
-    private BigDecimal percentageOfThreshold(BigDecimal level) {
-        return level
-                .divide(new BigDecimal(maxBytesPerSecond), HALF_EVEN)
-                .movePointRight(2)
-                .setScale(0, HALF_EVEN);
+    // Called with the lock held
+    private void evaluate(long now) {
+        long rate = window.bytesPerSecond(now);
+        peakBytesPerSecond = Math.max(peakBytesPerSecond, rate);
+        boolean dwelled = now - lastChange >= minDwell;
+        if (!failover.get() && rate > maxBytesPerSecond && dwelled) {
+            failover.set(true);
+            lastChange = now;
+            failovers.incrementAndGet();
+            log.info("Exceeded {} bytes/second at {}", maxBytesPerSecond, rate);
+            log.warn("Failover enabled");
+        } else if (failover.get() && rate <= recoveryBytesPerSecond && dwelled) {
+            failover.set(false);
+            lastChange = now;
+            log.info("Cleared failover at {} bytes/second", rate);
+        } else if (!failover.get()) {
+            warnApproaching(rate);
+        }
     }
 
-    private void delayedClearCheck() {
-        if (approachingThreshold()) {
-            thresholdWarning();
+    private void warnApproaching(long rate) {
+        if (rate > warningBytesPerSecond && !warned) {
+            log.warn("Bytes per second are currently {}% of your failover threshold", rate * 100 / maxBytesPerSecond);
         }
+        warned = rate > warningBytesPerSecond;
+    }
+
+    private void checkThresholds() {
         lock.lock();
         try {
-            thresholdCheck.await(10, SECONDS);
-            if (running.get() && failover.get() && isOverThreshold()) {
-                log.warn("Failover remains in place");
-            } else if (failover.get()) {
-                failover.set(false);
-                log.info("Cleared failover");
+            while (running.get()) {
+                evaluate(clock.millis());
+                thresholdCheck.await(RateWindow.BUCKET_MILLIS, MILLISECONDS);
             }
         } catch (InterruptedException i) {
             running.set(false);
+            log.info("Threshold monitor stopped");
         } finally {
             lock.unlock();
         }
     }
 
-    private BigDecimal eightyPercentOfMax() {
-        return new BigDecimal(maxBytesPerSecond)
-                .multiply(new BigDecimal(".8"))
-                .setScale(0, HALF_UP);
-    }
-
-    private boolean approachingThreshold() {
-        BigDecimal level = new BigDecimal(currentLevel.get());
-        return level.compareTo(warningThreshold) > 0;
-    }
-
-    private void thresholdWarning() {
-        BigDecimal level = new BigDecimal(currentLevel.get());
-        BigDecimal percentageOfThreshold = percentageOfThreshold(level);
-        log.warn("Bytes per second are currently {}% of your failover threshold", percentageOfThreshold);
+    private void validate() {
+        if (recoveryBytesPerSecond < 0 || recoveryBytesPerSecond > maxBytesPerSecond) {
+            throw new IllegalArgumentException("Stream.BytesPerSecondRecovery must be between 0 and " + maxBytesPerSecond);
+        }
+        if (minDwell < 0) {
+            throw new IllegalArgumentException("Stream.FailoverMinDwell must not be negative");
+        }
     }
 }
@@ -0,0 +1,32 @@
+package io.leoplatform.sdk.aws.payload;
+
+import com.jcraft.jzlib.Deflater;
+import com.jcraft.jzlib.GZIPOutputStream;
+import com.jcraft.jzlib.JZlib;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Gzip through the pure-Java JZlib deflater, with a configurable deflate level.
+ */
+final class JZlibCodec implements CompressionCodec {
+    private static final int BUFFER_SIZE = 8192;
+    private static final int GZIP_WINDOW_BITS = JZlib.MAX_WBITS + 16;
+
+    private final int level;
+
+    JZlibCodec(int level) {
+        this.level = level;
+    }
+
+    @Override
+    public String name() {
+        return CodecType.JZLIB.codec();
+    }
+
+    @Override
+    public OutputStream compressor(OutputStream out) throws IOException {
+        return new GZIPOutputStream(out, new Deflater(level, GZIP_WINDOW_BITS), BUFFER_SIZE, true);
+    }
+}
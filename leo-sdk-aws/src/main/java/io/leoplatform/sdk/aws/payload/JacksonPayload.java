@@ -10,9 +10,11 @@ import io.leoplatform.sdk.payload.EventPayload;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Optional;
 
 import static com.fasterxml.jackson.annotation.JsonInclude.Include.ALWAYS;
+import static com.fasterxml.jackson.core.JsonGenerator.Feature.AUTO_CLOSE_TARGET;
 
 @Singleton
 public final class JacksonPayload implements S3JsonPayload {
@@ -48,6 +50,15 @@ public final class JacksonPayload implements S3JsonPayload {
         }
     }
 
+    @Override
+    public void toJsonStream(EntityPayload entityPayload, OutputStream out) {
+        try {
+            mapper.writeValue(out, entityPayload);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write JSON payload", e);
+        }
+    }
+
     @Override
     public EntityPayload toEntity(EventPayload eventPayload) {
         return Optional.ofNullable(eventPayload)
@@ -58,6 +69,7 @@ public final class JacksonPayload implements S3JsonPayload {
     private static ObjectMapper buildMapper() {
         return new ObjectMapper()
                 .setSerializationInclusion(ALWAYS)
-                .registerModule(new JSR353Module());
+                .registerModule(new JSR353Module())
+                .configure(AUTO_CLOSE_TARGET, false);
     }
 }
@@ -0,0 +1,24 @@
+package io.leoplatform.sdk.aws.payload;
+
+import net.jpountz.lz4.LZ4FrameOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static net.jpountz.lz4.LZ4FrameOutputStream.BLOCKSIZE.SIZE_64KB;
+
+/**
+ * Standard LZ4 frames using the fast compressor. LZ4 has no level setting.
+ */
+final class Lz4Codec implements CompressionCodec {
+
+    @Override
+    public String name() {
+        return CodecType.LZ4.codec();
+    }
+
+    @Override
+    public OutputStream compressor(OutputStream out) throws IOException {
+        return new LZ4FrameOutputStream(out, SIZE_64KB);
+    }
+}
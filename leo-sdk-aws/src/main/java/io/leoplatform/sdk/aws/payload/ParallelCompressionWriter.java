@@ -0,0 +1,153 @@
+package io.leoplatform.sdk.aws.payload;
+
+import io.leoplatform.sdk.ExecutorManager;
+import io.leoplatform.sdk.aws.s3.S3Payload;
+import io.leoplatform.sdk.payload.EventPayload;
+import io.leoplatform.sdk.payload.FileSegment;
+import io.leoplatform.sdk.payload.StorageEventOffset;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.Collections.singletonList;
+
+/**
+ * Splits a large batch into chunks that are compressed concurrently on the shared executor, pigz-style.
+ * Each chunk is a complete gzip member, so the chunks may be written back to back as a single multi-member
+ * file.
+ * <p>
+ * The calling thread compresses chunks itself alongside the helpers it submits. Helpers that start after
+ * every chunk has been claimed simply return, so waiting on an exhausted executor cannot deadlock.
+ */
+public final class ParallelCompressionWriter implements CompressionWriter {
+    private final CompressionWriter compression;
+    private final ExecutorManager executorManager;
+    private final int maxChunks;
+    private final int minChunkRecords;
+
+    public ParallelCompressionWriter(CompressionWriter compression, ExecutorManager executorManager,
+                                     int maxChunks, int minChunkRecords) {
+        if (maxChunks < 1 || minChunkRecords < 1) {
+            throw new IllegalArgumentException("Chunk count and size must be positive");
+        }
+        this.compression = compression;
+        this.executorManager = executorManager;
+        this.maxChunks = maxChunks;
+        this.minChunkRecords = minChunkRecords;
+    }
+
+    /**
+     * Compresses the batch as one segment containing a gzip member per chunk. The offset covers the whole
+     * segment; use {@link #compressSegments(Collection)} to keep an offset for each chunk.
+     */
+    @Override
+    public FileSegment compressWithOffsets(Collection<EventPayload> payloads) {
+        List<FileSegment> segments = compressSegments(payloads);
+        return segments.size() == 1 ? segments.get(0) : stitch(segments);
+    }
+
+    /**
+     * Compresses the batch into one segment per chunk, in payload order, each with offsets relative to
+     * itself.
+     */
+    @Override
+    public List<FileSegment> compressSegments(Collection<EventPayload> payloads) {
+        List<List<EventPayload>> chunks = chunk(validate(payloads));
+        if (chunks.size() == 1) {
+            return singletonList(compression.compressWithOffsets(chunks.get(0)));
+        }
+
+        FileSegment[] segments = new FileSegment[chunks.size()];
+        AtomicInteger nextChunk = new AtomicInteger();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        CountDownLatch complete = new CountDownLatch(chunks.size());
+        Runnable worker = () -> {
+            int chunk;
+            while ((chunk = nextChunk.getAndIncrement()) < chunks.size()) {
+                try {
+                    segments[chunk] = compression.compressWithOffsets(chunks.get(chunk));
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    complete.countDown();
+                }
+            }
+        };
+
+        try {
+            for (int helper = 1; helper < chunks.size(); helper++) {
+                executorManager.get().execute(worker);
+            }
+        } catch (RejectedExecutionException e) {
+            // The calling thread finishes whatever the helpers cannot
+        }
+        worker.run();
+        awaitChunks(complete);
+
+        Optional.ofNullable(failure.get()).ifPresent(e -> {
+            throw e;
+        });
+        return Arrays.asList(segments);
+    }
+
+    @Override
+    public ByteBuffer compress(S3Payload payload) {
+        return compression.compress(payload);
+    }
+
+    private List<List<EventPayload>> chunk(Collection<EventPayload> payloads) {
+        List<EventPayload> all = new ArrayList<>(payloads);
+        int chunkCount = Math.max(1, Math.min(maxChunks, all.size() / minChunkRecords));
+        int chunkSize = (all.size() + chunkCount - 1) / chunkCount;
+        List<List<EventPayload>> chunks = new ArrayList<>(chunkCount);
+        for (int from = 0; from < all.size(); from += chunkSize) {
+            chunks.add(all.subList(from, Math.min(all.size(), from + chunkSize)));
+        }
+        return chunks;
+    }
+
+    private FileSegment stitch(List<FileSegment> segments) {
+        int length = segments.stream()
+                .map(FileSegment::getSegment)
+                .mapToInt(b -> b.length)
+                .sum();
+        byte[] stitched = new byte[length];
+        int pos = 0;
+        long records = 0L;
+        long size = 0L;
+        for (FileSegment segment : segments) {
+            byte[] member = segment.getSegment();
+            System.arraycopy(member, 0, stitched, pos, member.length);
+            pos += member.length;
+            records += segment.getOffset().getRecords();
+            size += segment.getOffset().getSize();
+        }
+
+        String queue = segments.get(0).getOffset().getEvent();
+        StorageEventOffset seo = new StorageEventOffset(queue, 0L, records - 1, size, 0L, records, (long) length, 0L);
+        return new FileSegment(seo, stitched);
+    }
+
+    private void awaitChunks(CountDownLatch complete) {
+        try {
+            complete.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while compressing chunks", e);
+        }
+    }
+
+    private Collection<EventPayload> validate(Collection<EventPayload> payloads) {
+        return Optional.ofNullable(payloads)
+                .filter(p -> !p.isEmpty())
+                .orElseThrow(() -> new IllegalArgumentException("Missing payload"));
+    }
+}
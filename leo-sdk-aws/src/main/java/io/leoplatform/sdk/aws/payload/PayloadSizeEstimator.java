@@ -0,0 +1,77 @@
+package io.leoplatform.sdk.aws.payload;
+
+import io.leoplatform.sdk.payload.EventPayload;
+
+import javax.json.JsonArray;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Estimates the serialized size of an event without serializing it, by walking the JSON tree. Strings count
+ * as UTF-16 length (exact for ASCII, low for multi-byte text) and escapes are ignored. Good enough to size
+ * batches whose actual compressed size is measured afterwards.
+ */
+public final class PayloadSizeEstimator {
+    // "payload", "id", "event", "event_source_timestamp" and "timestamp" with bot, queue and epoch values
+    private static final long ENVELOPE_BYTES = 160L;
+    // "correlation_id" with a source name and up to three offsets
+    private static final long CORRELATION_BYTES = 128L;
+
+    public long estimate(EventPayload payload) {
+        long correlation = Optional.ofNullable(payload.streamCorrelation())
+                .map(c -> CORRELATION_BYTES)
+                .orElse(0L);
+        return ENVELOPE_BYTES + correlation + estimate(payload.payload()) + 1;
+    }
+
+    long estimate(JsonValue value) {
+        if (value == null) {
+            return 4L;
+        }
+        switch (value.getValueType()) {
+            case OBJECT:
+                JsonObject object = (JsonObject) value;
+                long objectSize = 1L + Math.max(1, object.size());
+                for (Map.Entry<String, JsonValue> field : object.entrySet()) {
+                    objectSize += field.getKey().length() + 3 + estimate(field.getValue());
+                }
+                return objectSize;
+            case ARRAY:
+                JsonArray array = (JsonArray) value;
+                long arraySize = 1L + Math.max(1, array.size());
+                for (JsonValue element : array) {
+                    arraySize += estimate(element);
+                }
+                return arraySize;
+            case STRING:
+                return ((JsonString) value).getChars().length() + 2;
+            case NUMBER:
+                JsonNumber number = (JsonNumber) value;
+                return number.isIntegral() ? digits(number.longValue()) : number.toString().length();
+            case TRUE:
+                return 4L;
+            case FALSE:
+                return 5L;
+            default:
+                return 4L;
+        }
+    }
+
+    private static long digits(long value) {
+        if (value == Long.MIN_VALUE) {
+            return 20L;
+        }
+        long sign = value < 0 ? 1L : 0L;
+        long abs = Math.abs(value);
+        long digits = 1L;
+        while (abs >= 10L) {
+            abs /= 10L;
+            digits++;
+        }
+        return sign + digits;
+    }
+}
@@ -0,0 +1,27 @@
+package io.leoplatform.sdk.aws.payload;
+
+/**
+ * Counters for a pool of reusable compression resources.
+ */
+public interface PoolMetrics {
+    /**
+     * @return Borrows satisfied by an idle pooled instance
+     */
+    long hits();
+
+    /**
+     * @return Borrows that had to create a new instance
+     */
+    long misses();
+
+    /**
+     * @return Returned instances that were released because the pool was full, closed or the instance was
+     * not reusable
+     */
+    long discards();
+
+    /**
+     * @return Instances currently idle in the pool
+     */
+    int size();
+}
@@ -0,0 +1,87 @@
+package io.leoplatform.sdk.aws.payload;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Gzip member written through a borrowed raw {@link Deflater}. The output matches
+ * {@link java.util.zip.GZIPOutputStream}, but closing the stream hands the deflater back to its pool
+ * instead of ending it.
+ */
+final class PooledGzipOutputStream extends DeflaterOutputStream {
+    private static final byte[] HEADER = {
+            (byte) 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0
+    };
+    private static final int TRAILER_SIZE = 8;
+
+    private final AffinityPool<Deflater> pool;
+    private final CRC32 crc = new CRC32();
+    private boolean released = false;
+
+    private PooledGzipOutputStream(OutputStream out, AffinityPool<Deflater> pool, Deflater deflater, int size) {
+        super(out, deflater, size);
+        this.pool = pool;
+    }
+
+    /**
+     * Borrows a deflater and writes the gzip header. The deflater goes back to the pool if the stream cannot be
+     * opened.
+     */
+    static PooledGzipOutputStream open(OutputStream out, AffinityPool<Deflater> pool, int size) throws IOException {
+        Deflater deflater = pool.borrow();
+        boolean opened = false;
+        try {
+            PooledGzipOutputStream gzip = new PooledGzipOutputStream(out, pool, deflater, size);
+            out.write(HEADER);
+            opened = true;
+            return gzip;
+        } finally {
+            if (!opened) {
+                pool.release(deflater);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        super.write(b, off, len);
+        crc.update(b, off, len);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (!def.finished()) {
+            super.finish();
+            writeTrailer();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            if (!released) {
+                released = true;
+                pool.release(def);
+            }
+        }
+    }
+
+    private void writeTrailer() throws IOException {
+        byte[] trailer = new byte[TRAILER_SIZE];
+        writeInt((int) crc.getValue(), trailer, 0);
+        writeInt((int) def.getBytesRead(), trailer, 4);
+        out.write(trailer);
+    }
+
+    private static void writeInt(int value, byte[] buf, int offset) {
+        buf[offset] = (byte) value;
+        buf[offset + 1] = (byte) (value >> 8);
+        buf[offset + 2] = (byte) (value >> 16);
+        buf[offset + 3] = (byte) (value >> 24);
+    }
+}
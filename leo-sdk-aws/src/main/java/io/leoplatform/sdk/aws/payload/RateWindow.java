@@ -0,0 +1,42 @@
+package io.leoplatform.sdk.aws.payload;
+
+import java.util.Arrays;
+
+/**
+ * Bytes added over the last second, counted in ten 100ms buckets. Buckets fall out of the window as time
+ * moves on, so the rate decays a tenth at a time instead of dropping to zero once a second.
+ * <p>
+ * Not thread safe.
+ */
+final class RateWindow {
+    static final long BUCKET_MILLIS = 100L;
+    private static final int BUCKETS = 10;
+
+    private final long[] bytes = new long[BUCKETS];
+    private final long[] ticks = new long[BUCKETS];
+
+    RateWindow() {
+        Arrays.fill(ticks, Long.MIN_VALUE);
+    }
+
+    void add(long nowMillis, long added) {
+        long tick = nowMillis / BUCKET_MILLIS;
+        int i = (int) Math.floorMod(tick, (long) BUCKETS);
+        if (ticks[i] != tick) {
+            ticks[i] = tick;
+            bytes[i] = 0;
+        }
+        bytes[i] += added;
+    }
+
+    long bytesPerSecond(long nowMillis) {
+        long tick = nowMillis / BUCKET_MILLIS;
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (ticks[i] <= tick && ticks[i] > tick - BUCKETS) {
+                total += bytes[i];
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,54 @@
+package io.leoplatform.sdk.aws.payload;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Growable byte sink that is pooled between compressions so that each batch does not allocate (and then
+ * copy out of) a fresh {@link java.io.ByteArrayOutputStream}. Buffers that grew past {@code MAX_RETAINED}
+ * are not returned to the pool.
+ */
+final class ReusableOutputBuffer extends OutputStream {
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    private static final int MAX_RETAINED = 8 * 1024 * 1024;
+
+    private byte[] buf = new byte[INITIAL_CAPACITY];
+    private int count = 0;
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(count + 1);
+        buf[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(count + len);
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buf, count);
+    }
+
+    /**
+     * Empties the buffer for reuse.
+     *
+     * @return Whether the backing array is small enough to keep pooled
+     */
+    boolean reset() {
+        count = 0;
+        return buf.length <= MAX_RETAINED;
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity < 0) {
+            throw new IllegalStateException("Compressed payload exceeds maximum array size");
+        }
+        if (minCapacity > buf.length) {
+            int newCapacity = Math.max(buf.length << 1, minCapacity);
+            buf = Arrays.copyOf(buf, newCapacity < 0 ? Integer.MAX_VALUE - 8 : newCapacity);
+        }
+    }
+}
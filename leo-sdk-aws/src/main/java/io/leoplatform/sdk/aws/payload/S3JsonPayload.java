@@ -1,8 +1,13 @@
 package io.leoplatform.sdk.aws.payload;
 
 import io.leoplatform.sdk.aws.s3.S3Payload;
+import io.leoplatform.sdk.payload.EntityPayload;
 import io.leoplatform.sdk.payload.StreamJsonPayload;
 
+import java.io.OutputStream;
+
 public interface S3JsonPayload extends StreamJsonPayload {
     String toJsonString(S3Payload s3Payload);
+
+    void toJsonStream(EntityPayload entityPayload, OutputStream out);
 }
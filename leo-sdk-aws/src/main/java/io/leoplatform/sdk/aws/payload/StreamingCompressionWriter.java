@@ -0,0 +1,127 @@
+package io.leoplatform.sdk.aws.payload;
+
+import io.leoplatform.sdk.aws.s3.S3Payload;
+import io.leoplatform.sdk.payload.EntityPayload;
+import io.leoplatform.sdk.payload.EventPayload;
+import io.leoplatform.sdk.payload.FileSegment;
+import io.leoplatform.sdk.payload.StorageEventOffset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Serializes each entity directly into a {@link CompressionCodec} stream backed by a pooled output
+ * buffer. Unlike the string-joining writers, no intermediate JSON {@code String} or its byte copies are
+ * built; the inflated size is counted on the way into the compressor.
+ */
+@Singleton
+public final class StreamingCompressionWriter implements CompressionWriter {
+    private static final Logger log = LoggerFactory.getLogger(StreamingCompressionWriter.class);
+
+    private static final int NEWLINE = '\n';
+
+    private final S3JsonPayload streamJson;
+    private final CompressionCodec codec;
+    private final AffinityPool<ReusableOutputBuffer> buffers;
+
+    @Inject
+    public StreamingCompressionWriter(S3JsonPayload streamJson, CompressionCodec codec) {
+        this(streamJson, codec, CodecType.DEFAULT_POOL_SIZE);
+    }
+
+    public StreamingCompressionWriter(S3JsonPayload streamJson, CompressionCodec codec, int poolSize) {
+        this.streamJson = streamJson;
+        this.codec = codec;
+        this.buffers = new AffinityPool<>(poolSize, ReusableOutputBuffer::new, ReusableOutputBuffer::reset, b -> {
+        });
+        if (!isGzip(codec)) {
+            log.warn("{} compression configured: consumers expecting gzip will not be able to read these events", codec.name());
+        }
+    }
+
+    @Override
+    public FileSegment compressWithOffsets(Collection<EventPayload> payloads) {
+        ReusableOutputBuffer buffer = buffers.borrow();
+        try {
+            String queue = null;
+            long records = 0L;
+            CountingOutputStream counter;
+            try (OutputStream compressor = codec.compressor(buffer)) {
+                counter = new CountingOutputStream(compressor);
+                for (EventPayload payload : validate(payloads)) {
+                    EntityPayload entity = streamJson.toEntity(payload);
+                    queue = Optional.ofNullable(queue).orElse(entity.getEvent());
+                    streamJson.toJsonStream(entity, counter);
+                    counter.write(NEWLINE);
+                    records++;
+                }
+            }
+            byte[] compressedPayload = buffer.toByteArray();
+
+            Long start = 0L;
+            Long end = records - 1;
+            Long size = counter.getCount();
+            Long offset = 0L;
+            Long gzipSize = (long) compressedPayload.length;
+            Long gzipOffset = 0L;
+
+            StorageEventOffset seo = new StorageEventOffset(validQueue(queue), start, end, size, offset, records, gzipSize, gzipOffset);
+            return new FileSegment(seo, compressedPayload);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not compress payload", e);
+        } finally {
+            buffers.release(buffer);
+        }
+    }
+
+    @Override
+    public ByteBuffer compress(S3Payload payload) {
+        ReusableOutputBuffer buffer = buffers.borrow();
+        try {
+            try (OutputStream compressor = codec.compressor(buffer)) {
+                compressor.write(streamJson.toJsonString(payload).getBytes(UTF_8));
+                compressor.write(NEWLINE);
+            }
+            return ByteBuffer.wrap(buffer.toByteArray());
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not compress payload", e);
+        } finally {
+            buffers.release(buffer);
+        }
+    }
+
+    @Override
+    public void end() {
+        log.info("Compression buffer pool {}", buffers);
+        buffers.end();
+        codec.end();
+    }
+
+    public PoolMetrics bufferPool() {
+        return buffers;
+    }
+
+    private static boolean isGzip(CompressionCodec codec) {
+        return codec.name().equals(CodecType.GZIP.codec()) || codec.name().equals(CodecType.JZLIB.codec());
+    }
+
+    private String validQueue(String queue) {
+        return Optional.ofNullable(queue)
+                .orElseThrow(() -> new IllegalArgumentException("No queue found in payload"));
+    }
+
+    private Collection<EventPayload> validate(Collection<EventPayload> payloads) {
+        return Optional.ofNullable(payloads)
+                .filter(p -> !p.isEmpty())
+                .orElseThrow(() -> new IllegalArgumentException("Missing payload"));
+    }
+}
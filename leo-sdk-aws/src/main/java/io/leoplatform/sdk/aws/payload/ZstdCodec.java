@@ -0,0 +1,29 @@
+package io.leoplatform.sdk.aws.payload;
+
+import com.github.luben.zstd.ZstdOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Zstandard frames, levels 1-22.
+ */
+final class ZstdCodec implements CompressionCodec {
+    private static final int ZSTD_DEFAULT_LEVEL = 3;
+
+    private final int level;
+
+    ZstdCodec(int level) {
+        this.level = level == CodecType.DEFAULT_LEVEL ? ZSTD_DEFAULT_LEVEL : level;
+    }
+
+    @Override
+    public String name() {
+        return CodecType.ZSTD.codec();
+    }
+
+    @Override
+    public OutputStream compressor(OutputStream out) throws IOException {
+        return new ZstdOutputStream(out, level);
+    }
+}
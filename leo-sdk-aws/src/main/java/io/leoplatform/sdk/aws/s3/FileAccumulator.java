@@ -0,0 +1,80 @@
+package io.leoplatform.sdk.aws.s3;
+
+import io.leoplatform.sdk.payload.FileSegment;
+import io.leoplatform.sdk.payload.StorageEventOffset;
+
+import java.util.*;
+
+/**
+ * The segments of one S3 file with running totals. Each segment's offset within the file is computed as it is
+ * added, so checking a file's limits and building its pointer event never walk the segments again.
+ * <p>
+ * Not thread safe.
+ */
+final class FileAccumulator {
+    private final Queue<FileSegment> segments = new LinkedList<>();
+    private final List<StorageEventOffset> offsets = new ArrayList<>();
+    private long records = 0;
+    private long size = 0;
+    private long gzipSize = 0;
+
+    static FileAccumulator of(Collection<FileSegment> segments) {
+        FileAccumulator file = new FileAccumulator();
+        segments.forEach(file::add);
+        return file;
+    }
+
+    void add(FileSegment segment) {
+        segments.add(segment);
+        count(segment.getOffset());
+    }
+
+    /**
+     * Adds a segment's offset without keeping its bytes, for files whose body is held elsewhere.
+     */
+    void count(StorageEventOffset o) {
+        long end = records + o.getRecords() - 1;
+        offsets.add(new StorageEventOffset(o.getEvent(), records, end, o.getSize(), size, o.getRecords(), o.getGzipSize(), gzipSize));
+        records += o.getRecords();
+        size += o.getSize();
+        gzipSize += o.getGzipSize();
+    }
+
+    boolean fits(StorageEventOffset next, long maxGzipSize, long maxRecords) {
+        return gzipSize + next.getGzipSize() < maxGzipSize && records + next.getRecords() < maxRecords;
+    }
+
+    /**
+     * @return The segments added, in order. Consumers may drain the queue once the bytes are written elsewhere.
+     */
+    Queue<FileSegment> segments() {
+        return segments;
+    }
+
+    /**
+     * @return Each segment's offset relative to the start of the file
+     */
+    List<StorageEventOffset> offsets() {
+        return Collections.unmodifiableList(offsets);
+    }
+
+    String event() {
+        return Optional.of(offsets)
+                .filter(o -> !o.isEmpty())
+                .map(o -> o.get(0))
+                .map(StorageEventOffset::getEvent)
+                .orElseThrow(() -> new IllegalArgumentException("Missing storage event"));
+    }
+
+    long records() {
+        return records;
+    }
+
+    long size() {
+        return size;
+    }
+
+    long gzipSize() {
+        return gzipSize;
+    }
+}
@@ -0,0 +1,328 @@
+package io.leoplatform.sdk.aws.s3;
+
+import io.leoplatform.sdk.payload.FileSegment;
+import io.leoplatform.sdk.payload.StorageEventOffset;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.*;
+
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * An append-only spool of S3 files in fixed-size, memory-mapped segment files. Each file is written as one
+ * slice: a header naming the file and its event offsets, then the compressed body. A segment is reused once
+ * it is full and every slice in it has been uploaded.
+ * <p>
+ * Slices are marked pending once fully written and done once their upload has been processed, so a restarted
+ * process can find and re-upload anything left pending in the spool directory.
+ */
+final class MappedSpool {
+    private static final Logger log = LoggerFactory.getLogger(MappedSpool.class);
+
+    private static final int MAGIC = 0x4C454F53;
+    private static final byte WRITING = 0;
+    private static final byte PENDING = 1;
+    private static final byte DONE = 2;
+    // magic, state, header length, body length
+    private static final int FIXED_HEADER = 4 + 1 + 4 + 8;
+    private static final int TERMINATOR = 4;
+    private static final long NULL_VALUE = Long.MIN_VALUE;
+    private static final int MAX_IDLE_SEGMENTS = 2;
+    private static final String PREFIX = "leo-spool-";
+    private static final String SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Deque<Segment> idle = new ArrayDeque<>();
+    private final List<PendingMappedUpload> recovered = new LinkedList<>();
+    private Segment current;
+    private int nextId = 0;
+
+    MappedSpool(Path directory, long segmentSize) {
+        if (segmentSize < FIXED_HEADER + TERMINATOR || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid spool segment size: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = (int) segmentSize;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not create spool directory " + directory, e);
+        }
+        recover();
+    }
+
+    /**
+     * @return Uploads left pending by an earlier process using the same spool directory
+     */
+    synchronized List<PendingMappedUpload> recovered() {
+        List<PendingMappedUpload> uploads = new ArrayList<>(recovered);
+        recovered.clear();
+        return uploads;
+    }
+
+    /**
+     * Writes the segments of one S3 file to the spool.
+     */
+    synchronized PendingMappedUpload append(String fileName, FileAccumulator file) {
+        Queue<FileSegment> segments = file.segments();
+        long bodyLength = 0;
+        for (FileSegment segment : segments) {
+            bodyLength += segment.getSegment().length;
+        }
+        byte[] header = header(fileName, file.offsets());
+        long sliceLength = FIXED_HEADER + header.length + bodyLength;
+        Segment segment = segmentFor(sliceLength + TERMINATOR);
+
+        int start = segment.position;
+        ByteBuffer buffer = segment.buffer.duplicate();
+        buffer.position(start);
+        buffer.putInt(MAGIC).put(WRITING).putInt(header.length).putLong(bodyLength).put(header);
+        int bodyStart = buffer.position();
+        MessageDigest md5 = DigestUtils.getMd5Digest();
+        FileSegment fs;
+        while ((fs = segments.poll()) != null) {
+            buffer.put(fs.getSegment());
+            md5.update(fs.getSegment());
+        }
+        buffer.putInt(0);
+        segment.buffer.put(start + 4, PENDING);
+        segment.buffer.force();
+
+        segment.position = (int) (start + sliceLength);
+        segment.outstanding++;
+        Slice slice = new Slice(segment, start, bodyStart, (int) bodyLength, new String(Base64.encodeBase64(md5.digest())));
+        return new PendingMappedUpload(fileName, file, slice);
+    }
+
+    /**
+     * Deletes every segment with nothing left to upload.
+     */
+    synchronized void close() {
+        Optional.ofNullable(current)
+                .filter(s -> s.outstanding == 0)
+                .ifPresent(s -> {
+                    delete(s);
+                    current = null;
+                });
+        idle.forEach(this::delete);
+        idle.clear();
+    }
+
+    private synchronized void release(Slice slice) {
+        Segment segment = slice.segment;
+        segment.buffer.put(slice.start + 4, DONE);
+        segment.outstanding--;
+        if (segment.sealed && segment.outstanding == 0) {
+            recycle(segment);
+        }
+    }
+
+    private Segment segmentFor(long length) {
+        if (current != null && current.capacity() - current.position >= length) {
+            return current;
+        }
+        if (current != null) {
+            current.sealed = true;
+            if (current.outstanding == 0) {
+                recycle(current);
+            }
+        }
+        if (!idle.isEmpty() && idle.peek().capacity() >= length) {
+            current = idle.poll();
+        } else {
+            current = create(Math.max(segmentSize, length));
+        }
+        return current;
+    }
+
+    private Segment create(long capacity) {
+        Path path = directory.resolve(String.format("%s%06d%s", PREFIX, nextId++, SUFFIX));
+        try (FileChannel channel = FileChannel.open(path, CREATE, READ, WRITE)) {
+            return new Segment(path, channel.map(READ_WRITE, 0, capacity));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not create spool segment " + path, e);
+        }
+    }
+
+    private void recycle(Segment segment) {
+        if (segment == current) {
+            current = null;
+        }
+        if (segment.capacity() == segmentSize && idle.size() < MAX_IDLE_SEGMENTS) {
+            segment.buffer.putInt(0, 0);
+            segment.position = 0;
+            segment.sealed = false;
+            idle.add(segment);
+        } else {
+            delete(segment);
+        }
+    }
+
+    private void delete(Segment segment) {
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            log.warn("Could not delete spool segment {}", segment.path);
+        }
+    }
+
+    private void recover() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path path : files) {
+                nextId = Math.max(nextId, segmentId(path) + 1);
+                recover(path);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read spool directory " + directory, e);
+        }
+        if (!recovered.isEmpty()) {
+            log.info("Recovered {} pending S3 uploads from {}", recovered.size(), directory);
+        }
+    }
+
+    private void recover(Path path) throws IOException {
+        Segment segment;
+        try (FileChannel channel = FileChannel.open(path, READ, WRITE)) {
+            segment = new Segment(path, channel.map(READ_WRITE, 0, channel.size()));
+        }
+        segment.sealed = true;
+        ByteBuffer buffer = segment.buffer.duplicate();
+        while (buffer.remaining() >= FIXED_HEADER && buffer.getInt(buffer.position()) == MAGIC) {
+            int start = buffer.position();
+            buffer.getInt();
+            byte state = buffer.get();
+            int headerLength = buffer.getInt();
+            long bodyLength = buffer.getLong();
+            long end = (long) buffer.position() + headerLength + bodyLength;
+            if (headerLength < 0 || bodyLength < 0 || end > buffer.limit()) {
+                log.warn("Truncated slice in spool segment {}", path);
+                break;
+            }
+            if (state == PENDING) {
+                byte[] header = new byte[headerLength];
+                buffer.get(header);
+                int bodyStart = buffer.position();
+                ByteBuffer body = segment.buffer.duplicate();
+                body.position(bodyStart).limit((int) end);
+                MessageDigest md5 = DigestUtils.getMd5Digest();
+                md5.update(body);
+                segment.outstanding++;
+                Slice slice = new Slice(segment, start, bodyStart, (int) bodyLength, new String(Base64.encodeBase64(md5.digest())));
+                recovered.add(readHeader(header, slice));
+            }
+            buffer.position((int) end);
+        }
+        if (segment.outstanding == 0) {
+            delete(segment);
+        }
+    }
+
+    private static int segmentId(Path path) {
+        String name = path.getFileName().toString();
+        try {
+            return Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static byte[] header(String fileName, List<StorageEventOffset> offsets) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + offsets.size() * 96);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(fileName);
+            out.writeInt(offsets.size());
+            for (StorageEventOffset o : offsets) {
+                out.writeUTF(o.getEvent());
+                for (Long value : Arrays.asList(o.getStart(), o.getEnd(), o.getSize(), o.getOffset(),
+                        o.getRecords(), o.getGzipSize(), o.getGzipOffset())) {
+                    out.writeLong(Optional.ofNullable(value).orElse(NULL_VALUE));
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write spool header for " + fileName, e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static PendingMappedUpload readHeader(byte[] header, Slice slice) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(header))) {
+            String fileName = in.readUTF();
+            int count = in.readInt();
+            FileAccumulator file = new FileAccumulator();
+            for (int i = 0; i < count; i++) {
+                String event = in.readUTF();
+                Long[] values = new Long[7];
+                for (int v = 0; v < values.length; v++) {
+                    long value = in.readLong();
+                    values[v] = value == NULL_VALUE ? null : value;
+                }
+                file.count(new StorageEventOffset(event, values[0], values[1], values[2], values[3], values[4], values[5], values[6]));
+            }
+            return new PendingMappedUpload(fileName, file, slice);
+        }
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int position = 0;
+        private int outstanding = 0;
+        private boolean sealed = false;
+
+        private Segment(Path path, MappedByteBuffer buffer) {
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        private int capacity() {
+            return buffer.capacity();
+        }
+    }
+
+    final class Slice {
+        private final Segment segment;
+        private final int start;
+        private final int bodyStart;
+        private final int length;
+        private final String contentMD5;
+
+        private Slice(Segment segment, int start, int bodyStart, int length, String contentMD5) {
+            this.segment = segment;
+            this.start = start;
+            this.bodyStart = bodyStart;
+            this.length = length;
+            this.contentMD5 = contentMD5;
+        }
+
+        ByteBuffer body() {
+            ByteBuffer body = segment.buffer.duplicate();
+            body.position(bodyStart).limit(bodyStart + length);
+            return body.slice();
+        }
+
+        int length() {
+            return length;
+        }
+
+        String contentMD5() {
+            return contentMD5;
+        }
+
+        void release() {
+            MappedSpool.this.release(this);
+        }
+    }
+}
@@ -4,33 +4,45 @@ import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.transfer.model.UploadResult;
 import io.leoplatform.sdk.payload.FileSegment;
-import io.leoplatform.sdk.payload.StorageEventOffset;
 import io.leoplatform.sdk.payload.StorageStats;
 import io.leoplatform.sdk.payload.StorageUnits;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.io.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.*;
-import java.util.concurrent.atomic.AtomicLong;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Queue;
 
-import static java.nio.file.StandardOpenOption.DELETE_ON_CLOSE;
-import static java.util.stream.Collectors.toCollection;
-import static java.util.stream.Collectors.toList;
+import static java.nio.file.StandardOpenOption.WRITE;
 
+/**
+ * An S3 file spooled to local disk. The MD5 is computed while the segments are written, and the S3 client
+ * uploads straight from the file, so each byte passes through once.
+ */
 class PendingFileUpload implements PendingS3Upload {
+    private static final Logger log = LoggerFactory.getLogger(PendingFileUpload.class);
+
+    // The TransferManager default; parts above it are hashed by the client, not by a whole-object MD5
+    static final long MULTIPART_THRESHOLD = 16 * 1024 * 1024;
+
     private final String fileName;
     private final Path cachedFile;
-    private final Queue<StorageEventOffset> storageEventOffsets;
+    private final FileAccumulator file;
+    private long fileSize = 0;
+    private String contentMD5;
 
-    PendingFileUpload(String fileName, Queue<FileSegment> segments) {
+    PendingFileUpload(String fileName, FileAccumulator file) {
         this.fileName = fileName;
-        this.storageEventOffsets = segments.stream()
-                .map(FileSegment::getOffset)
-                .collect(toCollection(LinkedList::new));
-        this.cachedFile = toTempFile(segments);
+        this.file = file;
+        this.cachedFile = toTempFile(file.segments());
     }
 
     @Override
@@ -40,67 +52,57 @@ class PendingFileUpload implements PendingS3Upload {
 
     @Override
     public PutObjectRequest s3PutRequest(String name) {
-        try {
-            ObjectMetadata meta = new ObjectMetadata();
-            long fileSize = Files.size(cachedFile);
-            meta.setContentLength(fileSize);
+        ObjectMetadata meta = new ObjectMetadata();
+        meta.setContentLength(fileSize);
+        if (fileSize < MULTIPART_THRESHOLD) {
+            meta.setContentMD5(contentMD5);
+        }
+        return new PutObjectRequest(name, fileName, cachedFile.toFile())
+                .withMetadata(meta);
+    }
 
-            try (InputStream is = new BufferedInputStream(Files.newInputStream(cachedFile), 512)) {
-                byte[] resultByte = DigestUtils.md5(is);
-                String streamMD5 = new String(Base64.encodeBase64(resultByte));
-                meta.setContentMD5(streamMD5);
-            }
-            InputStream is = new BufferedInputStream(Files.newInputStream(cachedFile, DELETE_ON_CLOSE), 512);
-            return new PutObjectRequest(name, fileName, is, meta);
+    @Override
+    public void cleanup() {
+        try {
+            Files.deleteIfExists(cachedFile);
         } catch (IOException e) {
-            throw new IllegalStateException("Could not read S3 temporary file", e);
+            log.warn("Could not delete S3 temporary file {}", cachedFile);
         }
     }
 
     @Override
     public S3Payload s3Payload(UploadResult result, String botName) {
-        String queue = getEvent();
-        Long gzipSize = storageEventOffsets.stream().mapToLong(StorageEventOffset::getGzipSize).sum();
-        Long size = storageEventOffsets.stream().mapToLong(StorageEventOffset::getSize).sum();
-        Long records = storageEventOffsets.stream().mapToLong(StorageEventOffset::getRecords).sum();
         S3LocationPayload location = new S3LocationPayload(result.getBucketName(), result.getKey());
-        List<StorageEventOffset> offsets = accumulateOffsets();
-        StorageStats stats = new StorageStats(Collections.singletonMap(botName, new StorageUnits(records)));
-        return new S3Payload(queue, null, null, location, offsets, gzipSize, size, records, stats);
+        StorageStats stats = new StorageStats(Collections.singletonMap(botName, new StorageUnits(file.records())));
+        return new S3Payload(event(), null, null, location, file.offsets(), file.gzipSize(), file.size(), file.records(), stats);
     }
 
-    private String getEvent() {
-        return Optional.of(storageEventOffsets)
-                .map(Queue::peek)
-                .map(StorageEventOffset::getEvent)
-                .orElseThrow(() -> new IllegalArgumentException("Missing storage event"));
+    @Override
+    public long records() {
+        return file.records();
     }
 
-    private List<StorageEventOffset> accumulateOffsets() {
-        AtomicLong startAccumulator = new AtomicLong();
-        AtomicLong offsetAccumulator = new AtomicLong();
-        AtomicLong gzipOffsetAccumulator = new AtomicLong();
-        return storageEventOffsets.stream()
-                .map(o -> {
-                    Long start = startAccumulator.getAndAdd(o.getRecords());
-                    Long end = start + o.getRecords() - 1;
-                    Long offset = offsetAccumulator.getAndAdd(o.getSize());
-                    Long gzipOffset = gzipOffsetAccumulator.getAndAdd(o.getGzipSize());
-                    return new StorageEventOffset(o.getEvent(), start, end, o.getSize(), offset, o.getRecords(), o.getGzipSize(), gzipOffset);
-                })
-                .collect(toList());
+    @Override
+    public String event() {
+        return file.event();
     }
 
     private Path toTempFile(Queue<FileSegment> segments) {
         try {
             Path tempFile = Files.createTempFile("java-sdk-", ".gz");
-            try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(tempFile), 512)) {
-                FileSegment fs;
-                while ((fs = segments.poll()) != null) {
-                    os.write(fs.getSegment());
+            MessageDigest md5 = DigestUtils.getMd5Digest();
+            try (FileChannel channel = FileChannel.open(tempFile, WRITE)) {
+                ByteBuffer[] buffers = segments.stream()
+                        .map(FileSegment::getSegment)
+                        .peek(md5::update)
+                        .map(ByteBuffer::wrap)
+                        .toArray(ByteBuffer[]::new);
+                segments.clear();
+                while (Arrays.stream(buffers).anyMatch(ByteBuffer::hasRemaining)) {
+                    fileSize += channel.write(buffers);
                 }
-                os.flush();
             }
+            contentMD5 = new String(Base64.encodeBase64(md5.digest()));
             return tempFile;
         } catch (IOException e) {
             throw new IllegalStateException("Unable to create temporary file");
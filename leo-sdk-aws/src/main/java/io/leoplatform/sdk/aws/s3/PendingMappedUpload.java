@@ -0,0 +1,73 @@
+package io.leoplatform.sdk.aws.s3;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.transfer.model.UploadResult;
+import io.leoplatform.sdk.payload.StorageStats;
+import io.leoplatform.sdk.payload.StorageUnits;
+
+import java.util.Collections;
+
+/**
+ * An S3 file held in a {@link MappedSpool} segment. The upload body is read straight from the mapping, and the
+ * slice is returned to the spool once the file's pointer has been written to Kinesis.
+ */
+final class PendingMappedUpload implements PendingS3Upload {
+    private final String fileName;
+    private final FileAccumulator file;
+    private final MappedSpool.Slice slice;
+
+    PendingMappedUpload(String fileName, FileAccumulator file, MappedSpool.Slice slice) {
+        this.fileName = fileName;
+        this.file = file;
+        this.slice = slice;
+    }
+
+    @Override
+    public String filename() {
+        return fileName;
+    }
+
+    @Override
+    public PutObjectRequest s3PutRequest(String name) {
+        ObjectMetadata meta = new ObjectMetadata();
+        meta.setContentLength(slice.length());
+        if (slice.length() < PendingFileUpload.MULTIPART_THRESHOLD) {
+            meta.setContentMD5(slice.contentMD5());
+        }
+        return new PutObjectRequest(name, fileName, new ByteBufferInputStream(slice.body()), meta);
+    }
+
+    @Override
+    public S3Payload s3Payload(UploadResult result, String botName) {
+        S3LocationPayload location = new S3LocationPayload(result.getBucketName(), result.getKey());
+        StorageStats stats = new StorageStats(Collections.singletonMap(botName, new StorageUnits(file.records())));
+        return new S3Payload(event(), null, null, location, file.offsets(), file.gzipSize(), file.size(), file.records(), stats);
+    }
+
+    @Override
+    public long records() {
+        return file.records();
+    }
+
+    @Override
+    public String event() {
+        return file.event();
+    }
+
+    long size() {
+        return file.size();
+    }
+
+    @Override
+    public void cleanup() {
+        slice.release();
+    }
+
+    /**
+     * Leaves the slice pending, so the file is uploaded again when the spool is next recovered.
+     */
+    @Override
+    public void abandon() {
+    }
+}
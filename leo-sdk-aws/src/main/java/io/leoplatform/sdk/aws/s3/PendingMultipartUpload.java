@@ -0,0 +1,204 @@
+package io.leoplatform.sdk.aws.s3;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.*;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.model.UploadResult;
+import io.leoplatform.sdk.payload.FileSegment;
+import io.leoplatform.sdk.payload.StorageStats;
+import io.leoplatform.sdk.payload.StorageUnits;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * An S3 file uploaded in parts while it is still being written. Segments are buffered until a part is full,
+ * and each full part is uploaded on the executor while later segments arrive. The multipart upload is only
+ * initiated once the first part fills, so a file that never reaches the part size is sent with a single put.
+ * Uploading the file completes the multipart upload from the parts' ETags.
+ * <p>
+ * The part buffer grows as segments arrive rather than being allocated at the part size. At most
+ * <code>maxPartsInFlight</code> parts are uploading at once; a part beyond that waits in <code>append</code> until
+ * an earlier one finishes, which bounds the memory held by a file whose parts are slower than its writer.
+ */
+final class PendingMultipartUpload implements PendingS3Upload {
+    private static final Logger log = LoggerFactory.getLogger(PendingMultipartUpload.class);
+    private static final int INITIAL_BUFFER = 65_536;
+
+    private final AmazonS3 s3Client;
+    private final String bucket;
+    private final String fileName;
+    private final int partSize;
+    private final Executor executor;
+    private final Semaphore partSlots;
+
+    private final FileAccumulator file = new FileAccumulator();
+    private final List<CompletableFuture<PartETag>> parts = new ArrayList<>();
+    private final ByteArrayOutputStream part;
+    private CompletableFuture<String> uploadId;
+
+    PendingMultipartUpload(AmazonS3 s3Client, String bucket, String fileName, int partSize, int maxPartsInFlight,
+                           Executor executor) {
+        this.s3Client = s3Client;
+        this.bucket = bucket;
+        this.fileName = fileName;
+        this.partSize = partSize;
+        this.executor = executor;
+        this.partSlots = new Semaphore(maxPartsInFlight);
+        this.part = new ByteArrayOutputStream(Math.min(partSize, INITIAL_BUFFER));
+    }
+
+    /**
+     * Not thread safe. Segments are appended by the writer that owns the file until it is enqueued.
+     */
+    void append(FileSegment segment) {
+        file.count(segment.getOffset());
+        byte[] bytes = segment.getSegment();
+        part.write(bytes, 0, bytes.length);
+        if (part.size() >= partSize) {
+            uploadPart();
+        }
+    }
+
+    /**
+     * @return The offsets and running totals of the segments appended so far
+     */
+    FileAccumulator accumulator() {
+        return file;
+    }
+
+    @Override
+    public String filename() {
+        return fileName;
+    }
+
+    @Override
+    public String event() {
+        return file.event();
+    }
+
+    @Override
+    public long records() {
+        return file.records();
+    }
+
+    @Override
+    public PutObjectRequest s3PutRequest(String name) {
+        throw new IllegalStateException("Multipart file " + fileName + " is sent in parts");
+    }
+
+    @Override
+    public UploadResult upload(TransferManager transferManager, String name) {
+        if (uploadId == null) {
+            return putWhole();
+        }
+        if (part.size() > 0) {
+            uploadPart();
+        }
+        try {
+            List<PartETag> partETags = parts.stream()
+                    .map(CompletableFuture::join)
+                    .collect(toList());
+            CompleteMultipartUploadResult completed = s3Client.completeMultipartUpload(
+                    new CompleteMultipartUploadRequest(bucket, fileName, uploadId.join(), partETags));
+            UploadResult result = new UploadResult();
+            result.setBucketName(bucket);
+            result.setKey(fileName);
+            result.setETag(completed.getETag());
+            result.setVersionId(completed.getVersionId());
+            return result;
+        } catch (RuntimeException e) {
+            abort();
+            throw Optional.of(e)
+                    .filter(CompletionException.class::isInstance)
+                    .map(Throwable::getCause)
+                    .filter(RuntimeException.class::isInstance)
+                    .map(RuntimeException.class::cast)
+                    .orElse(e);
+        }
+    }
+
+    @Override
+    public S3Payload s3Payload(UploadResult result, String botName) {
+        S3LocationPayload location = new S3LocationPayload(result.getBucketName(), result.getKey());
+        StorageStats stats = new StorageStats(Collections.singletonMap(botName, new StorageUnits(file.records())));
+        return new S3Payload(event(), null, null, location, file.offsets(), file.gzipSize(), file.size(), file.records(), stats);
+    }
+
+    private void uploadPart() {
+        if (uploadId == null) {
+            uploadId = CompletableFuture.supplyAsync(() -> s3Client
+                    .initiateMultipartUpload(new InitiateMultipartUploadRequest(bucket, fileName))
+                    .getUploadId(), executor);
+        }
+        byte[] body = part.toByteArray();
+        part.reset();
+        int partNumber = parts.size() + 1;
+        try {
+            partSlots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            CompletableFuture<PartETag> interrupted = new CompletableFuture<>();
+            interrupted.completeExceptionally(e);
+            parts.add(interrupted);
+            return;
+        }
+        parts.add(uploadId
+                .thenApplyAsync(id -> uploadPart(id, partNumber, body), executor)
+                .whenComplete((etag, t) -> partSlots.release()));
+    }
+
+    private PartETag uploadPart(String id, int partNumber, byte[] body) {
+        UploadPartRequest request = new UploadPartRequest()
+                .withBucketName(bucket)
+                .withKey(fileName)
+                .withUploadId(id)
+                .withPartNumber(partNumber)
+                .withPartSize(body.length)
+                .withMD5Digest(md5(body))
+                .withInputStream(new ByteArrayInputStream(body));
+        UploadPartResult result = s3Client.uploadPart(request);
+        log.debug("Uploaded {} byte part {} of {}", body.length, partNumber, fileName);
+        return new PartETag(partNumber, result.getETag());
+    }
+
+    private UploadResult putWhole() {
+        byte[] body = part.toByteArray();
+        ObjectMetadata meta = new ObjectMetadata();
+        meta.setContentLength(body.length);
+        meta.setContentMD5(md5(body));
+        PutObjectResult put = s3Client.putObject(new PutObjectRequest(bucket, fileName, new ByteArrayInputStream(body), meta));
+        UploadResult result = new UploadResult();
+        result.setBucketName(bucket);
+        result.setKey(fileName);
+        result.setETag(put.getETag());
+        result.setVersionId(put.getVersionId());
+        return result;
+    }
+
+    private void abort() {
+        try {
+            s3Client.abortMultipartUpload(new AbortMultipartUploadRequest(bucket, fileName, uploadId.join()));
+        } catch (RuntimeException e) {
+            log.warn("Could not abort multipart upload of {}", fileName, e);
+        }
+    }
+
+    private static String md5(byte[] body) {
+        return new String(Base64.encodeBase64(DigestUtils.md5(body)));
+    }
+}
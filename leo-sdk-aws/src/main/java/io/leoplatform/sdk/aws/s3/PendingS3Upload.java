@@ -1,12 +1,38 @@
 package io.leoplatform.sdk.aws.s3;
 
 import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.transfer.TransferManager;
 import com.amazonaws.services.s3.transfer.model.UploadResult;
 
 public interface PendingS3Upload {
     String filename();
 
+    String event();
+
     PutObjectRequest s3PutRequest(String name);
 
+    /**
+     * Sends the file and waits for it to reach S3.
+     */
+    default UploadResult upload(TransferManager transferManager, String name) throws InterruptedException {
+        return transferManager.upload(s3PutRequest(name)).waitForUploadResult();
+    }
+
     S3Payload s3Payload(UploadResult result, String botName);
+
+    long records();
+
+    /**
+     * Releases anything held for the upload once its result has been processed, successfully or not.
+     */
+    default void cleanup() {
+    }
+
+    /**
+     * Releases what is held for an upload that could not be delivered. Anything a later process can retry is
+     * kept.
+     */
+    default void abandon() {
+        cleanup();
+    }
 }
@@ -3,7 +3,7 @@ package io.leoplatform.sdk.aws.s3;
 import java.util.stream.Stream;
 
 public enum S3BufferStyle {
-    MEMORY("Memory"), DISK("Disk");
+    MEMORY("Memory"), DISK("Disk"), MAPPED("Mapped"), MULTIPART("Multipart");
 
     private final String style;
 
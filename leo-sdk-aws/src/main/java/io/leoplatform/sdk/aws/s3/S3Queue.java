@@ -4,21 +4,24 @@ import io.leoplatform.sdk.AsyncWorkQueue;
 import io.leoplatform.sdk.ExecutorManager;
 import io.leoplatform.sdk.StreamStats;
 import io.leoplatform.sdk.TransferStyle;
+import io.leoplatform.sdk.aws.FlowGate;
+import io.leoplatform.sdk.aws.LaneBatchers;
+import io.leoplatform.sdk.aws.RingBatcher;
 import io.leoplatform.sdk.aws.payload.CompressionWriter;
+import io.leoplatform.sdk.aws.wal.LoggedPayload;
+import io.leoplatform.sdk.config.ConnectorConfig;
 import io.leoplatform.sdk.payload.EventPayload;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Singleton;
-import java.util.LinkedHashSet;
+import java.time.Duration;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
@@ -30,66 +33,59 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
 public final class S3Queue implements AsyncWorkQueue {
     private static final Logger log = LoggerFactory.getLogger(S3Queue.class);
 
+    private static final long maxBatchAge = 200L;
+
     private final int maxBatchRecords = 1000;
     private final CompressionWriter compression;
     private final ExecutorManager executorManager;
     private final S3Writer s3Writer;
-    private final BlockingQueue<EventPayload> payloads = new LinkedBlockingQueue<>();
+    private final FlowGate flowGate;
+    private final LaneBatchers payloads;
     private final List<CompletableFuture<Void>> pendingWrites = new LinkedList<>();
     private final AtomicBoolean running;
     private final Lock lock = new ReentrantLock();
     private final Condition batchSend = lock.newCondition();
 
     @Inject
-    public S3Queue(ExecutorManager executorManager, CompressionWriter compression, S3Writer s3Writer) {
+    public S3Queue(ConnectorConfig config, ExecutorManager executorManager,
+                   @Named("Storage") CompressionWriter compression, FlowGate flowGate, S3Writer s3Writer) {
+        int capacity = config.intValueOrElse("Storage.BufferCapacity", 65_536);
+        this.payloads = new LaneBatchers(slots -> new RingBatcher<>(slots, maxBatchRecords, Duration.ofMillis(maxBatchAge)), capacity);
         this.compression = compression;
         this.executorManager = executorManager;
         this.s3Writer = s3Writer;
+        this.flowGate = flowGate;
         running = new AtomicBoolean(true);
         CompletableFuture.runAsync(this::asyncBatchSend, executorManager.get());
     }
 
     @Override
     public void addEntity(EventPayload entity) {
-        if (running.get()) {
-            add(entity);
-            if (exceedsMaxRecords()) {
-                signalBatch();
-            }
-        } else {
+        if (!running.get() || !payloads.offer(entity)) {
             log.warn("Attempt to add S3 payload to a stopped queue");
+            flowGate.release(entity.destination(), 1);
         }
     }
 
     @Override
     public void flush() {
-        signalBatch();
+        payloads.flush();
         sendAll();
         completePendingWrites();
         s3Writer.flush();
     }
 
-    private void add(EventPayload entity) {
-        lock.lock();
-        try {
-            payloads.add(entity);
-        } finally {
-            lock.unlock();
-        }
-    }
-
+    /**
+     * Sends one batch from each queue that has one ready, so a hot queue's backlog is shared out in turn.
+     */
     private void asyncBatchSend() {
         while (running.get()) {
-            lock.lock();
-            try {
-                batchSend.await(200L, MILLISECONDS);
-            } catch (InterruptedException i) {
+            List<RingBatcher<EventPayload>> ready = payloads.awaitBatches();
+            if (ready.isEmpty() && Thread.currentThread().isInterrupted()) {
                 running.set(false);
                 log.info("S3 queue stopped with {} pending", payloads.size());
-            } finally {
-                lock.unlock();
             }
-            sendBatch();
+            ready.forEach(this::send);
         }
     }
 
@@ -97,19 +93,18 @@ public final class S3Queue implements AsyncWorkQueue {
     public StreamStats end() {
         flush();
         running.set(false);
-        signalBatch();
+        payloads.close();
         return s3Writer.end();
     }
 
-    private void send() {
-        Set<EventPayload> toSend = drainToSet();
+    private void send(RingBatcher<EventPayload> lane) {
+        List<EventPayload> toSend = lane.drain();
         if (!toSend.isEmpty()) {
             lock.lock();
             try {
                 Executor e = executorManager.get();
                 CompletableFuture<Void> cf = CompletableFuture
-                        .supplyAsync(() -> compression.compressWithOffsets(toSend), e)
-                        .thenAcceptAsync(s3Writer::write, e)
+                        .runAsync(() -> write(toSend), e)
                         .thenRunAsync(this::removeCompleted, e);
                 pendingWrites.add(cf);
             } finally {
@@ -118,16 +113,25 @@ public final class S3Queue implements AsyncWorkQueue {
         }
     }
 
-    private void sendBatch() {
-        do {
-            send();
-        } while (exceedsMaxRecords());
+    /**
+     * Permits for a batch that never reaches the writer are returned here; the transfer manager returns the rest
+     * once their files are uploaded.
+     */
+    private void write(List<EventPayload> batch) {
+        try {
+            s3Writer.write(compression.compressSegments(batch), () -> LoggedPayload.confirmAll(batch));
+        } catch (RuntimeException e) {
+            log.error("Could not write {} payloads to S3", batch.size(), e);
+            flowGate.release(batch.get(0).destination(), batch.size());
+        }
     }
 
     private void sendAll() {
-        while (!payloads.isEmpty()) {
-            send();
-        }
+        payloads.lanes().forEach(lane -> {
+            while (!lane.isEmpty()) {
+                send(lane);
+            }
+        });
     }
 
     private void completePendingWrites() {
@@ -166,30 +170,6 @@ public final class S3Queue implements AsyncWorkQueue {
         }
     }
 
-    private void signalBatch() {
-        lock.lock();
-        try {
-            batchSend.signalAll();
-        } finally {
-            lock.unlock();
-        }
-    }
-
-    private Set<EventPayload> drainToSet() {
-        Set<EventPayload> toSend = new LinkedHashSet<>();
-        lock.lock();
-        try {
-            payloads.drainTo(toSend, maxBatchRecords);
-        } finally {
-            lock.unlock();
-        }
-        return toSend;
-    }
-
-    private boolean exceedsMaxRecords() {
-        return payloads.size() >= maxBatchRecords;
-    }
-
     @Override
     public TransferStyle style() {
         return TransferStyle.STORAGE;
@@ -0,0 +1,196 @@
+package io.leoplatform.sdk.aws.s3;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.auth.profile.ProfileCredentialsProvider;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import io.leoplatform.sdk.config.ConnectorConfig;
+import io.leoplatform.sdk.payload.StorageEventOffset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Singleton;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * Fetches a queue's compressed segments from the bus files that S3 pointer events refer to. Only the byte ranges
+ * the pointer's offsets give for the queue are read, and segments next to each other in the file are fetched with
+ * one ranged GET of up to 8MB. A pointer without offsets is read whole.
+ * <p>
+ * A failed GET is retried with full-jitter exponential backoff, between <code>Offload.BaseBackoff</code> and
+ * <code>Offload.MaxBackoff</code> milliseconds, until <code>Offload.MaxFetchAttempts</code> is reached. The backoff
+ * waits on the calling reader's thread, which has nothing else to read until the range arrives.
+ */
+@Singleton
+public final class S3RangeReader {
+    private static final Logger log = LoggerFactory.getLogger(S3RangeReader.class);
+
+    static final long MAX_RANGE_BYTES = 8_388_608L;
+
+    private final AmazonS3 s3;
+    private final int maxAttempts;
+    private final long baseBackoff;
+    private final long maxBackoff;
+
+    public S3RangeReader(ConnectorConfig config) {
+        this(config, client(config));
+    }
+
+    public S3RangeReader(ConnectorConfig config, AmazonS3 s3) {
+        this.s3 = s3;
+        this.maxAttempts = Math.max(1, config.intValueOrElse("Offload.MaxFetchAttempts", 5));
+        this.baseBackoff = config.longValueOrElse("Offload.BaseBackoff", 100L);
+        this.maxBackoff = config.longValueOrElse("Offload.MaxBackoff", 5_000L);
+    }
+
+    /**
+     * Fetches the ranges one at a time, as the previous one is consumed. Each range holds one or more whole
+     * compressed members. A range that cannot be fetched, or that the consumer cannot read, is skipped and the
+     * next one read.
+     *
+     * @return The number of the queue's events in skipped ranges
+     */
+    public long read(S3Payload pointer, String queue, Consumer<byte[]> ranges) {
+        String bucket = pointer.getS3().getBucket();
+        String key = pointer.getS3().getKey();
+        long dropped = 0;
+        for (Range range : ranges(pointer, queue)) {
+            Optional<byte[]> bytes = fetch(bucket, key, range);
+            try {
+                bytes.ifPresent(ranges);
+            } catch (RuntimeException e) {
+                log.warn("Could not read {} bytes at {} of s3://{}/{}: {}", range.length, range.start, bucket, key, e.getMessage());
+                bytes = Optional.empty();
+            }
+            if (!bytes.isPresent()) {
+                dropped += range.records;
+            }
+        }
+        return dropped;
+    }
+
+    public void end() {
+        log.info("Stopping S3 reader");
+        s3.shutdown();
+    }
+
+    static List<Range> ranges(S3Payload pointer, String queue) {
+        List<StorageEventOffset> offsets = Optional.ofNullable(pointer.getOffsets())
+                .orElse(Collections.emptyList());
+        if (offsets.isEmpty()) {
+            return queue.equals(pointer.getEvent())
+                    ? Collections.singletonList(new Range(0L, Optional.ofNullable(pointer.getGzipSize()).orElse(-1L), records(pointer.getRecords())))
+                    : Collections.emptyList();
+        }
+        List<Range> ranges = new ArrayList<>();
+        Range current = null;
+        for (StorageEventOffset offset : offsets) {
+            if (!queue.equals(offset.getEvent())) {
+                continue;
+            }
+            long start = offset.getGzipOffset();
+            long length = offset.getGzipSize();
+            long records = records(offset.getRecords());
+            if (current != null && current.start + current.length == start && current.length + length <= MAX_RANGE_BYTES) {
+                current = new Range(current.start, current.length + length, current.records + records);
+                ranges.set(ranges.size() - 1, current);
+            } else {
+                current = new Range(start, length, records);
+                ranges.add(current);
+            }
+        }
+        return ranges;
+    }
+
+    private Optional<byte[]> fetch(String bucket, String key, Range range) {
+        GetObjectRequest request = new GetObjectRequest(bucket, key);
+        if (range.length >= 0) {
+            request.withRange(range.start, range.start + range.length - 1);
+        }
+        for (int attempt = 1; ; attempt++) {
+            try (S3Object object = s3.getObject(request);
+                 InputStream in = object.getObjectContent()) {
+                return Optional.of(toBytes(in, range.length));
+            } catch (IOException | RuntimeException e) {
+                if (attempt >= maxAttempts) {
+                    log.warn("Could not fetch {} bytes at {} of s3://{}/{} in {} attempts: {}",
+                            range.length, range.start, bucket, key, attempt, e.getMessage());
+                    return Optional.empty();
+                }
+                log.debug("Fetch attempt {} of s3://{}/{} failed: {}", attempt, bucket, key, e.getMessage());
+                if (!backoff(attempt)) {
+                    return Optional.empty();
+                }
+            }
+        }
+    }
+
+    private boolean backoff(int attempt) {
+        long ceiling = Math.min(maxBackoff, baseBackoff << Math.min(attempt - 1, 30));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static long records(Long records) {
+        return Optional.ofNullable(records).orElse(0L);
+    }
+
+    private static byte[] toBytes(InputStream in, long length) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length > 0 ? (int) length : 65_536);
+        byte[] buffer = new byte[65_536];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static AmazonS3 client(ConnectorConfig config) {
+        return AmazonS3ClientBuilder
+                .standard()
+                .withCredentials(credentials(config.valueOrElse("AwsProfile", "")))
+                .withRegion(config.valueOrElse("Region", "us-east-1"))
+                .build();
+    }
+
+    private static AWSCredentialsProvider credentials(String awsProfile) {
+        return Optional.of(awsProfile)
+                .map(String::trim)
+                .filter(profile -> !profile.isEmpty())
+                .map(ProfileCredentialsProvider::new)
+                .map(AWSCredentialsProvider.class::cast)
+                .orElse(DefaultAWSCredentialsProviderChain.getInstance());
+    }
+
+    /**
+     * Bytes to fetch, starting at <code>start</code>, holding <code>records</code> of the queue's events. A negative
+     * length reads to the end of the file.
+     */
+    static final class Range {
+        final long start;
+        final long length;
+        final long records;
+
+        Range(long start, long length, long records) {
+            this.start = start;
+            this.length = length;
+            this.records = records;
+        }
+    }
+}
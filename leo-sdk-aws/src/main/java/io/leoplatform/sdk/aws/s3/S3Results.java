@@ -1,7 +1,8 @@
 package io.leoplatform.sdk.aws.s3;
 
 import com.amazonaws.services.s3.transfer.model.UploadResult;
-import io.leoplatform.sdk.aws.kinesis.KinesisProducerWriter;
+import io.leoplatform.sdk.aws.kinesis.KinesisWriter;
+import io.leoplatform.sdk.aws.kinesis.PartitionKeys;
 import io.leoplatform.sdk.aws.payload.CompressionWriter;
 import io.leoplatform.sdk.payload.ThresholdMonitor;
 import org.slf4j.Logger;
@@ -12,6 +13,7 @@ import javax.inject.Singleton;
 import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicLong;
 
 @Singleton
@@ -22,22 +24,28 @@ public final class S3Results {
     private final AtomicLong failures = new AtomicLong();
     private final Instant start = Instant.now();
     private final CompressionWriter compressionWriter;
-    private final KinesisProducerWriter kinesis;
+    private final KinesisWriter kinesis;
+    private final PartitionKeys partitionKeys;
     private final ThresholdMonitor thresholdMonitor;
 
     @Inject
-    public S3Results(CompressionWriter compressionWriter, KinesisProducerWriter kinesis, ThresholdMonitor thresholdMonitor) {
+    public S3Results(CompressionWriter compressionWriter, KinesisWriter kinesis, PartitionKeys partitionKeys,
+                     ThresholdMonitor thresholdMonitor) {
         this.compressionWriter = compressionWriter;
         this.kinesis = kinesis;
+        this.partitionKeys = partitionKeys;
         this.thresholdMonitor = thresholdMonitor;
     }
 
-    void addSuccess(S3Payload payload, UploadResult result) {
+    /**
+     * @return A future completed once the pointer to the upload has been written to Kinesis
+     */
+    CompletableFuture<Void> addSuccess(S3Payload payload, UploadResult result) {
         successes.incrementAndGet();
         logSuccess(payload.getRecords(), result);
         thresholdMonitor.addBytes(payload.getGzipSize());
         ByteBuffer b = compressionWriter.compress(payload);
-        kinesis.write(b);
+        return kinesis.write(b, partitionKeys.keyFor(payload.getEvent()));
     }
 
     Long successes() {
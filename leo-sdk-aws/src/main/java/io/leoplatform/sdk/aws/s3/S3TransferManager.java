@@ -5,13 +5,11 @@ import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
 import com.amazonaws.auth.profile.ProfileCredentialsProvider;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
-import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.transfer.TransferManager;
 import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
-import com.amazonaws.services.s3.transfer.Upload;
 import com.amazonaws.services.s3.transfer.model.UploadResult;
-import io.leoplatform.sdk.ExecutorManager;
 import io.leoplatform.sdk.StreamStats;
+import io.leoplatform.sdk.aws.FlowGate;
 import io.leoplatform.sdk.bus.LoadingBot;
 import io.leoplatform.sdk.config.ConnectorConfig;
 import org.slf4j.Logger;
@@ -21,56 +19,115 @@ import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.LinkedList;
-import java.util.Optional;
-import java.util.Queue;
+import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
+/**
+ * Uploads files to S3 with up to <code>Storage.MaxConcurrentUploads</code> in flight. Uploads block while they
+ * run, so they, the dispatcher waiting for an upload slot and multipart part uploads each have their own threads
+ * rather than taking them from the shared executor. The Kinesis pointer events for a queue are written in the
+ * order its files were enqueued, whatever order the uploads finish in.
+ * <p>
+ * Files written with the <code>Multipart</code> buffer style upload their parts while they are being built, with
+ * at most <code>Storage.MaxPartsInFlight</code> parts of a file uploading at once, and are only completed here.
+ * Parts have a pool separate from whole uploads, because completing a file waits for its parts.
+ */
 @Singleton
 public class S3TransferManager {
     private static final Logger log = LoggerFactory.getLogger(S3TransferManager.class);
+    private static final int MIN_PART_SIZE = 5_242_880;
 
     private final String name;
+    private final AmazonS3 s3Client;
     private final TransferManager s3TransferManager;
     private final S3Results resultsProcessor;
     private final LoadingBot bot;
+    private final FlowGate flowGate;
+    private final Semaphore uploadSlots;
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(daemon("s3-upload-dispatch"));
+    private final ThreadPoolExecutor uploads;
+    private final ThreadPoolExecutor partUploads;
+    private final int partSize;
+    private final int maxPartsInFlight;
+    private final UploadSequencer sequencer = new UploadSequencer();
 
     private final Queue<PendingS3Upload> pendingUploads = new LinkedList<>();
+    private final Map<PendingS3Upload, Runnable> receipts = new IdentityHashMap<>();
     private final AtomicBoolean running;
     private final AtomicBoolean uploading;
+    private final AtomicInteger inFlight = new AtomicInteger();
     private final Lock lock = new ReentrantLock();
     private final Condition newUpload = lock.newCondition();
 
     @Inject
-    public S3TransferManager(ConnectorConfig config, ExecutorManager executorManager,
-                             S3Results resultsProcessor, LoadingBot bot) {
+    public S3TransferManager(ConnectorConfig config, S3Results resultsProcessor, LoadingBot bot, FlowGate flowGate) {
+        this(config, resultsProcessor, bot, flowGate, client(config.valueOrElse("AwsProfile", "")));
+    }
+
+    public S3TransferManager(ConnectorConfig config, S3Results resultsProcessor, LoadingBot bot, FlowGate flowGate,
+                             AmazonS3 s3Client) {
         this.name = config.value("Storage.Name");
+        this.s3Client = s3Client;
         this.s3TransferManager = TransferManagerBuilder.standard()
-                .withS3Client(client(config.valueOrElse("AwsProfile", "")))
+                .withS3Client(s3Client)
                 .withDisableParallelDownloads(false)
                 .build();
         this.resultsProcessor = resultsProcessor;
         this.bot = bot;
+        this.flowGate = flowGate;
+        int maxUploads = atLeastOne("Storage.MaxConcurrentUploads", config.intValueOrElse("Storage.MaxConcurrentUploads", 4));
+        this.uploadSlots = new Semaphore(maxUploads);
+        this.uploads = pool(maxUploads, "s3-upload");
+        this.partUploads = pool(maxUploads, "s3-upload-part");
+        this.partSize = validPartSize(config.intValueOrElse("Storage.PartSize", 8_388_608));
+        this.maxPartsInFlight = atLeastOne("Storage.MaxPartsInFlight", config.intValueOrElse("Storage.MaxPartsInFlight", 2));
         running = new AtomicBoolean(true);
         uploading = new AtomicBoolean(false);
-        CompletableFuture.runAsync(this::synchronousUpload, executorManager.get());
+        dispatcher.execute(this::dispatchUploads);
+    }
+
+    /**
+     * @return An empty file whose parts are uploaded as it fills, to be enqueued once it is complete
+     */
+    PendingMultipartUpload multipart(String fileName) {
+        return new PendingMultipartUpload(s3Client, name, fileName, partSize, maxPartsInFlight, partUploads);
     }
 
     void enqueue(PendingS3Upload pendingUpload) {
+        enqueue(pendingUpload, () -> {
+        });
+    }
+
+    /**
+     * @param onDelivered Run once the file is uploaded and its pointer written to Kinesis
+     */
+    void enqueue(PendingS3Upload pendingUpload, Runnable onDelivered) {
         if (running.get()) {
             lock.lock();
             try {
                 pendingUploads.add(pendingUpload);
+                receipts.put(pendingUpload, onDelivered);
                 newUpload.signalAll();
             } finally {
                 lock.unlock();
             }
+        } else {
+            flowGate.release(pendingUpload.event(), pendingUpload.records());
+            pendingUpload.abandon();
         }
     }
 
@@ -79,7 +136,7 @@ public class S3TransferManager {
         awaitUploader();
     }
 
-    private void synchronousUpload() {
+    private void dispatchUploads() {
         while (running.get()) {
             lock.lock();
             try {
@@ -91,11 +148,12 @@ public class S3TransferManager {
             } catch (InterruptedException i) {
                 running.set(false);
                 pendingUploads.clear();
+                receipts.clear();
                 log.warn("S3 transfer manager stopped with {} pending", pendingUploads.size());
             } finally {
                 lock.unlock();
             }
-            while (!pendingUploads.isEmpty()) {
+            while (!pendingUploads.isEmpty() && !Thread.currentThread().isInterrupted()) {
                 uploadNext();
             }
         }
@@ -104,32 +162,85 @@ public class S3TransferManager {
     }
 
     private void uploadNext() {
+        try {
+            uploadSlots.acquire();
+        } catch (InterruptedException e) {
+            log.warn("S3 transfer manager interrupted with {} pending", pendingUploads.size());
+            running.set(false);
+            Thread.currentThread().interrupt();
+            return;
+        }
         PendingS3Upload next;
+        Runnable onDelivered;
         lock.lock();
         try {
             next = pendingUploads.remove();
+            onDelivered = receipts.remove(next);
         } catch (Exception e) {
             log.warn("Unexpectedly empty upload queue");
+            uploadSlots.release();
             return;
         } finally {
             lock.unlock();
         }
-        upload(next);
+        UploadSequencer.Ticket ticket = sequencer.ticket(next.event());
+        inFlight.incrementAndGet();
+        CompletableFuture
+                .runAsync(() -> upload(next, ticket, onDelivered), uploads)
+                .whenComplete((v, t) -> {
+                    inFlight.decrementAndGet();
+                    uploadSlots.release();
+                    signalUploader();
+                });
     }
 
-    private void upload(PendingS3Upload next) {
+    private void upload(PendingS3Upload next, UploadSequencer.Ticket ticket, Runnable onDelivered) {
         log.info("Beginning upload of {} to S3", next.filename());
-        PutObjectRequest request = next.s3PutRequest(name);
-        Upload upload = s3TransferManager.upload(request);
         try {
-            UploadResult uploadResult = upload.waitForUploadResult();
+            UploadResult uploadResult = next.upload(s3TransferManager, name);
             S3Payload s3Payload = next.s3Payload(uploadResult, bot.name());
             log.info("{} byte upload of {} complete", s3Payload.getGzipSize(), next.filename());
-            resultsProcessor.addSuccess(s3Payload, uploadResult);
+            sequencer.complete(ticket, () -> delivered(next, s3Payload, uploadResult, onDelivered));
         } catch (Exception e) {
             log.warn("S3 upload unexpectedly stopped");
             running.set(false);
-            resultsProcessor.addFailure(upload.getDescription(), e);
+            sequencer.complete(ticket, () -> failed(next, e));
+        }
+    }
+
+    /**
+     * Writes the upload's pointer, and only lets go of the file once Kinesis has accepted it.
+     */
+    private void delivered(PendingS3Upload upload, S3Payload s3Payload, UploadResult uploadResult, Runnable onDelivered) {
+        CompletableFuture<Void> pointer;
+        try {
+            pointer = resultsProcessor.addSuccess(s3Payload, uploadResult);
+        } catch (Exception e) {
+            pointer = new CompletableFuture<>();
+            pointer.completeExceptionally(e);
+        }
+        pointer.whenComplete((v, t) -> {
+            flowGate.release(upload.event(), upload.records());
+            if (t == null) {
+                try {
+                    onDelivered.run();
+                } catch (Exception e) {
+                    log.error("Could not process result of {}", upload.filename(), e);
+                }
+                upload.cleanup();
+            } else {
+                log.error("Could not write pointer to {}", upload.filename(), t);
+                upload.abandon();
+            }
+        });
+    }
+
+    private void failed(PendingS3Upload upload, Exception e) {
+        try {
+            resultsProcessor.addFailure(upload.filename(), e);
+        } finally {
+            flowGate.release(upload.event(), upload.records());
+            upload.abandon();
         }
     }
 
@@ -137,12 +248,15 @@ public class S3TransferManager {
         flush();
         running.set(false);
         signalUploader();
+        dispatcher.shutdown();
+        uploads.shutdown();
+        partUploads.shutdown();
         s3TransferManager.shutdownNow();
         return getStats();
     }
 
     private void awaitUploader() {
-        while (!pendingUploads.isEmpty() || uploading.get()) {
+        while (!pendingUploads.isEmpty() || uploading.get() || inFlight.get() > 0) {
             signalUploader();
             lock.lock();
             try {
@@ -150,6 +264,7 @@ public class S3TransferManager {
             } catch (InterruptedException e) {
                 log.warn("S3 transfer manager unexpectedly stopped");
                 pendingUploads.clear();
+                receipts.clear();
             } finally {
                 lock.unlock();
             }
@@ -165,14 +280,43 @@ public class S3TransferManager {
         }
     }
 
-    private AmazonS3 client(String awsProfile) {
+    private static int atLeastOne(String key, int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException(key + " must be at least 1");
+        }
+        return value;
+    }
+
+    private static ThreadPoolExecutor pool(int threads, String name) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60L, SECONDS, new LinkedBlockingQueue<>(), daemon(name));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static int validPartSize(int partSize) {
+        if (partSize < MIN_PART_SIZE) {
+            throw new IllegalArgumentException("Storage.PartSize must be at least " + MIN_PART_SIZE + " bytes");
+        }
+        return partSize;
+    }
+
+    private static AmazonS3 client(String awsProfile) {
         return AmazonS3ClientBuilder
                 .standard()
                 .withCredentials(credentials(awsProfile))
                 .build();
     }
 
-    private AWSCredentialsProvider credentials(String awsProfile) {
+    private static AWSCredentialsProvider credentials(String awsProfile) {
         return Optional.of(awsProfile)
                 .map(String::trim)
                 .filter(profile -> !profile.isEmpty())
@@ -2,6 +2,8 @@ package io.leoplatform.sdk.aws.s3;
 
 import io.leoplatform.sdk.ExecutorManager;
 import io.leoplatform.sdk.StreamStats;
+import io.leoplatform.sdk.aws.FlowGate;
+import io.leoplatform.sdk.aws.RouteStats;
 import io.leoplatform.sdk.config.ConnectorConfig;
 import io.leoplatform.sdk.payload.FileSegment;
 import io.leoplatform.sdk.payload.StorageEventOffset;
@@ -10,11 +12,11 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
-import java.util.LinkedList;
-import java.util.Optional;
-import java.util.Queue;
+import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
@@ -24,7 +26,15 @@ import java.util.concurrent.locks.ReentrantLock;
 
 import static java.time.ZoneOffset.UTC;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
-
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Builds S3 bus files as segments arrive, one open file per destination queue. A file opens on its queue's
+ * first segment with a deadline of <code>Storage.MaxBatchAge</code>, and is sealed and handed to the
+ * {@link S3TransferManager} when the next segment would exceed <code>Storage.MaxBatchSize</code> or
+ * <code>Storage.MaxBatchRecords</code>, or when the deadline passes. The next segment opens a new file straight
+ * away, so uploads overlap accumulation, and a busy queue sealing files does not cut short another queue's.
+ */
 @Singleton
 public final class S3Writer {
     private static final Logger log = LoggerFactory.getLogger(S3Writer.class);
@@ -38,43 +48,78 @@ public final class S3Writer {
     private final long maxRecordSize;
     private final S3BufferStyle bufferStyle;
     private final S3TransferManager transferManager;
+    private final RouteStats routeStats;
+    private final FlowGate flowGate;
+    private final MappedSpool spool;
 
-    private final Queue<FileSegment> payloads = new LinkedList<>();
+    private final Map<String, OpenFile> openFiles = new LinkedHashMap<>();
+    private final AtomicLong fileCount = new AtomicLong();
     private final AtomicBoolean running;
     private final Lock lock = new ReentrantLock();
     private final Condition batchSend = lock.newCondition();
 
     @Inject
     public S3Writer(ConnectorConfig config, S3TransferManager transferManager,
-                    ExecutorManager executorManager) {
+                    ExecutorManager executorManager, FlowGate flowGate, RouteStats routeStats) {
         maxBatchAge = config.longValueOrElse("Storage.MaxBatchAge", 4000L);
         maxBatchRecords = config.intValueOrElse("Storage.MaxBatchRecords", 6000);
         maxRecordSize = config.longValueOrElse("Storage.MaxBatchSize", 5017600L);
         bufferStyle = S3BufferStyle.fromName(config.valueOrElse("Storage.BufferStyle", "Memory"));
         this.transferManager = transferManager;
+        this.routeStats = routeStats;
+        this.flowGate = flowGate;
+        if (bufferStyle == S3BufferStyle.MAPPED) {
+            String spoolDirectory = config.valueOrElse("Storage.SpoolDirectory", Paths.get(System.getProperty("java.io.tmpdir"), "leo-spool").toString());
+            spool = new MappedSpool(Paths.get(spoolDirectory), config.longValueOrElse("Storage.SpoolSegmentSize", 67_108_864L));
+            spool.recovered().forEach(upload -> {
+                flowGate.admit(upload.event(), upload.records(), upload.size());
+                transferManager.enqueue(upload);
+            });
+        } else {
+            spool = null;
+        }
         running = new AtomicBoolean(true);
         CompletableFuture.runAsync(this::asyncBatchSend, executorManager.get());
     }
 
-    void write(FileSegment fileSegment) {
+    /**
+     * @param fileSegments Segments for a single destination queue
+     * @param onDelivered  Run once every segment has been uploaded and its pointer written to Kinesis
+     */
+    void write(List<FileSegment> fileSegments, Runnable onDelivered) {
         if (running.get()) {
-            add(fileSegment);
-            signalBatch();
+            add(fileSegments, onDelivered);
         } else {
             log.warn("Attempt to add file segment to a stopped batch process");
+            String queue = fileSegments.isEmpty() ? null : fileSegments.get(0).getOffset().getEvent();
+            flowGate.release(queue, fileSegments.stream()
+                    .map(FileSegment::getOffset)
+                    .map(StorageEventOffset::getRecords)
+                    .filter(Objects::nonNull)
+                    .mapToLong(Long::longValue)
+                    .sum());
         }
     }
 
     void flush() {
-        signalBatch();
-        sendAll();
+        lock.lock();
+        try {
+            new ArrayList<>(openFiles.values()).forEach(this::seal);
+        } finally {
+            lock.unlock();
+        }
         transferManager.flush();
     }
 
-    private void add(FileSegment segment) {
+    private void add(List<FileSegment> segments, Runnable onDelivered) {
         lock.lock();
         try {
-            payloads.add(segment);
+            segments.forEach(this::append);
+            if (!segments.isEmpty()) {
+                // Files are delivered in order, so the batch is delivered with the file holding its last segment
+                String queue = segments.get(segments.size() - 1).getOffset().getEvent();
+                openFiles.get(queue).receipts.add(onDelivered);
+            }
         } finally {
             lock.unlock();
         }
@@ -86,7 +131,9 @@ public final class S3Writer {
         running.set(false);
         signalBatch();
         log.info("Stopped S3 writer");
-        return transferManager.end();
+        StreamStats stats = transferManager.end();
+        Optional.ofNullable(spool).ifPresent(MappedSpool::close);
+        return stats;
     }
 
     private void signalBatch() {
@@ -99,80 +146,79 @@ public final class S3Writer {
     }
 
     private void asyncBatchSend() {
-        Instant lastUpload = Instant.now();
         while (running.get()) {
             lock.lock();
             try {
-                batchSend.await(maxBatchAge, MILLISECONDS);
+                long untilDeadline = openFiles.values().stream()
+                        .map(f -> Duration.between(Instant.now(), f.deadline).toMillis())
+                        .min(Long::compare)
+                        .orElse(maxBatchAge);
+                if (untilDeadline > 0) {
+                    batchSend.await(untilDeadline, MILLISECONDS);
+                }
+                Instant now = Instant.now();
+                openFiles.values().stream()
+                        .filter(f -> !now.isBefore(f.deadline))
+                        .collect(toList())
+                        .forEach(this::seal);
             } catch (InterruptedException i) {
                 running.set(false);
-                log.info("S3 batch writer stopped with {} pending", payloads.size());
+                log.info("S3 batch writer stopped with {} records pending", pendingRecords());
             } finally {
                 lock.unlock();
             }
-            if (Instant.now().isAfter(lastUpload.plusMillis(maxBatchAge))) {
-                send();
-                lastUpload = Instant.now();
-            }
         }
     }
 
-    private void send() {
-        AtomicLong fileCount = new AtomicLong();
-        Instant now = Instant.now();
-        lock.lock();
-        try {
-            while (!payloads.isEmpty()) {
-                Queue<FileSegment> segments = drainToMaximum();
-                Optional.of(segments)
-                        .map(Queue::peek)
-                        .map(FileSegment::getOffset)
-                        .ifPresent(o -> transferAsync(fileCount.incrementAndGet(), now, segments, o));
-            }
-        } finally {
-            lock.unlock();
+    private void append(FileSegment segment) {
+        String queue = segment.getOffset().getEvent();
+        OpenFile file = openFiles.get(queue);
+        if (file != null && !file.accumulator.fits(segment.getOffset(), maxRecordSize, maxBatchRecords)) {
+            seal(file);
+            file = null;
         }
-    }
-
-    private void transferAsync(long fileCount, Instant now, Queue<FileSegment> segments, StorageEventOffset o) {
-        String fileName = fileName(o, now, fileCount);
-        if (bufferStyle == S3BufferStyle.DISK) {
-            transferManager.enqueue(new PendingFileUpload(fileName, segments));
+        if (file == null) {
+            file = open(segment);
+            openFiles.put(queue, file);
+        }
+        if (bufferStyle == S3BufferStyle.MULTIPART) {
+            file.multipart.append(segment);
         } else {
-            transferManager.enqueue(new PendingMemoryUpload(fileName, segments));
+            file.accumulator.add(segment);
         }
     }
 
-    private void sendAll() {
-        while (!payloads.isEmpty()) {
-            send();
-        }
+    private OpenFile open(FileSegment first) {
+        Instant now = Instant.now();
+        String name = fileName(first.getOffset(), now, fileCount.incrementAndGet());
+        PendingMultipartUpload multipart = bufferStyle == S3BufferStyle.MULTIPART ? transferManager.multipart(name) : null;
+        batchSend.signalAll();
+        return new OpenFile(name, multipart, now.plusMillis(maxBatchAge));
     }
 
-    private Queue<FileSegment> drainToMaximum() {
-        Queue<FileSegment> current = new LinkedList<>();
-        do {
-            if (!payloads.isEmpty()) {
-                current.add(payloads.remove());
-            }
-        } while (!payloads.isEmpty() && belowMax(current, payloads.peek()));
-        return current;
+    private void seal(OpenFile file) {
+        FileAccumulator open = file.accumulator;
+        List<Runnable> delivered = new ArrayList<>(file.receipts);
+        Runnable onDelivered = () -> {
+            routeStats.delivered(open.event(), open.records(), open.gzipSize());
+            delivered.forEach(Runnable::run);
+        };
+        if (bufferStyle == S3BufferStyle.MULTIPART) {
+            transferManager.enqueue(file.multipart, onDelivered);
+        } else if (bufferStyle == S3BufferStyle.DISK) {
+            transferManager.enqueue(new PendingFileUpload(file.name, open), onDelivered);
+        } else if (bufferStyle == S3BufferStyle.MAPPED) {
+            transferManager.enqueue(spool.append(file.name, open), onDelivered);
+        } else {
+            transferManager.enqueue(new PendingMemoryUpload(file.name, open), onDelivered);
+        }
+        openFiles.remove(open.event());
     }
 
-    private boolean belowMax(Queue<FileSegment> current, FileSegment next) {
-        long currentSize = current.stream()
-                .map(FileSegment::getOffset)
-                .mapToLong(StorageEventOffset::getGzipSize)
-                .sum();
-        long nextSize = next.getOffset().getGzipSize();
-
-        long currentRecords = current.stream()
-                .map(FileSegment::getOffset)
-                .mapToLong(StorageEventOffset::getRecords)
+    private long pendingRecords() {
+        return openFiles.values().stream()
+                .mapToLong(f -> f.accumulator.records())
                 .sum();
-        long nextRecords = next.getOffset().getRecords();
-
-        return currentSize + nextSize < maxRecordSize && currentRecords + nextRecords < maxBatchRecords;
     }
 
     private String fileName(StorageEventOffset offset, Instant time, long fileNum) {
@@ -183,7 +229,23 @@ public final class S3Writer {
     }
 
     private String padWithZeros(long value) {
-        String val = String.valueOf(value);
-        return String.format("%0" + (7 - val.length()) + "d%s", 0, val);
+        return String.format("%07d", value);
+    }
+
+    private static final class OpenFile {
+        private final String name;
+        private final PendingMultipartUpload multipart;
+        private final FileAccumulator accumulator;
+        private final Instant deadline;
+        private final List<Runnable> receipts = new ArrayList<>();
+
+        private OpenFile(String name, PendingMultipartUpload multipart, Instant deadline) {
+            this.name = name;
+            this.multipart = multipart;
+            this.accumulator = Optional.ofNullable(multipart)
+                    .map(PendingMultipartUpload::accumulator)
+                    .orElseGet(FileAccumulator::new);
+            this.deadline = deadline;
+        }
     }
 }
@@ -0,0 +1,100 @@
+package io.leoplatform.sdk.aws.s3;
+
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Reads a list of byte arrays as one stream without copying them. Mark and reset are supported at any
+ * position so the S3 client can replay the body on retry.
+ */
+final class SegmentInputStream extends InputStream {
+    private final List<byte[]> segments;
+    private final long length;
+    private int segment = 0;
+    private int position = 0;
+    private long consumed = 0;
+    private int markSegment = 0;
+    private int markPosition = 0;
+    private long markConsumed = 0;
+
+    SegmentInputStream(List<byte[]> segments) {
+        this.segments = segments;
+        this.length = segments.stream()
+                .mapToLong(b -> b.length)
+                .sum();
+    }
+
+    long length() {
+        return length;
+    }
+
+    @Override
+    public int read() {
+        if (!advance()) {
+            return -1;
+        }
+        consumed++;
+        return segments.get(segment)[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        int total = 0;
+        while (total < len && advance()) {
+            byte[] current = segments.get(segment);
+            int n = Math.min(len - total, current.length - position);
+            System.arraycopy(current, position, b, off + total, n);
+            position += n;
+            total += n;
+        }
+        consumed += total;
+        return total == 0 ? -1 : total;
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = 0;
+        while (skipped < n && advance()) {
+            int step = (int) Math.min(n - skipped, segments.get(segment).length - position);
+            position += step;
+            skipped += step;
+        }
+        consumed += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, length - consumed);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        markSegment = segment;
+        markPosition = position;
+        markConsumed = consumed;
+    }
+
+    @Override
+    public synchronized void reset() {
+        segment = markSegment;
+        position = markPosition;
+        consumed = markConsumed;
+    }
+
+    private boolean advance() {
+        while (segment < segments.size() && position >= segments.get(segment).length) {
+            segment++;
+            position = 0;
+        }
+        return segment < segments.size();
+    }
+}
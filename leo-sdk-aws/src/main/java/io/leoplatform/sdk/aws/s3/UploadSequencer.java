@@ -0,0 +1,50 @@
+package io.leoplatform.sdk.aws.s3;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Releases upload outcomes in the order their files were dispatched, per queue. Uploads finish in any order;
+ * an outcome that arrives early is held until every earlier upload for the same queue has been released.
+ */
+final class UploadSequencer {
+    private final Map<String, Lane> lanes = new HashMap<>();
+
+    synchronized Ticket ticket(String queue) {
+        Lane lane = lanes.computeIfAbsent(queue, q -> new Lane());
+        return new Ticket(lane, lane.dispatched++);
+    }
+
+    /**
+     * Records an outcome and runs every outcome now at the head of its queue. Outcomes run on the completing
+     * thread while the lane is locked, so they should be short.
+     */
+    void complete(Ticket ticket, Runnable outcome) {
+        Lane lane = ticket.lane;
+        synchronized (lane) {
+            lane.completed.put(ticket.sequence, outcome);
+            Runnable next;
+            while ((next = lane.completed.remove(lane.released)) != null) {
+                lane.released++;
+                next.run();
+            }
+        }
+    }
+
+    static final class Ticket {
+        private final Lane lane;
+        private final long sequence;
+
+        private Ticket(Lane lane, long sequence) {
+            this.lane = lane;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final class Lane {
+        private final TreeMap<Long, Runnable> completed = new TreeMap<>();
+        private long dispatched = 0;
+        private long released = 0;
+    }
+}
@@ -0,0 +1,68 @@
+package io.leoplatform.sdk.aws.wal;
+
+import io.leoplatform.sdk.payload.EventPayload;
+import io.leoplatform.sdk.payload.StreamCorrelation;
+
+import javax.json.JsonObject;
+import java.time.Instant;
+import java.util.Collection;
+
+/**
+ * A payload recorded in the {@link WriteAheadLog}. Queues confirm it once its destination has accepted it,
+ * after which it will not be replayed.
+ */
+public final class LoggedPayload implements EventPayload {
+    private final EventPayload payload;
+    private final WalSegment segment;
+    private final int position;
+
+    LoggedPayload(EventPayload payload, WalSegment segment, int position) {
+        this.payload = payload;
+        this.segment = segment;
+        this.position = position;
+    }
+
+    /**
+     * Confirms delivery of every logged payload in the collection. Payloads that were not logged are ignored.
+     */
+    public static void confirmAll(Collection<? extends EventPayload> payloads) {
+        payloads.stream()
+                .filter(LoggedPayload.class::isInstance)
+                .map(LoggedPayload.class::cast)
+                .forEach(LoggedPayload::confirm);
+    }
+
+    public void confirm() {
+        segment.confirm(position);
+    }
+
+    @Override
+    public String id() {
+        return payload.id();
+    }
+
+    @Override
+    public Instant eventTime() {
+        return payload.eventTime();
+    }
+
+    @Override
+    public StreamCorrelation streamCorrelation() {
+        return payload.streamCorrelation();
+    }
+
+    @Override
+    public String destination() {
+        return payload.destination();
+    }
+
+    @Override
+    public JsonObject payload() {
+        return payload.payload();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LoggedPayload{payload=%s, segment=%s, position=%d}", payload, segment, position);
+    }
+}
@@ -0,0 +1,166 @@
+package io.leoplatform.sdk.aws.wal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * One memory-mapped log file. Each record is a magic number, a state byte, a length and the encoded payload,
+ * and is followed by a zero terminator until the next record overwrites it. Writes to the mapping survive the
+ * JVM exiting; {@link #force()} makes them survive the host as well.
+ * <p>
+ * Once sealed and fully confirmed the segment is handed to its drain handler rather than deleted in place, since
+ * the last confirmation usually arrives on a producer callback thread.
+ */
+final class WalSegment {
+    private static final Logger log = LoggerFactory.getLogger(WalSegment.class);
+
+    static final int MAGIC = 0x4C454F57;
+    static final byte WRITING = 0;
+    static final byte PENDING = 1;
+    static final byte DONE = 2;
+    // magic, state, length
+    static final int RECORD_HEADER = 4 + 1 + 4;
+    static final int TERMINATOR = 4;
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final Consumer<WalSegment> onDrained;
+    private int position = 0;
+    private long appended = 0;
+    private long confirmed = 0;
+    private boolean sealed = false;
+    private boolean drained = false;
+    private boolean deleted = false;
+
+    private WalSegment(Path path, MappedByteBuffer buffer, Consumer<WalSegment> onDrained) {
+        this.path = path;
+        this.buffer = buffer;
+        this.onDrained = onDrained;
+    }
+
+    /**
+     * @param onDrained Deletes the segment once it is sealed and every record is confirmed
+     */
+    static WalSegment create(Path path, long capacity, Consumer<WalSegment> onDrained) {
+        try (FileChannel channel = FileChannel.open(path, CREATE_NEW, READ, WRITE)) {
+            return new WalSegment(path, channel.map(READ_WRITE, 0, capacity), onDrained);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not create write-ahead log segment " + path, e);
+        }
+    }
+
+    static WalSegment open(Path path) {
+        try (FileChannel channel = FileChannel.open(path, READ, WRITE)) {
+            return new WalSegment(path, channel.map(READ_WRITE, 0, channel.size()), WalSegment::delete);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not open write-ahead log segment " + path, e);
+        }
+    }
+
+    boolean fits(int length) {
+        return buffer.capacity() - position >= RECORD_HEADER + length + TERMINATOR;
+    }
+
+    /**
+     * Called with the log's append lock held.
+     *
+     * @return The position of the record
+     */
+    int append(byte[] record) {
+        int start = position;
+        ByteBuffer b = buffer.duplicate();
+        b.position(start);
+        b.putInt(MAGIC).put(WRITING).putInt(record.length).put(record).putInt(0);
+        buffer.put(start + 4, PENDING);
+        position = start + RECORD_HEADER + record.length;
+        synchronized (this) {
+            appended++;
+        }
+        return start;
+    }
+
+    synchronized void confirm(int recordPosition) {
+        if (drained || deleted || buffer.get(recordPosition + 4) != PENDING) {
+            return;
+        }
+        buffer.put(recordPosition + 4, DONE);
+        confirmed++;
+        if (sealed && confirmed == appended) {
+            drained();
+        }
+    }
+
+    synchronized void seal() {
+        sealed = true;
+        if (confirmed == appended) {
+            drained();
+        }
+    }
+
+    private void drained() {
+        drained = true;
+        onDrained.accept(this);
+    }
+
+    synchronized boolean isDeleted() {
+        return deleted;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Hands every record still pending to the consumer with its position.
+     */
+    void forEachPending(BiConsumer<Integer, byte[]> consumer) {
+        ByteBuffer b = buffer.duplicate();
+        while (b.remaining() >= RECORD_HEADER && b.getInt(b.position()) == MAGIC) {
+            int start = b.position();
+            b.getInt();
+            byte state = b.get();
+            int length = b.getInt();
+            if (length < 0 || length > b.remaining()) {
+                log.warn("Truncated record at {} in {}", start, path);
+                return;
+            }
+            if (state == PENDING) {
+                byte[] record = new byte[length];
+                b.get(record);
+                consumer.accept(start, record);
+            } else {
+                b.position(b.position() + length);
+            }
+        }
+    }
+
+    synchronized void delete() {
+        deleted = true;
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete write-ahead log segment {}", path);
+        }
+    }
+
+    Path path() {
+        return path;
+    }
+
+    @Override
+    public String toString() {
+        return path.getFileName().toString();
+    }
+}
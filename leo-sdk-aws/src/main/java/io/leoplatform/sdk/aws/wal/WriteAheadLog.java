@@ -0,0 +1,251 @@
+package io.leoplatform.sdk.aws.wal;
+
+import io.leoplatform.sdk.ExecutorManager;
+import io.leoplatform.sdk.aws.payload.EventPayloadCodec;
+import io.leoplatform.sdk.config.ConnectorConfig;
+import io.leoplatform.sdk.payload.EventPayload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * An optional local log of every payload entering the loading pipeline, enabled with <code>Wal.Enabled</code>.
+ * Payloads are appended to memory-mapped segment files in <code>Wal.Directory</code>, so they survive the
+ * process dying, and are confirmed when their destination accepts them. A segment is deleted once it is full
+ * and every record in it is confirmed. Records left unconfirmed by an earlier process are replayed on startup.
+ * <p>
+ * A background task forces the segments to disk every <code>Wal.SyncInterval</code> milliseconds, committing
+ * every append since the last sync at once. With <code>Wal.SyncMode</code> set to <code>Always</code>, appends
+ * also wait for the next sync so a payload is durable on the host before it is loaded. They wait outside the
+ * append lock, so other appends carry on and join the same sync. Fully confirmed segments are deleted by the
+ * sync task too, keeping file deletion off the threads that confirm payloads.
+ */
+@Singleton
+public final class WriteAheadLog {
+    private static final Logger log = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    private static final String PREFIX = "leo-wal-";
+    private static final String SUFFIX = ".log";
+
+    private final boolean enabled;
+    private final boolean syncAlways;
+    private final long syncInterval;
+    private final long segmentSize;
+    private final Path directory;
+    private final List<WalSegment> recovered = new LinkedList<>();
+    private final List<WalSegment> unsynced = new LinkedList<>();
+    private final Queue<WalSegment> drained = new ConcurrentLinkedQueue<>();
+    private final Lock lock = new ReentrantLock();
+    private final Condition syncRequested = lock.newCondition();
+    private final AtomicBoolean running = new AtomicBoolean(true);
+    private WalSegment current;
+    private int nextId = 0;
+    // Completed by the sync that covers every append made while it is current
+    private CompletableFuture<Void> nextSync = new CompletableFuture<>();
+
+    @Inject
+    public WriteAheadLog(ConnectorConfig config, ExecutorManager executorManager) {
+        enabled = Boolean.parseBoolean(config.valueOrElse("Wal.Enabled", "false"));
+        syncAlways = config.valueOrElse("Wal.SyncMode", "Interval").equalsIgnoreCase("Always");
+        syncInterval = config.longValueOrElse("Wal.SyncInterval", syncAlways ? 5L : 50L);
+        segmentSize = config.longValueOrElse("Wal.SegmentSize", 67_108_864L);
+        directory = Paths.get(config.valueOrElse("Wal.Directory", Paths.get(System.getProperty("java.io.tmpdir"), "leo-wal").toString()));
+        if (enabled) {
+            if (segmentSize > Integer.MAX_VALUE || syncInterval < 1) {
+                throw new IllegalArgumentException("Invalid write-ahead log segment size or sync interval");
+            }
+            findSegments();
+            CompletableFuture.runAsync(this::groupCommit, executorManager.get());
+        }
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Records a payload.
+     *
+     * @return The payload to load, which must be confirmed once delivered
+     */
+    public EventPayload append(EventPayload payload) {
+        if (!enabled) {
+            return payload;
+        }
+        byte[] record = EventPayloadCodec.toJson(payload).getBytes(UTF_8);
+        LoggedPayload logged;
+        CompletableFuture<Void> durable = null;
+        lock.lock();
+        try {
+            WalSegment segment = segmentFor(record.length);
+            logged = new LoggedPayload(payload, segment, segment.append(record));
+            if (syncAlways && running.get()) {
+                durable = nextSync;
+                syncRequested.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (durable != null) {
+            awaitSync(durable);
+        }
+        return logged;
+    }
+
+    private void awaitSync(CompletableFuture<Void> durable) {
+        try {
+            durable.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for write-ahead log sync", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Write-ahead log sync failed", e.getCause());
+        }
+    }
+
+    /**
+     * Hands every unconfirmed payload from an earlier process to the sink, deleting each old segment once it
+     * has been replayed. The sink is expected to append the payloads to this log again.
+     */
+    public void replay(Consumer<EventPayload> sink) {
+        List<WalSegment> segments;
+        lock.lock();
+        try {
+            segments = new ArrayList<>(recovered);
+            recovered.clear();
+        } finally {
+            lock.unlock();
+        }
+        for (WalSegment segment : segments) {
+            List<EventPayload> pending = new LinkedList<>();
+            segment.forEachPending((position, record) -> pending.add(EventPayloadCodec.fromJson(new String(record, UTF_8))));
+            if (!pending.isEmpty()) {
+                log.info("Replaying {} unconfirmed payloads from {}", pending.size(), segment.path());
+            }
+            pending.forEach(sink);
+            segment.delete();
+        }
+    }
+
+    /**
+     * Syncs the log and stops the group commit task. Segments with unconfirmed records are kept for replay.
+     */
+    public void end() {
+        if (!enabled || !running.getAndSet(false)) {
+            return;
+        }
+        lock.lock();
+        try {
+            syncRequested.signalAll();
+            Optional.ofNullable(current).ifPresent(WalSegment::seal);
+        } finally {
+            lock.unlock();
+        }
+        sync();
+    }
+
+    private WalSegment segmentFor(int length) {
+        if (current == null || !current.fits(length)) {
+            Optional.ofNullable(current).ifPresent(WalSegment::seal);
+            long capacity = Math.max(segmentSize, WalSegment.RECORD_HEADER + length + WalSegment.TERMINATOR);
+            current = WalSegment.create(directory.resolve(String.format("%s%06d%s", PREFIX, nextId++, SUFFIX)), capacity, drained::add);
+        }
+        if (!unsynced.contains(current)) {
+            unsynced.add(current);
+        }
+        return current;
+    }
+
+    private void groupCommit() {
+        while (running.get()) {
+            lock.lock();
+            try {
+                syncRequested.await(syncInterval, MILLISECONDS);
+            } catch (InterruptedException e) {
+                log.warn("Write-ahead log sync stopped");
+                running.set(false);
+            } finally {
+                lock.unlock();
+            }
+            sync();
+        }
+        log.info("Write-ahead log sync stopped");
+    }
+
+    private void sync() {
+        for (WalSegment segment = drained.poll(); segment != null; segment = drained.poll()) {
+            segment.delete();
+        }
+        List<WalSegment> toSync;
+        CompletableFuture<Void> covered;
+        lock.lock();
+        try {
+            toSync = new ArrayList<>(unsynced);
+            unsynced.clear();
+            Optional.ofNullable(current)
+                    .filter(s -> !s.isDeleted())
+                    .ifPresent(unsynced::add);
+            covered = nextSync;
+            nextSync = new CompletableFuture<>();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            toSync.stream()
+                    .filter(s -> !s.isDeleted())
+                    .forEach(WalSegment::force);
+            covered.complete(null);
+        } catch (RuntimeException e) {
+            covered.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private void findSegments() {
+        try {
+            Files.createDirectories(directory);
+            List<Path> paths = new ArrayList<>();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+                files.forEach(paths::add);
+            }
+            paths.sort(Comparator.comparing(Path::toString));
+            for (Path path : paths) {
+                nextId = Math.max(nextId, segmentId(path) + 1);
+                recovered.add(WalSegment.open(path));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read write-ahead log directory " + directory, e);
+        }
+        if (!recovered.isEmpty()) {
+            log.info("Found {} write-ahead log segments to replay in {}", recovered.size(), directory);
+        }
+    }
+
+    private static int segmentId(Path path) {
+        String name = path.getFileName().toString();
+        try {
+            return Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package io.leoplatform.sdk.aws;
+
+import com.amazonaws.services.kinesis.AbstractAmazonKinesis;
+import com.amazonaws.services.kinesis.model.GetRecordsRequest;
+import com.amazonaws.services.kinesis.model.GetRecordsResult;
+import com.amazonaws.services.kinesis.model.GetShardIteratorRequest;
+import com.amazonaws.services.kinesis.model.GetShardIteratorResult;
+import com.amazonaws.services.kinesis.model.ListShardsRequest;
+import com.amazonaws.services.kinesis.model.ListShardsResult;
+import com.amazonaws.services.kinesis.model.Record;
+import com.amazonaws.services.kinesis.model.Shard;
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import io.leoplatform.sdk.ExternalExecutorManager;
+import io.leoplatform.sdk.StreamStats;
+import io.leoplatform.sdk.aws.kinesis.KinesisShards;
+import io.leoplatform.sdk.aws.s3.S3RangeReader;
+import io.leoplatform.sdk.bus.OffloadingBot;
+import io.leoplatform.sdk.bus.SimpleQueue;
+import io.leoplatform.sdk.bus.StreamQueue;
+import io.leoplatform.sdk.payload.EntityPayload;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class AWSOffloadingStreamTest {
+
+    private ExecutorService executor;
+
+    @BeforeMethod
+    public void startExecutor() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterMethod
+    public void stopExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testEndsWhenShardsClosed() throws Exception {
+        ScriptedKinesis kinesis = new ScriptedKinesis();
+        kinesis.shard("shardId-0", true, page(0, 3), page(3, 2));
+        kinesis.shard("shardId-1", true, page(10, 2));
+        AWSOffloadingStream stream = stream(kinesis, config());
+
+        List<Integer> read = CompletableFuture.supplyAsync(() -> stream.offload()
+                .map(e -> e.getPayload().getInt("n"))
+                .collect(toList()), executor)
+                .get(5, SECONDS);
+
+        assertEquals(read.stream().filter(n -> n < 10).collect(toList()), Arrays.asList(0, 1, 2, 3, 4), "Shard order not kept");
+        assertEquals(read.stream().filter(n -> n >= 10).collect(toList()), Arrays.asList(10, 11), "Invalid second shard");
+        assertEquals(stream.end().get(5, SECONDS).successes(), Long.valueOf(7L), "Invalid success count");
+    }
+
+    @Test
+    public void testEndsOnEnd() throws Exception {
+        ScriptedKinesis kinesis = new ScriptedKinesis();
+        kinesis.shard("shardId-0", false, page(0, 3));
+        AWSOffloadingStream stream = stream(kinesis, config());
+
+        Iterator<EntityPayload> events = stream.offload().iterator();
+        List<Integer> read = new ArrayList<>();
+        IntStream.range(0, 3).forEach(i -> read.add(events.next().getPayload().getInt("n")));
+        CompletableFuture<Boolean> more = CompletableFuture.supplyAsync(events::hasNext, executor);
+        StreamStats stats = stream.end().get(5, SECONDS);
+
+        assertEquals(read, Arrays.asList(0, 1, 2), "Invalid events");
+        assertEquals(more.get(5, SECONDS), Boolean.FALSE, "Stream should end once ended");
+        assertEquals(stats.successes(), Long.valueOf(3L), "Invalid success count");
+        assertTrue(kinesis.shutdown, "Kinesis client not stopped");
+    }
+
+    @Test
+    public void testReadersWaitForConsumer() throws Exception {
+        ScriptedKinesis kinesis = new ScriptedKinesis();
+        kinesis.shard("shardId-0", true, page(0, 10), page(10, 1));
+        AWSOffloadingStream stream = stream(kinesis, config().with("Offload.BufferCapacity", 2));
+
+        Iterator<EntityPayload> events = stream.offload().iterator();
+        Thread.sleep(200L);
+        assertEquals(kinesis.getRecordsCalls(), 1, "Reader should wait while the buffer is full");
+
+        List<Integer> read = new ArrayList<>();
+        events.forEachRemaining(e -> read.add(e.getPayload().getInt("n")));
+        assertEquals(read, IntStream.range(0, 11).boxed().collect(toList()), "Buffered events lost");
+        assertEquals(kinesis.getRecordsCalls(), 2, "Reader should resume once events are consumed");
+        stream.end().get(5, SECONDS);
+    }
+
+    private AWSOffloadingStream stream(ScriptedKinesis kinesis, MapConfig config) {
+        return new AWSOffloadingStream(config, new ExternalExecutorManager(executor), new QueueBot("queue-a"),
+                new KinesisShards(config, kinesis), new S3RangeReader(config, new StoppableS3()));
+    }
+
+    private MapConfig config() {
+        return new MapConfig()
+                .with("Stream.Name", "bus")
+                .with("Offload.Readers", 2)
+                .with("Offload.IdleWait", 1L);
+    }
+
+    private List<Record> page(int from, int count) {
+        return IntStream.range(from, from + count)
+                .mapToObj(n -> new Record()
+                        .withSequenceNumber(String.valueOf(n))
+                        .withData(ByteBuffer.wrap(gzip("{\"event\":\"queue-a\",\"id\":\"bot\",\"payload\":{\"n\":" + n + "}}\n"))))
+                .collect(toList());
+    }
+
+    private static byte[] gzip(String lines) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(lines.getBytes(UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static final class QueueBot implements OffloadingBot {
+        private final StreamQueue source;
+
+        private QueueBot(String queue) {
+            this.source = new SimpleQueue(queue);
+        }
+
+        @Override
+        public StreamQueue source() {
+            return source;
+        }
+
+        @Override
+        public String name() {
+            return "offloading-bot-name";
+        }
+    }
+
+    /**
+     * Serves each shard's pages in order, then closes the shard or keeps it open with no further records.
+     */
+    private static final class ScriptedKinesis extends AbstractAmazonKinesis {
+        private final Map<String, List<List<Record>>> pages = new HashMap<>();
+        private final Map<String, Boolean> closes = new HashMap<>();
+        private int getRecordsCalls = 0;
+        private volatile boolean shutdown = false;
+
+        @SafeVarargs
+        private final void shard(String shardId, boolean closes, List<Record>... pages) {
+            this.pages.put(shardId, new ArrayList<>(Arrays.asList(pages)));
+            this.closes.put(shardId, closes);
+        }
+
+        private synchronized int getRecordsCalls() {
+            return getRecordsCalls;
+        }
+
+        @Override
+        public ListShardsResult listShards(ListShardsRequest request) {
+            return new ListShardsResult().withShards(pages.keySet().stream()
+                    .sorted()
+                    .map(id -> new Shard().withShardId(id))
+                    .collect(toList()));
+        }
+
+        @Override
+        public GetShardIteratorResult getShardIterator(GetShardIteratorRequest request) {
+            return new GetShardIteratorResult().withShardIterator(request.getShardId());
+        }
+
+        @Override
+        public synchronized GetRecordsResult getRecords(GetRecordsRequest request) {
+            String shardId = request.getShardIterator();
+            List<List<Record>> remaining = pages.get(shardId);
+            if (!remaining.isEmpty()) {
+                getRecordsCalls++;
+            }
+            List<Record> records = remaining.isEmpty() ? Collections.emptyList() : remaining.remove(0);
+            boolean last = remaining.isEmpty() && closes.get(shardId);
+            return new GetRecordsResult()
+                    .withRecords(records)
+                    .withNextShardIterator(last ? null : shardId)
+                    .withMillisBehindLatest(0L);
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+    }
+
+    private static final class StoppableS3 extends AbstractAmazonS3 {
+        @Override
+        public void shutdown() {
+        }
+    }
+}
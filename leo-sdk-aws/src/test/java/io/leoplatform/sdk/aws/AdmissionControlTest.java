@@ -0,0 +1,109 @@
+package io.leoplatform.sdk.aws;
+
+import io.leoplatform.sdk.AsyncWorkQueue;
+import io.leoplatform.sdk.ExternalExecutorManager;
+import io.leoplatform.sdk.StreamStats;
+import io.leoplatform.sdk.TransferStyle;
+import io.leoplatform.sdk.aws.wal.WriteAheadLog;
+import io.leoplatform.sdk.payload.EventPayload;
+import io.leoplatform.sdk.payload.SimplePayload;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.json.Json;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class AdmissionControlTest {
+
+    private ExecutorService executor;
+    private FlowGate flowGate;
+    private CountingQueue proxy;
+    private AdmissionControl admission;
+
+    @BeforeMethod
+    public void startAdmission() throws Exception {
+        executor = Executors.newCachedThreadPool();
+        MapConfig config = new MapConfig()
+                .with("Backpressure.HighRecords", 1L)
+                .with("Backpressure.LowRecords", 0L)
+                .with("Backpressure.SpillDirectory", Files.createTempDirectory("admission-test").toString());
+        ExternalExecutorManager executorManager = new ExternalExecutorManager(executor);
+        flowGate = new FlowGate(config);
+        proxy = new CountingQueue();
+        admission = new AdmissionControl(config, proxy, executorManager, flowGate, new WriteAheadLog(config, executorManager));
+    }
+
+    @AfterMethod
+    public void stopExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testDrainWaitsForParkedOffers() throws Exception {
+        admission.offer(payload("1")).toCompletableFuture().get(1, SECONDS);
+        CompletableFuture<Void> parked = admission.offer(payload("2")).toCompletableFuture();
+        assertFalse(parked.isDone(), "Offer admitted while the gate was closed");
+
+        CompletableFuture<Void> drained = CompletableFuture.runAsync(admission::drain, executor);
+        Thread.sleep(100L);
+        assertFalse(drained.isDone(), "Drain finished with an offer still parked");
+
+        flowGate.release("", 1L);
+        drained.get(5, SECONDS);
+        assertTrue(parked.isDone() && !parked.isCompletedExceptionally(), "Parked offer not admitted");
+        assertEquals(proxy.added.get(), 2, "Parked payload not sent to the pipeline");
+    }
+
+    @Test
+    public void testCloseFailsParkedOffers() throws Exception {
+        admission.offer(payload("1")).toCompletableFuture().get(1, SECONDS);
+        CompletableFuture<Void> parked = admission.offer(payload("2")).toCompletableFuture();
+        admission.close();
+        try {
+            parked.get(1, SECONDS);
+            fail("Parked offer not failed on close");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException, "Invalid failure");
+        }
+        assertEquals(proxy.added.get(), 1, "Rejected payload sent to the pipeline");
+    }
+
+    private EventPayload payload(String id) {
+        return new SimplePayload(id, Json.createObjectBuilder().add("id", id).build());
+    }
+
+    private static final class CountingQueue implements AsyncWorkQueue {
+        private final AtomicInteger added = new AtomicInteger();
+
+        @Override
+        public void addEntity(EventPayload entity) {
+            added.incrementAndGet();
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public StreamStats end() {
+            return null;
+        }
+
+        @Override
+        public TransferStyle style() {
+            return TransferStyle.PROXY;
+        }
+    }
+}
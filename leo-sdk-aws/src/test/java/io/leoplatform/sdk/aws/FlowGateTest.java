@@ -0,0 +1,103 @@
+package io.leoplatform.sdk.aws;
+
+import io.leoplatform.sdk.config.ConnectorConfig;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class FlowGateTest {
+
+    @Test
+    public void testClosesAtHighRecords() {
+        FlowGate gate = new FlowGate(config(10L, 5L));
+        IntStream.range(0, 10).forEach(i -> assertTrue(gate.tryAcquire(null, 1), "Admission below high watermark refused"));
+        assertTrue(gate.isClosed(), "Gate open at high watermark");
+        assertFalse(gate.tryAcquire(null, 1), "Admission above high watermark accepted");
+    }
+
+    @Test
+    public void testReopensAtLowRecords() {
+        FlowGate gate = new FlowGate(config(10L, 5L));
+        IntStream.range(0, 10).forEach(i -> gate.tryAcquire(null, 1));
+        gate.release(null, 4);
+        assertTrue(gate.isClosed(), "Gate reopened above low watermark");
+        gate.release(null, 1);
+        assertFalse(gate.isClosed(), "Gate closed at low watermark");
+        assertEquals(gate.records(), 5L, "Invalid in-flight records");
+    }
+
+    @Test
+    public void testReleasesBytesProportionally() {
+        FlowGate gate = new FlowGate(config(100L, 50L));
+        IntStream.range(0, 10).forEach(i -> gate.tryAcquire(null, 100));
+        gate.release(null, 4);
+        assertEquals(gate.bytes(), 600L, "Invalid proportional byte release");
+        gate.release(null, 6);
+        assertEquals(gate.bytes(), 0L, "Bytes remain after all records released");
+    }
+
+    @Test
+    public void testWhenOpen() {
+        FlowGate gate = new FlowGate(config(2L, 1L));
+        assertTrue(gate.whenOpen(null).isDone(), "Open gate future not complete");
+        gate.tryAcquire(null, 1);
+        gate.tryAcquire(null, 1);
+        CompletableFuture<Void> opened = gate.whenOpen(null);
+        assertFalse(opened.isDone(), "Closed gate future complete");
+        gate.release(null, 1);
+        assertTrue(opened.isDone(), "Future not completed when gate reopened");
+    }
+
+    @Test
+    public void testAcquireWaitsForRelease() throws Exception {
+        FlowGate gate = new FlowGate(config(2L, 1L));
+        gate.tryAcquire(null, 1);
+        gate.tryAcquire(null, 1);
+        CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> {
+            try {
+                gate.acquire(null, 1);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+        assertFalse(blocked.isDone(), "Acquire did not wait on a closed gate");
+        gate.release(null, 1);
+        blocked.join();
+        assertEquals(gate.records(), 2L, "Waiting record not admitted");
+    }
+
+    @Test
+    public void testHotQueueHeldToShare() {
+        FlowGate gate = new FlowGate(config(10L, 5L), "queue-a");
+        gate.tryAcquire("queue-b", 1);
+        IntStream.range(0, 5).forEach(i -> assertTrue(gate.tryAcquire(null, 1), "Admission within share refused"));
+        assertFalse(gate.tryAcquire("queue-a", 1), "Hot queue admitted past its share");
+        assertFalse(gate.isClosed(), "Gate closed below high watermark");
+        assertTrue(gate.tryAcquire("queue-b", 1), "Other queue refused while hot queue held to share");
+        assertEquals(gate.records("queue-a"), 5L, "Default queue not counted as its own queue");
+    }
+
+    @Test
+    public void testShareFreedOnRelease() {
+        FlowGate gate = new FlowGate(config(10L, 5L));
+        gate.tryAcquire("queue-b", 1);
+        IntStream.range(0, 5).forEach(i -> gate.tryAcquire("queue-a", 1));
+        CompletableFuture<Void> admitted = gate.whenOpen("queue-a");
+        assertFalse(admitted.isDone(), "Queue over its share not made to wait");
+        gate.release("queue-b", 1);
+        assertTrue(admitted.isDone(), "Waiting queue not admitted once alone");
+        assertTrue(gate.tryAcquire("queue-a", 1), "Only busy queue held to its share");
+    }
+
+    private ConnectorConfig config(Long highRecords, Long lowRecords) {
+        return new MapConfig()
+                .with("Backpressure.HighRecords", highRecords)
+                .with("Backpressure.LowRecords", lowRecords);
+    }
+}
@@ -0,0 +1,110 @@
+package io.leoplatform.sdk.aws;
+
+import io.leoplatform.sdk.payload.EventPayload;
+import io.leoplatform.sdk.payload.RoutedPayload;
+import io.leoplatform.sdk.payload.SimplePayload;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class LaneBatchersTest {
+
+    @Test
+    public void testQueuesBatchedApart() {
+        LaneBatchers batchers = batchers(16, 2);
+        batchers.offer(new RoutedPayload("queue-b", payload("1")));
+        batchers.offer(payload("2"));
+        batchers.offer(new RoutedPayload("queue-b", payload("3")));
+
+        List<RingBatcher<EventPayload>> ready = batchers.awaitBatches();
+        assertEquals(ready.size(), 1, "Only the full queue should be ready");
+        assertEquals(ids(ready.get(0).drain()), Arrays.asList("1", "3"), "Invalid queue batch");
+        assertEquals(batchers.size(), 1L, "Default queue's payload lost");
+    }
+
+    @Test
+    public void testFullQueueDoesNotBlockOthers() throws Exception {
+        LaneBatchers batchers = batchers(4, 4);
+        IntStream.range(0, 4).forEach(i -> batchers.offer(new RoutedPayload("queue-hot", payload("hot-" + i))));
+        CompletableFuture<Boolean> blocked = CompletableFuture.supplyAsync(() -> batchers.offer(new RoutedPayload("queue-hot", payload("hot-4"))));
+        Thread.sleep(50L);
+        assertFalse(blocked.isDone(), "Offer to a full queue should wait");
+
+        assertTrue(batchers.offer(new RoutedPayload("queue-cold", payload("cold"))), "Other queue blocked by a full queue");
+        batchers.flush();
+        List<RingBatcher<EventPayload>> ready = batchers.awaitBatches();
+        assertEquals(ready.size(), 2, "Each queue should get a batch in turn");
+
+        ready.forEach(RingBatcher::drain);
+        assertTrue(blocked.get(5, SECONDS), "Waiting offer not added once its queue drained");
+    }
+
+    @Test
+    public void testClose() {
+        LaneBatchers batchers = batchers(16, 2);
+        batchers.offer(payload("1"));
+        batchers.close();
+        assertTrue(batchers.awaitBatches().isEmpty(), "Closed batchers should not wait");
+        assertFalse(batchers.offer(new RoutedPayload("queue-new", payload("2"))), "Closed batchers accepted a new queue");
+        assertEquals(batchers.lanes().get(0).drain().size(), 1, "Pending payload lost on close");
+    }
+
+    @Test
+    public void testLanesShareBudget() {
+        LaneBatchers batchers = new LaneBatchers(slots -> new RingBatcher<>(slots, 2, Duration.ofSeconds(10)), 64);
+        IntStream.range(0, 20).forEach(i -> batchers.offer(new RoutedPayload("queue-" + i, payload(String.valueOf(i)))));
+        assertEquals(batchers.lanes().size(), 20, "Invalid queue count");
+        assertTrue(batchers.allocated() <= 64 + 20 * 2, "Queues allocated beyond the budget");
+    }
+
+    @Test
+    public void testIdleLaneEvicted() throws Exception {
+        LaneBatchers batchers = new LaneBatchers(slots -> new RingBatcher<>(slots, 1, Duration.ofSeconds(10)), 64, Duration.ofMillis(1));
+        batchers.offer(new RoutedPayload("queue-idle", payload("1")));
+        List<RingBatcher<EventPayload>> ready = batchers.awaitBatches();
+        ready.forEach(RingBatcher::drain);
+        int allocated = batchers.allocated();
+
+        Thread.sleep(5L);
+        batchers.offer(new RoutedPayload("queue-busy", payload("2")));
+        batchers.awaitBatches();
+        Thread.sleep(5L);
+        batchers.offer(new RoutedPayload("queue-busy", payload("3")));
+        ready = batchers.awaitBatches();
+        assertEquals(batchers.lanes().size(), 1, "Idle queue not evicted");
+        assertEquals(ready.get(0).drain().size(), 1, "Busy queue's payload lost");
+        assertTrue(batchers.allocated() < allocated + 32, "Evicted queue's slots not returned");
+
+        assertTrue(batchers.offer(new RoutedPayload("queue-idle", payload("4"))), "Evicted queue not recreated");
+        assertEquals(batchers.size(), 2L, "Invalid pending count");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectsBlankDestination() {
+        new RoutedPayload(" ", payload("1"));
+    }
+
+    private LaneBatchers batchers(int capacity, int maxRecords) {
+        return new LaneBatchers(slots -> new RingBatcher<>(slots, maxRecords, Duration.ofSeconds(10)), capacity * 2);
+    }
+
+    private EventPayload payload(String id) {
+        return new SimplePayload(id, null);
+    }
+
+    private List<String> ids(List<EventPayload> batch) {
+        return batch.stream()
+                .map(EventPayload::id)
+                .collect(toList());
+    }
+}
@@ -0,0 +1,55 @@
+package io.leoplatform.sdk.aws;
+
+import io.leoplatform.sdk.config.ConnectorConfig;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Connector settings for tests, held in a map. Numbers may be given as any numeric type or as strings.
+ */
+public final class MapConfig implements ConnectorConfig {
+    private final Map<String, Object> values = new HashMap<>();
+
+    public MapConfig with(String key, Object value) {
+        values.put(key, value);
+        return this;
+    }
+
+    @Override
+    public String value(String key) {
+        return Optional.ofNullable(values.get(key))
+                .map(String::valueOf)
+                .orElse(null);
+    }
+
+    @Override
+    public Long longValue(String key) {
+        return Optional.ofNullable(values.get(key))
+                .map(v -> v instanceof Number ? ((Number) v).longValue() : Long.valueOf(v.toString()))
+                .orElse(null);
+    }
+
+    @Override
+    public Integer intValue(String key) {
+        return Optional.ofNullable(values.get(key))
+                .map(v -> v instanceof Number ? ((Number) v).intValue() : Integer.valueOf(v.toString()))
+                .orElse(null);
+    }
+
+    @Override
+    public String valueOrElse(String key, String orElse) {
+        return Optional.ofNullable(value(key)).orElse(orElse);
+    }
+
+    @Override
+    public Long longValueOrElse(String key, Long orElse) {
+        return Optional.ofNullable(longValue(key)).orElse(orElse);
+    }
+
+    @Override
+    public Integer intValueOrElse(String key, Integer orElse) {
+        return Optional.ofNullable(intValue(key)).orElse(orElse);
+    }
+}
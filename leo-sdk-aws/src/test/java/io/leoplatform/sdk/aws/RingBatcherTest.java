@@ -0,0 +1,127 @@
+package io.leoplatform.sdk.aws;
+
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class RingBatcherTest {
+
+    @Test
+    public void testBatchByRecords() {
+        RingBatcher<Integer> batcher = new RingBatcher<>(16, 5, Duration.ofSeconds(10));
+        IntStream.range(0, 12).forEach(batcher::offer);
+        assertTrue(batcher.awaitBatch(), "Full batch not ready");
+        assertEquals(batcher.drain(), IntStream.range(0, 5).boxed().collect(toList()), "Invalid first batch");
+        assertEquals(batcher.drain().size(), 5, "Invalid second batch");
+        assertEquals(batcher.drain().size(), 2, "Invalid remainder");
+        assertTrue(batcher.isEmpty(), "Batcher not drained");
+    }
+
+    @Test
+    public void testBatchByBytes() {
+        RingBatcher<Integer> batcher = new RingBatcher<>(16, 100, 10L, Duration.ofSeconds(10), i -> (long) i);
+        batcher.offer(4);
+        batcher.offer(4);
+        batcher.offer(4);
+        batcher.offer(20);
+        assertTrue(batcher.awaitBatch(), "Byte batch not ready");
+        assertEquals(batcher.drain().size(), 2, "Batch exceeds byte limit");
+        assertEquals(batcher.drain().size(), 1, "Invalid batch before oversized item");
+        assertEquals(batcher.drain().size(), 1, "Oversized item not delivered alone");
+    }
+
+    @Test
+    public void testBytesWakeConsumer() throws Exception {
+        RingBatcher<Integer> batcher = new RingBatcher<>(16, 100, 10L, Duration.ofSeconds(10), i -> (long) i);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CompletableFuture<Boolean> ready = CompletableFuture.supplyAsync(batcher::awaitBatch, executor);
+            batcher.offer(4);
+            Thread.sleep(50L);
+            batcher.offer(4);
+            Thread.sleep(50L);
+            assertFalse(ready.isDone(), "Batch ready below the byte limit");
+            batcher.offer(4);
+            assertTrue(ready.get(1, SECONDS), "Consumer not woken when bytes reached a batch");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBatchByAge() {
+        RingBatcher<Integer> batcher = new RingBatcher<>(16, 100, Duration.ofMillis(50));
+        batcher.offer(1);
+        long start = System.nanoTime();
+        assertTrue(batcher.awaitBatch(), "Aged batch not ready");
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(45).toNanos(), "Batch released before max age");
+        assertEquals(batcher.drain().size(), 1, "Invalid aged batch");
+    }
+
+    @Test
+    public void testRemainderKeepsAge() throws Exception {
+        RingBatcher<Integer> batcher = new RingBatcher<>(16, 2, Duration.ofMillis(100));
+        IntStream.range(0, 3).forEach(batcher::offer);
+        Thread.sleep(80L);
+        assertEquals(batcher.drain().size(), 2, "Invalid first batch");
+        long start = System.nanoTime();
+        assertTrue(batcher.awaitBatch(), "Aged remainder not ready");
+        assertTrue(System.nanoTime() - start < Duration.ofMillis(60).toNanos(), "Remainder age reset by drain");
+        assertEquals(batcher.drain().size(), 1, "Invalid remainder");
+    }
+
+    @Test
+    public void testClose() {
+        RingBatcher<Integer> batcher = new RingBatcher<>(16, 100, Duration.ofSeconds(10));
+        batcher.offer(1);
+        batcher.close();
+        assertFalse(batcher.awaitBatch(), "Closed batcher should not wait");
+        assertFalse(batcher.offer(2), "Closed batcher accepted an item");
+        assertEquals(batcher.drain().size(), 1, "Pending item lost on close");
+    }
+
+    @Test
+    public void testConcurrentProducers() {
+        int producers = 8;
+        int perProducer = 50_000;
+        RingBatcher<long[]> batcher = new RingBatcher<>(256, 100, Duration.ofMillis(5));
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        try {
+            List<CompletableFuture<Void>> loads = IntStream.range(0, producers)
+                    .mapToObj(p -> CompletableFuture.runAsync(() -> {
+                        for (int i = 0; i < perProducer; i++) {
+                            batcher.offer(new long[]{p, i});
+                        }
+                    }, executor))
+                    .collect(toList());
+
+            long[] lastSeen = new long[producers];
+            java.util.Arrays.fill(lastSeen, -1L);
+            List<long[]> received = new ArrayList<>();
+            while (received.size() < producers * perProducer) {
+                batcher.awaitBatch();
+                for (long[] item : batcher.drain()) {
+                    assertEquals(item[1], lastSeen[(int) item[0]] + 1, "Producer order not preserved");
+                    lastSeen[(int) item[0]] = item[1];
+                    received.add(item);
+                }
+            }
+            loads.forEach(CompletableFuture::join);
+            assertTrue(batcher.isEmpty(), "Unexpected items remain");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package io.leoplatform.sdk.aws;
+
+import io.leoplatform.sdk.payload.EventPayload;
+import io.leoplatform.sdk.payload.SimplePayload;
+import io.leoplatform.sdk.payload.StreamCorrelation;
+import org.testng.annotations.Test;
+
+import javax.json.Json;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class SpillBufferTest {
+
+    @Test
+    public void testReplayInOrder() throws Exception {
+        Path dir = Files.createTempDirectory("spill-test");
+        SpillBuffer spill = new SpillBuffer(dir);
+        Instant eventTime = Instant.ofEpochMilli(1_540_000_000_000L);
+        StreamCorrelation correlation = new StreamCorrelation("source-queue", 12L, 3L, 14L);
+        spill.append(new SimplePayload("a", eventTime, Json.createObjectBuilder().add("n", 1).build(), correlation));
+        spill.append(new SimplePayload("b", eventTime, Json.createObjectBuilder().add("n", 2).build(), null));
+        List<EventPayload> replayed = new ArrayList<>();
+        spill.replayNext(replayed::add);
+        spill.append(new SimplePayload("c", eventTime, Json.createObjectBuilder().add("n", 3).build(), null));
+        spill.replayNext(replayed::add);
+
+        assertTrue(spill.isEmpty(), "Spill not drained");
+        assertEquals(replayed.size(), 3, "Invalid replay count");
+        assertEquals(replayed.get(0).id(), "a", "Invalid replay order");
+        assertEquals(replayed.get(2).id(), "c", "Invalid replay order");
+        assertEquals(replayed.get(0).eventTime(), eventTime, "Invalid event time");
+        assertEquals(replayed.get(0).payload().getInt("n"), 1, "Invalid payload");
+        assertEquals(replayed.get(0).streamCorrelation().getEnd(), Long.valueOf(14L), "Invalid correlation");
+        assertEquals(fileCount(dir), 0L, "Spill segments not deleted");
+    }
+
+    @Test
+    public void testFailedReplayResumes() throws Exception {
+        Path dir = Files.createTempDirectory("spill-test");
+        SpillBuffer spill = new SpillBuffer(dir);
+        Instant eventTime = Instant.ofEpochMilli(1_540_000_000_000L);
+        spill.append(new SimplePayload("a", eventTime, Json.createObjectBuilder().add("n", 1).build(), null));
+        spill.append(new SimplePayload("b", eventTime, Json.createObjectBuilder().add("n", 2).build(), null));
+        spill.append(new SimplePayload("c", eventTime, Json.createObjectBuilder().add("n", 3).build(), null));
+        List<EventPayload> replayed = new ArrayList<>();
+        try {
+            spill.replayNext(p -> {
+                if (p.id().equals("b")) {
+                    throw new IllegalStateException("Sink failure");
+                }
+                replayed.add(p);
+            });
+            fail("Sink failure not thrown");
+        } catch (IllegalStateException e) {
+            assertEquals(spill.size(), 2L, "Unreplayed payloads should remain pending");
+        }
+        spill.replayNext(replayed::add);
+
+        assertTrue(spill.isEmpty(), "Spill not drained");
+        assertEquals(replayed.size(), 3, "Invalid replay count");
+        assertEquals(replayed.get(1).id(), "b", "Replay should resume with the failed payload");
+        assertEquals(replayed.get(2).id(), "c", "Invalid replay order");
+    }
+
+    @Test
+    public void testSegmentsRecoveredOnStartup() throws Exception {
+        Path dir = Files.createTempDirectory("spill-test");
+        Instant eventTime = Instant.ofEpochMilli(1_540_000_000_000L);
+        SpillBuffer first = new SpillBuffer(dir);
+        first.append(new SimplePayload("a", eventTime, Json.createObjectBuilder().add("n", 1).build(), null));
+        first.append(new SimplePayload("b", eventTime, Json.createObjectBuilder().add("n", 2).build(), null));
+
+        SpillBuffer restarted = new SpillBuffer(dir);
+        assertEquals(restarted.size(), 2L, "Spilled payloads not recovered");
+        restarted.append(new SimplePayload("c", eventTime, Json.createObjectBuilder().add("n", 3).build(), null));
+        List<EventPayload> replayed = new ArrayList<>();
+        while (!restarted.isEmpty()) {
+            restarted.replayNext(replayed::add);
+        }
+
+        assertEquals(replayed.size(), 3, "Invalid replay count");
+        assertEquals(replayed.get(0).id(), "a", "Recovered payloads should be replayed first");
+        assertEquals(replayed.get(2).id(), "c", "Invalid replay order");
+    }
+
+    private long fileCount(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package io.leoplatform.sdk.aws;
+
+import io.leoplatform.sdk.AsyncWorkQueue;
+import io.leoplatform.sdk.StreamStats;
+import io.leoplatform.sdk.TransferStyle;
+import io.leoplatform.sdk.config.ConnectorConfig;
+import io.leoplatform.sdk.payload.EventPayload;
+import io.leoplatform.sdk.payload.ThresholdMonitor;
+import org.testng.annotations.Test;
+
+import javax.json.JsonObject;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class TransferProxyTest {
+
+    @Test
+    public void testSwitchDoesNotWaitForDrain() throws Exception {
+        BlockingQueue kinesis = new BlockingQueue(TransferStyle.STREAM);
+        BlockingQueue s3 = new BlockingQueue(TransferStyle.STORAGE);
+        SwitchableMonitor monitor = new SwitchableMonitor();
+        TransferProxy proxy = proxy(kinesis, s3, monitor);
+
+        proxy.addEntity(event());
+        monitor.failover = true;
+        CompletableFuture<Void> added = CompletableFuture.runAsync(() -> proxy.addEntity(event()));
+        added.get(1, SECONDS);
+        assertTrue(kinesis.flushStarted.await(1, SECONDS), "Previous epoch not drained");
+        assertEquals(kinesis.added.get(), 1, "Invalid work queue events");
+        assertEquals(s3.added.get(), 1, "Event not sent to failover queue during drain");
+
+        kinesis.release.countDown();
+        s3.release.countDown();
+        proxy.flush();
+    }
+
+    @Test
+    public void testFlushWaitsForDrain() throws Exception {
+        BlockingQueue kinesis = new BlockingQueue(TransferStyle.STREAM);
+        BlockingQueue s3 = new BlockingQueue(TransferStyle.STORAGE);
+        SwitchableMonitor monitor = new SwitchableMonitor();
+        TransferProxy proxy = proxy(kinesis, s3, monitor);
+        s3.release.countDown();
+
+        monitor.failover = true;
+        proxy.addEntity(event());
+        assertTrue(kinesis.flushStarted.await(1, SECONDS), "Previous epoch not drained");
+        CountDownLatch flushCalled = new CountDownLatch(1);
+        CompletableFuture<Void> flushed = CompletableFuture.runAsync(() -> {
+            flushCalled.countDown();
+            proxy.flush();
+        });
+        assertTrue(flushCalled.await(1, SECONDS), "Final flush not started");
+        assertFalse(s3.flushStarted.await(200, MILLISECONDS), "Final flush reached the queues while previous epoch was draining");
+        assertEquals(kinesis.flushes.get(), 0, "Drain should still be blocked");
+        assertFalse(flushed.isDone(), "Flush finished while previous epoch was draining");
+
+        kinesis.release.countDown();
+        flushed.get(1, SECONDS);
+        assertEquals(kinesis.flushes.get(), 2, "Drain and flush should both flush the work queue");
+    }
+
+    @Test
+    public void testFirehoseBuiltOnlyForBatchFailover() {
+        BlockingQueue kinesis = new BlockingQueue(TransferStyle.STREAM);
+        BlockingQueue s3 = new BlockingQueue(TransferStyle.STORAGE);
+        BlockingQueue firehose = new BlockingQueue(TransferStyle.BATCH);
+        AtomicInteger built = new AtomicInteger();
+
+        WorkQueues storage = new WorkQueues(config("Storage"), kinesis, s3, () -> {
+            built.incrementAndGet();
+            return firehose;
+        }, null);
+        assertSame(storage.failoverQueue(), s3, "Invalid default failover queue");
+        assertEquals(built.get(), 0, "Firehose queue built without being configured");
+
+        WorkQueues batch = new WorkQueues(config("Batch"), kinesis, s3, () -> {
+            built.incrementAndGet();
+            return firehose;
+        }, null);
+        assertSame(batch.failoverQueue(), firehose, "Invalid Firehose failover queue");
+        assertEquals(built.get(), 1, "Firehose queue not built for failover");
+    }
+
+    private TransferProxy proxy(AsyncWorkQueue kinesis, AsyncWorkQueue s3, ThresholdMonitor monitor) {
+        WorkQueues workQueues = new WorkQueues(config("Storage"), kinesis, s3, () -> null, null);
+        return new TransferProxy(workQueues, monitor);
+    }
+
+    private EventPayload event() {
+        return new EventPayload() {
+            @Override
+            public JsonObject payload() {
+                return null;
+            }
+        };
+    }
+
+    private static final class BlockingQueue implements AsyncWorkQueue {
+        private final TransferStyle style;
+        private final AtomicInteger added = new AtomicInteger();
+        private final AtomicInteger flushes = new AtomicInteger();
+        private final CountDownLatch flushStarted = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private BlockingQueue(TransferStyle style) {
+            this.style = style;
+        }
+
+        @Override
+        public void addEntity(EventPayload entity) {
+            added.incrementAndGet();
+        }
+
+        @Override
+        public void flush() {
+            flushStarted.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flushes.incrementAndGet();
+        }
+
+        @Override
+        public StreamStats end() {
+            return null;
+        }
+
+        @Override
+        public TransferStyle style() {
+            return style;
+        }
+    }
+
+    private static final class SwitchableMonitor implements ThresholdMonitor {
+        private volatile boolean failover = false;
+
+        @Override
+        public void addBytes(Long bytes) {
+        }
+
+        @Override
+        public boolean isFailover() {
+            return failover;
+        }
+
+        @Override
+        public void end() {
+        }
+    }
+
+    private ConnectorConfig config(String failoverWriter) {
+        return new MapConfig()
+                .with("Writer", "Stream")
+                .with("FailoverWriter", failoverWriter);
+    }
+}
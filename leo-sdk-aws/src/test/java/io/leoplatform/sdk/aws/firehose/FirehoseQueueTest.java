@@ -0,0 +1,183 @@
+package io.leoplatform.sdk.aws.firehose;
+
+import com.amazonaws.services.kinesisfirehose.AbstractAmazonKinesisFirehose;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordBatchRequest;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordBatchResponseEntry;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordBatchResult;
+import io.leoplatform.sdk.ExternalExecutorManager;
+import io.leoplatform.sdk.StreamStats;
+import io.leoplatform.sdk.aws.FlowGate;
+import io.leoplatform.sdk.aws.MapConfig;
+import io.leoplatform.sdk.aws.RouteStats;
+import io.leoplatform.sdk.aws.payload.CompressionWriter;
+import io.leoplatform.sdk.aws.s3.S3Payload;
+import io.leoplatform.sdk.config.ConnectorConfig;
+import io.leoplatform.sdk.payload.EventPayload;
+import io.leoplatform.sdk.payload.FileSegment;
+import io.leoplatform.sdk.payload.RoutedPayload;
+import io.leoplatform.sdk.payload.SimplePayload;
+import io.leoplatform.sdk.payload.StorageEventOffset;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import static org.testng.Assert.assertEquals;
+
+public class FirehoseQueueTest {
+
+    @Test
+    public void testRequestsSplitAtRecordLimit() {
+        RecordingFirehose firehose = new RecordingFirehose(0);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        RouteStats routeStats = new RouteStats();
+        FirehoseQueue queue = queue(firehose, executor, routeStats, 10);
+        IntStream.range(0, 1_200).forEach(i -> queue.addEntity(new SimplePayload(String.valueOf(i), null)));
+        StreamStats stats = queue.end();
+        assertEquals(firehose.requestSizes, Arrays.asList(500, 500, 200), "Invalid PutRecordBatch requests");
+        assertEquals(stats.successes(), Long.valueOf(1_200L), "Invalid delivered events");
+        assertEquals(routeStats.queue("default-queue").records(), 1_200L, "Invalid queue stats");
+        executor.shutdown();
+    }
+
+    @Test
+    public void testRejectedRecordsRetried() {
+        RecordingFirehose firehose = new RecordingFirehose(2);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        FirehoseQueue queue = queue(firehose, executor, new RouteStats(), 10);
+        IntStream.range(0, 5).forEach(i -> queue.addEntity(new SimplePayload(String.valueOf(i), null)));
+        StreamStats stats = queue.end();
+        assertEquals(firehose.requestSizes, Arrays.asList(5, 1, 1), "Only rejected records should be resent");
+        assertEquals(stats.successes(), Long.valueOf(5L), "Invalid delivered events");
+        assertEquals(stats.failures(), Long.valueOf(0L), "Invalid failed events");
+        executor.shutdown();
+    }
+
+    @Test
+    public void testFailsAfterMaxAttempts() {
+        RecordingFirehose firehose = new RecordingFirehose(Integer.MAX_VALUE);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        FirehoseQueue queue = queue(firehose, executor, new RouteStats(), 3);
+        queue.addEntity(new SimplePayload("1", null));
+        StreamStats stats = queue.end();
+        assertEquals(firehose.requestSizes.size(), 3, "Invalid attempt count");
+        assertEquals(stats.failures(), Long.valueOf(1L), "Invalid failed events");
+        executor.shutdown();
+    }
+
+    @Test
+    public void testDestinationsSentAsSeparateRecords() {
+        RecordingFirehose firehose = new RecordingFirehose(0);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        RouteStats routeStats = new RouteStats();
+        FirehoseQueue queue = queue(firehose, executor, routeStats, 10);
+        queue.addEntity(new RoutedPayload("queue-a", new SimplePayload("1", null)));
+        queue.addEntity(new RoutedPayload("queue-b", new SimplePayload("2", null)));
+        queue.addEntity(new RoutedPayload("queue-a", new SimplePayload("3", null)));
+        queue.end();
+        assertEquals(routeStats.queue("queue-a").records(), 2L, "Invalid first queue stats");
+        assertEquals(routeStats.queue("queue-b").records(), 1L, "Invalid second queue stats");
+        executor.shutdown();
+    }
+
+    @Test
+    public void testRequestsInFlightBounded() throws Exception {
+        RecordingFirehose firehose = new RecordingFirehose(0);
+        firehose.open = new CountDownLatch(1);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        FirehoseQueue queue = queue(firehose, executor, new RouteStats(), 10, 1);
+        queue.addEntity(new RoutedPayload("queue-a", new SimplePayload("1", null)));
+        queue.addEntity(new RoutedPayload("queue-b", new SimplePayload("2", null)));
+        CompletableFuture<Void> flushed = CompletableFuture.runAsync(queue::flush, executor);
+        Thread.sleep(100L);
+        assertEquals(firehose.requestSizes.size(), 1, "Second batch sent while the first was in flight");
+        firehose.open.countDown();
+        flushed.get(5, SECONDS);
+        assertEquals(firehose.requestSizes.size(), 2, "Second batch not sent once the first completed");
+        queue.end();
+        executor.shutdown();
+    }
+
+    private FirehoseQueue queue(RecordingFirehose firehose, ExecutorService executor, RouteStats routeStats, int maxAttempts) {
+        return queue(firehose, executor, routeStats, maxAttempts, 4);
+    }
+
+    private FirehoseQueue queue(RecordingFirehose firehose, ExecutorService executor, RouteStats routeStats, int maxAttempts,
+                                int maxRequests) {
+        ConnectorConfig config = new MapConfig()
+                .with("Batch.Name", "delivery-stream")
+                .with("Batch.MaxRecords", 2_000)
+                .with("Batch.MaxRecordSize", 1_000L)
+                .with("Batch.MaxUploadAttempts", maxAttempts)
+                .with("Batch.BaseBackoff", 1L)
+                .with("Batch.MaxBackoff", 2L)
+                .with("Batch.MaxAge", 60_000L)
+                .with("Batch.MaxRequestsInFlight", maxRequests);
+        return new FirehoseQueue(config, new ExternalExecutorManager(executor), new PerEventCompression(),
+                new FlowGate(config), routeStats, firehose);
+    }
+
+    /**
+     * Compresses to 1000 bytes per event, so each event becomes its own Firehose record.
+     */
+    private static final class PerEventCompression implements CompressionWriter {
+        @Override
+        public FileSegment compressWithOffsets(Collection<EventPayload> payload) {
+            String queue = Optional.ofNullable(payload.iterator().next().destination()).orElse("default-queue");
+            long records = payload.size();
+            StorageEventOffset offset = new StorageEventOffset(queue, 0L, records - 1, records * 1_000, 0L, records, records * 1_000, 0L);
+            return new FileSegment(offset, new byte[(int) records * 1_000]);
+        }
+
+        @Override
+        public ByteBuffer compress(S3Payload payload) {
+            return null;
+        }
+    }
+
+    /**
+     * Rejects the first record of each request until it has rejected <code>rejections</code> records.
+     */
+    private static final class RecordingFirehose extends AbstractAmazonKinesisFirehose {
+        private final List<Integer> requestSizes = new CopyOnWriteArrayList<>();
+        private final AtomicInteger rejections;
+        private CountDownLatch open = new CountDownLatch(0);
+
+        private RecordingFirehose(int rejections) {
+            this.rejections = new AtomicInteger(rejections);
+        }
+
+        @Override
+        public PutRecordBatchResult putRecordBatch(PutRecordBatchRequest request) {
+            int size = request.getRecords().size();
+            requestSizes.add(size);
+            try {
+                open.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            List<PutRecordBatchResponseEntry> responses = IntStream.range(0, size)
+                    .mapToObj(i -> i == 0 && rejections.getAndDecrement() > 0
+                            ? new PutRecordBatchResponseEntry().withErrorCode("ServiceUnavailableException")
+                            : new PutRecordBatchResponseEntry().withRecordId(String.valueOf(i)))
+                    .collect(toList());
+            return new PutRecordBatchResult().withRequestResponses(responses);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package io.leoplatform.sdk.aws.kinesis;
+
+import io.leoplatform.sdk.aws.MapConfig;
+import io.leoplatform.sdk.config.ConnectorConfig;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+public class KplSettingsTest {
+
+    @Test
+    public void testDefaultProfileKeepsExistingSettings() {
+        KplSettings settings = new KplSettings(new MapConfig());
+        assertEquals(settings.profile(), KplProfile.DEFAULT, "Invalid default profile");
+        assertFalse(settings.aggregationEnabled(), "Aggregation enabled by default");
+        assertEquals(settings.recordMaxBufferedTime(), 200L, "Invalid default buffered time");
+        assertEquals(settings.maxConnections(), 48L, "Invalid default connections");
+        assertEquals(settings.requestTimeout(), 60_000L, "Invalid default request timeout");
+    }
+
+    @Test
+    public void testLowLatencyProfile() {
+        ConnectorConfig config = new MapConfig()
+                .with("Stream.Kpl.Profile", "lowlatency");
+        KplSettings settings = new KplSettings(config);
+        assertEquals(settings.profile(), KplProfile.LOW_LATENCY, "Invalid profile");
+        assertEquals(settings.recordMaxBufferedTime(), 10L, "Invalid low latency buffered time");
+        assertEquals(settings.metricsLevel(), "none", "Invalid low latency metrics level");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnknownProfile() {
+        new KplSettings(new MapConfig().with("Stream.Kpl.Profile", "LowLatncy"));
+    }
+
+    @Test
+    public void testSettingOverridesProfile() {
+        ConnectorConfig config = new MapConfig()
+                .with("Stream.Kpl.Profile", "MaxThroughput")
+                .with("Stream.Kpl.RecordMaxBufferedTime", 250L)
+                .with("Stream.Kpl.MetricsLevel", "Detailed");
+        KplSettings settings = new KplSettings(config);
+        assertEquals(settings.recordMaxBufferedTime(), 250L, "Setting did not override profile");
+        assertEquals(settings.maxConnections(), 96L, "Invalid max throughput connections");
+        assertEquals(settings.metricsLevel(), "detailed", "Invalid metrics level");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectsOutOfRangeConnections() {
+        ConnectorConfig config = new MapConfig()
+                .with("Stream.Kpl.MaxConnections", 0L);
+        new KplSettings(config);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectsUnknownMetricsLevel() {
+        ConnectorConfig config = new MapConfig()
+                .with("Stream.Kpl.MetricsLevel", "verbose");
+        new KplSettings(config);
+    }
+}
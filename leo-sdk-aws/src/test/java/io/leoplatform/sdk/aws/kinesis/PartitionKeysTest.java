@@ -0,0 +1,66 @@
+package io.leoplatform.sdk.aws.kinesis;
+
+import io.leoplatform.sdk.aws.MapConfig;
+import io.leoplatform.sdk.config.ConnectorConfig;
+import org.testng.annotations.Test;
+
+import java.math.BigInteger;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class PartitionKeysTest {
+
+    @Test
+    public void testQueueStrategyIsDefault() {
+        PartitionKey key = new PartitionKeys(config(null, null)).keyFor("queue-a");
+        assertEquals(key.partitionKey(), "queue-a", "Invalid queue partition key");
+        assertNull(key.explicitHashKey(), "Unexpected explicit hash key");
+    }
+
+    @Test
+    public void testExplicitHashDealsAcrossShards() {
+        PartitionKeys keys = new PartitionKeys(config("ExplicitHash", 4));
+        Set<String> hashKeys = IntStream.range(0, 8)
+                .mapToObj(i -> keys.keyFor("queue-a").explicitHashKey())
+                .collect(Collectors.toSet());
+        assertEquals(hashKeys.size(), 4, "Records not spread across every shard");
+
+        BigInteger shardRange = BigInteger.ONE.shiftLeft(128).divide(BigInteger.valueOf(4));
+        Set<Integer> shards = hashKeys.stream()
+                .map(BigInteger::new)
+                .map(h -> h.divide(shardRange).intValue())
+                .collect(Collectors.toSet());
+        assertEquals(shards.size(), 4, "Hash keys not within distinct shard ranges");
+    }
+
+    @Test
+    public void testRandomSpreadsKeys() {
+        PartitionKeys keys = new PartitionKeys(config("Random", null));
+        Set<String> partitionKeys = IntStream.range(0, 100)
+                .mapToObj(i -> keys.keyFor("queue-a").partitionKey())
+                .collect(Collectors.toSet());
+        assertTrue(partitionKeys.size() > 90, "Random partition keys repeat");
+    }
+
+    @Test
+    public void testPayloadFieldFallsBackToQueue() {
+        PartitionKey key = new PartitionKeys(config("PayloadField", null)).keyFor("queue-a", null);
+        assertEquals(key.partitionKey(), "queue-a", "Missing payload did not fall back to queue");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidShardCount() {
+        new PartitionKeys(config("ExplicitHash", 0));
+    }
+
+    private ConnectorConfig config(String strategy, Integer shardCount) {
+        return new MapConfig()
+                .with("Stream.PartitionKey", strategy)
+                .with("Stream.ShardCount", shardCount);
+    }
+}
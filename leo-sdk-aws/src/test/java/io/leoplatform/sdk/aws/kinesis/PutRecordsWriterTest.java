@@ -0,0 +1,171 @@
+package io.leoplatform.sdk.aws.kinesis;
+
+import com.amazonaws.services.kinesis.AbstractAmazonKinesis;
+import com.amazonaws.services.kinesis.model.PutRecordsRequest;
+import com.amazonaws.services.kinesis.model.PutRecordsResult;
+import com.amazonaws.services.kinesis.model.PutRecordsResultEntry;
+import io.leoplatform.sdk.ExternalExecutorManager;
+import io.leoplatform.sdk.aws.MapConfig;
+import io.leoplatform.sdk.config.ConnectorConfig;
+import io.leoplatform.sdk.payload.ThresholdMonitor;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class PutRecordsWriterTest {
+
+    @Test
+    public void testRequestsSplitAtRecordLimit() {
+        RecordingKinesis kinesis = new RecordingKinesis(0);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        PutRecordsWriter writer = writer(kinesis, executor, 10);
+        List<CompletableFuture<Void>> written = IntStream.range(0, 1_200)
+                .mapToObj(i -> writer.write(ByteBuffer.wrap(new byte[]{1}), PartitionKey.of("pk")))
+                .collect(toList());
+        writer.flush();
+        written.forEach(CompletableFuture::join);
+        assertTrue(kinesis.requestSizes.stream().allMatch(s -> s <= PutRecordsWriter.MAX_RECORDS), "Request above record limit");
+        assertEquals(kinesis.requestSizes.stream().mapToInt(Integer::intValue).sum(), 1_200, "Invalid records sent");
+        writer.end();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testRejectedRecordsRetried() {
+        RecordingKinesis kinesis = new RecordingKinesis(2);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        PutRecordsWriter writer = writer(kinesis, executor, 10);
+        List<CompletableFuture<Void>> written = IntStream.range(0, 5)
+                .mapToObj(i -> writer.write(ByteBuffer.wrap(new byte[]{1}), PartitionKey.of("pk")))
+                .collect(toList());
+        writer.flush();
+        written.forEach(CompletableFuture::join);
+        assertEquals(kinesis.requestSizes, Arrays.asList(5, 1, 1), "Only rejected records should be resent");
+        writer.end();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testFailsAfterMaxAttempts() {
+        RecordingKinesis kinesis = new RecordingKinesis(Integer.MAX_VALUE);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        PutRecordsWriter writer = writer(kinesis, executor, 3);
+        CompletableFuture<Void> written = writer.write(ByteBuffer.wrap(new byte[]{1}), PartitionKey.of("pk"));
+        writer.flush();
+        try {
+            written.join();
+            fail("Record accepted after every attempt was rejected");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException, "Invalid failure");
+        }
+        assertEquals(kinesis.requestSizes.size(), 3, "Invalid attempt count");
+        writer.end();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testRequestsInFlightBounded() {
+        RecordingKinesis kinesis = new RecordingKinesis(0, 5L);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        PutRecordsWriter writer = writer(kinesis, executor, 10, 2);
+        List<CompletableFuture<Void>> written = IntStream.range(0, 5_000)
+                .mapToObj(i -> writer.write(ByteBuffer.wrap(new byte[]{1}), PartitionKey.of("pk")))
+                .collect(toList());
+        writer.flush();
+        written.forEach(CompletableFuture::join);
+        assertTrue(kinesis.maxConcurrent.get() <= 2, "Too many requests in flight: " + kinesis.maxConcurrent.get());
+        assertEquals(kinesis.requestSizes.stream().mapToInt(Integer::intValue).sum(), 5_000, "Invalid records sent");
+        writer.end();
+        executor.shutdown();
+    }
+
+    private PutRecordsWriter writer(RecordingKinesis kinesis, ExecutorService executor, int maxAttempts) {
+        return writer(kinesis, executor, maxAttempts, 16);
+    }
+
+    private PutRecordsWriter writer(RecordingKinesis kinesis, ExecutorService executor, int maxAttempts, int maxRequests) {
+        ConnectorConfig config = new MapConfig()
+                .with("Stream.Name", "stream")
+                .with("Stream.MaxUploadAttempts", maxAttempts)
+                .with("Stream.PutRecords.BaseBackoff", 1L)
+                .with("Stream.PutRecords.MaxBackoff", 2L)
+                .with("Stream.PutRecords.MaxBufferedTime", 5L)
+                .with("Stream.PutRecords.MaxRequestsInFlight", maxRequests);
+        KinesisResults results = new KinesisResults(new NoThreshold());
+        return new PutRecordsWriter(config, new ExternalExecutorManager(executor), results, kinesis);
+    }
+
+    /**
+     * Rejects the first record of each request until it has rejected <code>rejections</code> records, taking
+     * <code>latency</code> milliseconds to answer each request.
+     */
+    private static final class RecordingKinesis extends AbstractAmazonKinesis {
+        private final List<Integer> requestSizes = new CopyOnWriteArrayList<>();
+        private final AtomicInteger rejections;
+        private final long latency;
+        private final AtomicInteger concurrent = new AtomicInteger();
+        private final AtomicInteger maxConcurrent = new AtomicInteger();
+
+        private RecordingKinesis(int rejections) {
+            this(rejections, 0L);
+        }
+
+        private RecordingKinesis(int rejections, long latency) {
+            this.rejections = new AtomicInteger(rejections);
+            this.latency = latency;
+        }
+
+        @Override
+        public PutRecordsResult putRecords(PutRecordsRequest request) {
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                concurrent.decrementAndGet();
+            }
+            int size = request.getRecords().size();
+            requestSizes.add(size);
+            List<PutRecordsResultEntry> entries = IntStream.range(0, size)
+                    .mapToObj(i -> i == 0 && rejections.getAndDecrement() > 0
+                            ? new PutRecordsResultEntry().withErrorCode("ProvisionedThroughputExceededException")
+                            : new PutRecordsResultEntry().withSequenceNumber(String.valueOf(i)).withShardId("shard-0"))
+                    .collect(toList());
+            return new PutRecordsResult().withRecords(entries);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+
+    private static final class NoThreshold implements ThresholdMonitor {
+        @Override
+        public void addBytes(Long bytes) {
+        }
+
+        @Override
+        public boolean isFailover() {
+            return false;
+        }
+
+        @Override
+        public void end() {
+        }
+    }
+}
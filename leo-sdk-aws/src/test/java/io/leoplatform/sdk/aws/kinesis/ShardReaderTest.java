@@ -0,0 +1,113 @@
+package io.leoplatform.sdk.aws.kinesis;
+
+import com.amazonaws.services.kinesis.AbstractAmazonKinesis;
+import com.amazonaws.services.kinesis.model.ExpiredIteratorException;
+import com.amazonaws.services.kinesis.model.GetRecordsRequest;
+import com.amazonaws.services.kinesis.model.GetRecordsResult;
+import com.amazonaws.services.kinesis.model.GetShardIteratorRequest;
+import com.amazonaws.services.kinesis.model.GetShardIteratorResult;
+import com.amazonaws.services.kinesis.model.Record;
+import com.amazonaws.services.kinesis.model.ShardIteratorType;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class ShardReaderTest {
+
+    @Test
+    public void testExpiredIteratorResumesAfterLastRecord() {
+        ScriptedKinesis kinesis = new ScriptedKinesis();
+        kinesis.pages.add(page("it-2", 0L, "1", "2"));
+        kinesis.expireNext = true;
+        kinesis.pages.add(page("it-4", 0L, "3"));
+        ShardReader reader = new ShardReader(kinesis, start(), 100);
+
+        assertEquals(reader.poll().size(), 2, "Invalid first page");
+        assertTrue(reader.poll().isEmpty(), "Expired iterator should return no records");
+        assertEquals(reader.poll().get(0).getSequenceNumber(), "3", "Invalid record after expiry");
+        assertEquals(kinesis.iteratorRequests.get(1).getShardIteratorType(), ShardIteratorType.AFTER_SEQUENCE_NUMBER.toString(),
+                "Iterator should resume after the last record");
+        assertEquals(kinesis.iteratorRequests.get(1).getStartingSequenceNumber(), "2", "Invalid resume position");
+    }
+
+    @Test
+    public void testClosedShard() {
+        ScriptedKinesis kinesis = new ScriptedKinesis();
+        kinesis.pages.add(page(null, 0L, "1"));
+        ShardReader reader = new ShardReader(kinesis, start(), 100);
+
+        assertEquals(reader.poll().size(), 1, "Invalid last page");
+        assertTrue(reader.closed(), "Shard should be closed");
+        assertTrue(reader.poll().isEmpty(), "Closed shard should return no records");
+        assertEquals(kinesis.getRecordsCalls, 1, "Closed shard should not be read again");
+    }
+
+    @Test
+    public void testCaughtUp() {
+        ScriptedKinesis kinesis = new ScriptedKinesis();
+        kinesis.pages.add(page("it-2", 5_000L, "1"));
+        kinesis.pages.add(page("it-3", 0L));
+        ShardReader reader = new ShardReader(kinesis, start(), 100);
+
+        reader.poll();
+        assertFalse(reader.caughtUp(), "Shard behind latest should not be caught up");
+        reader.poll();
+        assertTrue(reader.caughtUp(), "Shard at latest should be caught up");
+    }
+
+    private GetShardIteratorRequest start() {
+        return new GetShardIteratorRequest()
+                .withStreamName("bus")
+                .withShardId("shardId-000000000000")
+                .withShardIteratorType(ShardIteratorType.LATEST);
+    }
+
+    private GetRecordsResult page(String next, Long millisBehind, String... sequences) {
+        List<Record> records = new ArrayList<>();
+        Arrays.stream(sequences)
+                .map(s -> new Record().withSequenceNumber(s).withData(ByteBuffer.wrap(new byte[]{1})))
+                .forEach(records::add);
+        return new GetRecordsResult()
+                .withRecords(records)
+                .withNextShardIterator(next)
+                .withMillisBehindLatest(millisBehind);
+    }
+
+    private static final class ScriptedKinesis extends AbstractAmazonKinesis {
+        private final List<GetRecordsResult> pages = new ArrayList<>();
+        private final List<GetShardIteratorRequest> iteratorRequests = new ArrayList<>();
+        private boolean expireNext = false;
+        private int getRecordsCalls = 0;
+
+        @Override
+        public GetShardIteratorResult getShardIterator(GetShardIteratorRequest request) {
+            iteratorRequests.add(request);
+            return new GetShardIteratorResult().withShardIterator("it-" + iteratorRequests.size());
+        }
+
+        @Override
+        public GetRecordsResult getRecords(GetRecordsRequest request) {
+            getRecordsCalls++;
+            if (expireNext && getRecordsCalls == 2) {
+                expireNext = false;
+                throw new ExpiredIteratorException("Iterator expired");
+            }
+            return pages.isEmpty() ? page() : pages.remove(0);
+        }
+
+        private GetRecordsResult page() {
+            return new GetRecordsResult()
+                    .withRecords(Collections.emptyList())
+                    .withNextShardIterator("it-end")
+                    .withMillisBehindLatest(0L);
+        }
+    }
+}
@@ -1,16 +1,21 @@
 package io.leoplatform.sdk.aws.payload;
 
 import io.leoplatform.sdk.ExecutorManager;
+import io.leoplatform.sdk.aws.MapConfig;
 import io.leoplatform.sdk.config.ConnectorConfig;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.time.Clock;
 import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
 import static java.time.temporal.ChronoUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
@@ -54,6 +59,55 @@ public class InternalThresholdMonitorTest {
         assertFalse(monitor.isFailover(), "Monitor disabled but in failover");
     }
 
+    @Test
+    public void testRateSlidesAcrossSecondBoundary() {
+        VirtualClock clock = new VirtualClock();
+        InternalThresholdMonitor m = new InternalThresholdMonitor(testConfig(1000L, 500L, 0L), idleExecutor(), clock);
+        clock.advance(900);
+        m.addBytes(600L);
+        clock.advance(200);
+        m.addBytes(600L);
+        assertEquals(m.bytesPerSecond(), 1200L, "Rate reset at second boundary");
+        assertTrue(m.isFailover(), "Rate above threshold did not trigger failover");
+        clock.advance(900);
+        assertEquals(m.bytesPerSecond(), 600L, "Expired bucket still counted");
+    }
+
+    @Test
+    public void testFailoverHeldAboveRecoveryRate() {
+        VirtualClock clock = new VirtualClock();
+        InternalThresholdMonitor m = new InternalThresholdMonitor(testConfig(1000L, 500L, 0L), idleExecutor(), clock);
+        m.addBytes(1001L);
+        assertTrue(m.isFailover(), "Rate above threshold did not trigger failover");
+        clock.advance(1000);
+        m.addBytes(600L);
+        assertTrue(m.isFailover(), "Failover cleared above recovery rate");
+        clock.advance(1000);
+        m.evaluate();
+        assertFalse(m.isFailover(), "Failover not cleared below recovery rate");
+    }
+
+    @Test
+    public void testMinimumDwell() {
+        VirtualClock clock = new VirtualClock();
+        InternalThresholdMonitor m = new InternalThresholdMonitor(testConfig(1000L, 500L, 5000L), idleExecutor(), clock);
+        m.addBytes(1001L);
+        assertTrue(m.isFailover(), "First failover delayed by dwell");
+        clock.advance(4999);
+        m.evaluate();
+        assertTrue(m.isFailover(), "Failover cleared before minimum dwell");
+        clock.advance(1);
+        m.evaluate();
+        assertFalse(m.isFailover(), "Failover not cleared after minimum dwell");
+        m.addBytes(1001L);
+        assertFalse(m.isFailover(), "Failover re-entered before minimum dwell");
+        clock.advance(5000);
+        m.addBytes(1001L);
+        assertTrue(m.isFailover(), "Failover not re-entered after minimum dwell");
+        assertEquals(m.failovers(), 2L, "Invalid failover count");
+        assertEquals(m.peakBytesPerSecond(), 1001L, "Invalid peak rate");
+    }
+
     private ExecutorManager synchronousExecutor() {
         return new ExecutorManager() {
             @Override
@@ -71,6 +125,54 @@ public class InternalThresholdMonitorTest {
         };
     }
 
+    private ExecutorManager idleExecutor() {
+        return new ExecutorManager() {
+            @Override
+            public Executor get() {
+                return r -> {
+                };
+            }
+
+            @Override
+            public void add(Runnable r) {
+            }
+
+            @Override
+            public void end() {
+            }
+        };
+    }
+
+    private ConnectorConfig testConfig(Long failover, Long recovery, Long minDwell) {
+        return new MapConfig()
+                .with("Stream.BytesPerSecondFailover", failover)
+                .with("Stream.BytesPerSecondRecovery", recovery)
+                .with("Stream.FailoverMinDwell", minDwell);
+    }
+
+    private static final class VirtualClock extends Clock {
+        private Instant now = Instant.EPOCH;
+
+        void advance(long millis) {
+            now = now.plusMillis(millis);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
     private ConnectorConfig testConfig(Long longVal) {
         return new ConnectorConfig() {
             @Override
@@ -0,0 +1,114 @@
+package io.leoplatform.sdk.aws.payload;
+
+import io.leoplatform.sdk.ExecutorManager;
+import io.leoplatform.sdk.bus.Bots;
+import io.leoplatform.sdk.bus.LoadingBot;
+import io.leoplatform.sdk.payload.EventPayload;
+import io.leoplatform.sdk.payload.FileSegment;
+import io.leoplatform.sdk.payload.SimplePayload;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import javax.json.Json;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class ParallelCompressionWriterTest {
+
+    private final LoadingBot bot = Bots.ofLoading("loading-bot-name", "queue-name");
+    private final S3JsonPayload s3JsonPayload = new JacksonPayload(bot);
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final CompressionWriter streaming = new StreamingCompressionWriter(s3JsonPayload, CodecType.GZIP.withLevel(CodecType.DEFAULT_LEVEL));
+    private final ParallelCompressionWriter writer = new ParallelCompressionWriter(streaming, executorManager(), 4, 100);
+
+    @AfterClass
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testChunkOffsets() {
+        List<FileSegment> segments = writer.compressSegments(payloads(1000));
+        assertEquals(segments.size(), 4, "Invalid chunk count");
+        for (int chunk = 0; chunk < segments.size(); chunk++) {
+            FileSegment segment = segments.get(chunk);
+            String inflated = inflate(segment.getSegment());
+            assertEquals(segment.getOffset().getRecords(), Long.valueOf(250L), "Invalid chunk records");
+            assertEquals(segment.getOffset().getSize(), Long.valueOf(inflated.getBytes(UTF_8).length), "Invalid chunk size");
+            assertEquals(segment.getOffset().getGzipSize(), Long.valueOf(segment.getSegment().length), "Invalid chunk gzip size");
+            assertTrue(inflated.substring(0, inflated.indexOf('\n')).contains("\"id\":" + chunk * 250 + ","), "Chunk out of order");
+        }
+    }
+
+    @Test
+    public void testStitchedMembers() {
+        List<EventPayload> payloads = payloads(1000);
+        FileSegment stitched = writer.compressWithOffsets(payloads);
+        String inflated = inflate(stitched.getSegment());
+        assertEquals(stitched.getOffset().getRecords(), Long.valueOf(1000L), "Invalid stitched records");
+        assertEquals(stitched.getOffset().getEnd(), Long.valueOf(999L), "Invalid stitched end");
+        assertEquals(stitched.getOffset().getSize(), Long.valueOf(inflated.getBytes(UTF_8).length), "Invalid stitched size");
+        assertEquals(inflated.split("\n").length, 1000, "Invalid stitched record count");
+    }
+
+    @Test
+    public void testSmallBatchNotSplit() {
+        assertEquals(writer.compressSegments(payloads(150)).size(), 1, "Small batch should not be split");
+    }
+
+    private List<EventPayload> payloads(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> Json.createObjectBuilder()
+                        .add("id", i)
+                        .add("name", "order-" + i)
+                        .build())
+                .map(SimplePayload::new)
+                .collect(Collectors.toList());
+    }
+
+    private String inflate(byte[] compressed) {
+        try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(compressed));
+             ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            byte[] buf = new byte[4096];
+            int read;
+            while ((read = is.read(buf)) != -1) {
+                out.write(buf, 0, read);
+            }
+            return new String(out.toByteArray(), UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not inflate payload", e);
+        }
+    }
+
+    private ExecutorManager executorManager() {
+        return new ExecutorManager() {
+            @Override
+            public Executor get() {
+                return executor;
+            }
+
+            @Override
+            public void add(Runnable r) {
+                executor.execute(r);
+            }
+
+            @Override
+            public void end() {
+                executor.shutdown();
+            }
+        };
+    }
+}
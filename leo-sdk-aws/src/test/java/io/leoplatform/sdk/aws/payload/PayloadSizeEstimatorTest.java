@@ -0,0 +1,69 @@
+package io.leoplatform.sdk.aws.payload;
+
+import io.leoplatform.sdk.bus.Bots;
+import io.leoplatform.sdk.bus.LoadingBot;
+import io.leoplatform.sdk.payload.EventPayload;
+import io.leoplatform.sdk.payload.SimplePayload;
+import org.testng.annotations.Test;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Objects;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class PayloadSizeEstimatorTest {
+
+    private final LoadingBot bot = Bots.ofLoading("loading-bot-name", "queue-name");
+    private final S3JsonPayload s3JsonPayload = new JacksonPayload(bot);
+    private final PayloadSizeEstimator estimator = new PayloadSizeEstimator();
+
+    @Test
+    public void testOrderEstimate() {
+        EventPayload order = new SimplePayload(orderJson());
+        long actual = s3JsonPayload.toJsonString(order).getBytes(UTF_8).length;
+        long estimated = estimator.estimate(order);
+        assertTrue(Math.abs(estimated - actual) < actual * 0.15, "Estimate " + estimated + " too far from " + actual);
+    }
+
+    @Test
+    public void testScalarEstimates() {
+        JsonObject json = Json.createObjectBuilder()
+                .add("n", -1234)
+                .add("s", "abc")
+                .add("b", true)
+                .addNull("z")
+                .add("a", Json.createArrayBuilder().add(1).add(2))
+                .build();
+        assertEquals(estimator.estimate(json), (long) json.toString().length(), "Invalid JSON estimate");
+    }
+
+    @Test
+    public void testRatioAdapts() {
+        CompressionRatio ratio = new CompressionRatio(0.5, 0.5);
+        ratio.observe(1000L, 100L);
+        assertEquals(ratio.ratio(), 0.3, 0.0001, "Ratio not averaged");
+        for (int i = 0; i < 20; i++) {
+            ratio.observe(1000L, 100L);
+        }
+        double converged = ratio.ratio();
+        assertEquals(converged, 0.1, 0.0001, "Ratio did not converge");
+        assertEquals(ratio.compressedSize(10_000L), (long) Math.ceil(10_000L * converged), "Invalid compressed size");
+        ratio.observe(0L, 100L);
+        assertEquals(ratio.ratio(), converged, 0.0, "Empty batch changed ratio");
+    }
+
+    private JsonObject orderJson() {
+        try {
+            ClassLoader classLoader = getClass().getClassLoader();
+            FileReader r = new FileReader(Objects.requireNonNull(classLoader.getResource("new_order.json")).getFile());
+            return Json.createReader(r).readObject();
+        } catch (IOException e) {
+            throw new IllegalStateException("new_order.json not found");
+        }
+    }
+}
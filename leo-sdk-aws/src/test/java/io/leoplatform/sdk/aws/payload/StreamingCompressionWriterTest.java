@@ -0,0 +1,183 @@
+package io.leoplatform.sdk.aws.payload;
+
+import com.github.luben.zstd.ZstdInputStream;
+import io.leoplatform.sdk.aws.s3.S3LocationPayload;
+import io.leoplatform.sdk.aws.s3.S3Payload;
+import io.leoplatform.sdk.bus.Bots;
+import io.leoplatform.sdk.bus.LoadingBot;
+import io.leoplatform.sdk.payload.*;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+public class StreamingCompressionWriterTest {
+
+    private final LoadingBot bot = Bots.ofLoading("loading-bot-name", "queue-name");
+    private final S3JsonPayload s3JsonPayload = new JacksonPayload(bot);
+    private final StreamingCompressionWriter writer = new StreamingCompressionWriter(s3JsonPayload, CodecType.GZIP.withLevel(CodecType.DEFAULT_LEVEL));
+
+    @Test
+    public void testSymmetricS3Compress() {
+        ByteBuffer bb = writer.compress(s3Payload());
+        JsonObject inflated = Json.createReader(new StringReader(inflate(bb.array()))).readObject();
+        assertEquals(inflated.getJsonString("event").getString(), "my_event", "Invalid event on symmetric inflate");
+    }
+
+    @Test
+    public void testMatchesJoinedPayload() {
+        List<EventPayload> payloads = payloads(250);
+        FileSegment fs = writer.compressWithOffsets(payloads);
+        String expected = payloads.stream()
+                .map(s3JsonPayload::toEntity)
+                .map(s3JsonPayload::toJsonString)
+                .collect(Collectors.joining("\n", "", "\n"));
+
+        // Entities are stamped when they are created, so the two renderings can differ by a millisecond
+        assertEquals(withoutTimestamps(inflate(fs.getSegment())), withoutTimestamps(expected), "Streamed payload differs from joined payload");
+    }
+
+    @Test
+    public void testOffsets() {
+        FileSegment fs = writer.compressWithOffsets(payloads(250));
+        StorageEventOffset offset = fs.getOffset();
+        assertEquals(offset.getEvent(), "queue-name", "Invalid queue");
+        assertEquals(offset.getRecords(), Long.valueOf(250L), "Invalid record count");
+        assertEquals(offset.getEnd(), Long.valueOf(249L), "Invalid end offset");
+        assertEquals(offset.getSize(), Long.valueOf(inflate(fs.getSegment()).getBytes(UTF_8).length), "Invalid inflated size");
+        assertEquals(offset.getGzipSize(), Long.valueOf(fs.getSegment().length), "Invalid gzip size");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testEmptyPayload() {
+        writer.compressWithOffsets(Collections.emptyList());
+    }
+
+    @DataProvider
+    public Object[][] codecs() {
+        return new Object[][]{
+                {CodecType.GZIP, 1}, {CodecType.GZIP, 9}, {CodecType.JZLIB, 1}, {CodecType.JZLIB, 9},
+                {CodecType.ZSTD, 1}, {CodecType.ZSTD, 19}, {CodecType.LZ4, CodecType.DEFAULT_LEVEL}
+        };
+    }
+
+    @Test(dataProvider = "codecs")
+    public void testSymmetricCodec(CodecType codecType, int level) throws IOException {
+        StreamingCompressionWriter codecWriter = new StreamingCompressionWriter(s3JsonPayload, codecType.withLevel(level));
+        FileSegment fs = codecWriter.compressWithOffsets(payloads(250));
+        String inflated = read(decompressor(codecType, new ByteArrayInputStream(fs.getSegment())));
+        assertEquals(fs.getOffset().getSize(), Long.valueOf(inflated.getBytes(UTF_8).length), "Invalid inflated size for " + codecType);
+        assertEquals(inflated.split("\\n").length, 250, "Invalid record count for " + codecType);
+    }
+
+    @Test
+    public void testPooledReuse() {
+        GzipCodec codec = new GzipCodec(CodecType.DEFAULT_LEVEL, 2);
+        StreamingCompressionWriter pooledWriter = new StreamingCompressionWriter(s3JsonPayload, codec, 2);
+        List<EventPayload> payloads = payloads(50);
+        String first = inflate(pooledWriter.compressWithOffsets(payloads).getSegment());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(inflate(pooledWriter.compressWithOffsets(payloads).getSegment()).length(), first.length(), "Reused deflater produced different output");
+        }
+        assertEquals(codec.deflaterPool().misses(), 1L, "Deflater not reused");
+        assertEquals(codec.deflaterPool().hits(), 10L, "Deflater not reused");
+        assertEquals(pooledWriter.bufferPool().hits(), 10L, "Buffer not reused");
+
+        pooledWriter.end();
+        assertEquals(codec.deflaterPool().size(), 0, "Deflaters not released on end");
+        inflate(pooledWriter.compressWithOffsets(payloads).getSegment());
+    }
+
+    @Test
+    public void testDeflaterReleasedWhenHeaderFails() {
+        GzipCodec codec = new GzipCodec(CodecType.DEFAULT_LEVEL, 1);
+        OutputStream failing = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Closed");
+            }
+        };
+        try {
+            codec.compressor(failing);
+            fail("Header write failure not thrown");
+        } catch (IOException e) {
+            assertEquals(codec.deflaterPool().size(), 1, "Deflater not returned after failed header");
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidLevel() {
+        CodecType.GZIP.withLevel(10);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnknownCodec() {
+        CodecType.fromName("Brotli");
+    }
+
+    private InputStream decompressor(CodecType codecType, InputStream in) throws IOException {
+        switch (codecType) {
+            case ZSTD:
+                return new ZstdInputStream(in);
+            case LZ4:
+                return new LZ4FrameInputStream(in);
+            default:
+                return new GZIPInputStream(in);
+        }
+    }
+
+    private List<EventPayload> payloads(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> Json.createObjectBuilder()
+                        .add("id", i)
+                        .add("name", "order-" + i)
+                        .add("note", "caf\u00e9 \u2713")
+                        .build())
+                .map(SimplePayload::new)
+                .collect(Collectors.toList());
+    }
+
+    private String withoutTimestamps(String json) {
+        return json.replaceAll("\"timestamp\":\\d+", "\"timestamp\":0");
+    }
+
+    private String inflate(byte[] compressed) {
+        try {
+            return read(new GZIPInputStream(new ByteArrayInputStream(compressed)));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not inflate payload", e);
+        }
+    }
+
+    private String read(InputStream inflater) {
+        try (InputStream is = inflater; ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            byte[] buf = new byte[4096];
+            int read;
+            while ((read = is.read(buf)) != -1) {
+                out.write(buf, 0, read);
+            }
+            return new String(out.toByteArray(), UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not inflate payload", e);
+        }
+    }
+
+    private S3Payload s3Payload() {
+        return new S3Payload("my_event", "b", "c", new S3LocationPayload("d", "e"),
+                Collections.singletonList(new StorageEventOffset("f", 1L, 2L, 3L, 4L, 5L, 6L, 7L)),
+                8L, 9L, 10L, new StorageStats(Collections.singletonMap("g", new StorageUnits(11L))));
+    }
+}
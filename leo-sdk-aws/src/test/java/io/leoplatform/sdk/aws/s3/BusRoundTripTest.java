@@ -0,0 +1,114 @@
+package io.leoplatform.sdk.aws.s3;
+
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import io.leoplatform.sdk.aws.MapConfig;
+import io.leoplatform.sdk.aws.payload.BusJson;
+import io.leoplatform.sdk.aws.payload.CodecType;
+import io.leoplatform.sdk.aws.payload.CompressionWriter;
+import io.leoplatform.sdk.aws.payload.JacksonPayload;
+import io.leoplatform.sdk.aws.payload.StreamingCompressionWriter;
+import io.leoplatform.sdk.bus.Bots;
+import io.leoplatform.sdk.payload.EntityPayload;
+import io.leoplatform.sdk.payload.EventPayload;
+import io.leoplatform.sdk.payload.FileSegment;
+import io.leoplatform.sdk.payload.RoutedPayload;
+import io.leoplatform.sdk.payload.SimplePayload;
+import io.leoplatform.sdk.payload.StreamCorrelation;
+import org.testng.annotations.Test;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Writes events to a bus file and its pointer the way the loading side does, then reads them back the way the
+ * offloading side does.
+ */
+public class BusRoundTripTest {
+
+    private final CompressionWriter compression = new StreamingCompressionWriter(
+            new JacksonPayload(Bots.ofLoading("loading-bot-name", "queue-a")), CodecType.GZIP.withLevel(CodecType.DEFAULT_LEVEL));
+    private final Instant eventTime = Instant.ofEpochMilli(1_540_000_000_000L);
+
+    @Test
+    public void testStoredEventsReadBack() throws Exception {
+        FileAccumulator file = new FileAccumulator();
+        file.add(compression.compressWithOffsets(events("queue-a", 0, 3)));
+        file.add(compression.compressWithOffsets(events("queue-a", 3, 2)));
+        file.add(compression.compressWithOffsets(events("queue-b", 5, 4)));
+        file.add(compression.compressWithOffsets(events("queue-a", 9, 1)));
+        S3Payload written = new S3Payload(file.event(), null, null, new S3LocationPayload("bucket", "key"),
+                file.offsets(), file.gzipSize(), file.size(), file.records(), null);
+        ByteBuffer record = compression.compress(written);
+
+        List<JsonObject> lines = new ArrayList<>();
+        BusJson.forEachLine(record.array(), lines::add);
+        assertEquals(lines.size(), 1, "Invalid pointer record");
+        assertTrue(BusJson.isPointer(lines.get(0)), "Pointer not recognised");
+        S3Payload pointer = BusJson.toPointer(lines.get(0));
+        assertEquals(pointer.getOffsets().size(), 4, "Invalid offset count");
+        assertEquals(pointer.getOffsets().get(3).getGzipOffset(), written.getOffsets().get(3).getGzipOffset(), "Invalid gzip offset");
+        assertEquals(pointer.getOffsets().get(3).getGzipSize(), written.getOffsets().get(3).getGzipSize(), "Invalid gzip size");
+        assertEquals(pointer.getOffsets().get(2).getEvent(), "queue-b", "Invalid offset queue");
+
+        FileS3 s3 = new FileS3(file);
+        List<EntityPayload> read = new ArrayList<>();
+        long dropped = new S3RangeReader(new MapConfig(), s3)
+                .read(pointer, "queue-a", range -> BusJson.forEachLine(range, json -> read.add(BusJson.toEntity(json))));
+
+        assertEquals(dropped, 0L, "No events should be dropped");
+        assertEquals(s3.gets, 2, "Adjacent segments should be read with one GET");
+        assertEquals(read.stream().map(e -> e.getPayload().getInt("n")).collect(toList()), Arrays.asList(0, 1, 2, 3, 4, 9),
+                "Invalid events read back");
+        EntityPayload first = read.get(0);
+        assertEquals(first.getEvent(), "queue-a", "Invalid event");
+        assertEquals(first.getId(), "loading-bot-name", "Invalid bot id");
+        assertEquals(first.getEvent_source_timestamp(), Long.valueOf(eventTime.toEpochMilli()), "Invalid event time");
+        assertEquals(first.getCorrelation_id().getStart(), Long.valueOf(0L), "Invalid correlation");
+    }
+
+    private List<EventPayload> events(String queue, int from, int count) {
+        return IntStream.range(from, from + count)
+                .mapToObj(n -> new RoutedPayload(queue, new SimplePayload(String.valueOf(n), eventTime,
+                        Json.createObjectBuilder().add("n", n).build(), new StreamCorrelation("source", (long) n, 1L, (long) n))))
+                .collect(toList());
+    }
+
+    /**
+     * Serves the accumulated file's bytes for ranged GETs.
+     */
+    private static final class FileS3 extends AbstractAmazonS3 {
+        private final byte[] file;
+        private int gets = 0;
+
+        private FileS3(FileAccumulator accumulator) throws Exception {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for (FileSegment segment : accumulator.segments()) {
+                out.write(segment.getSegment());
+            }
+            this.file = out.toByteArray();
+        }
+
+        @Override
+        public S3Object getObject(GetObjectRequest request) {
+            gets++;
+            long[] range = request.getRange();
+            S3Object object = new S3Object();
+            object.setObjectContent(new ByteArrayInputStream(file, (int) range[0], (int) (range[1] - range[0] + 1)));
+            return object;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package io.leoplatform.sdk.aws.s3;
+
+import io.leoplatform.sdk.payload.FileSegment;
+import io.leoplatform.sdk.payload.StorageEventOffset;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class FileAccumulatorTest {
+
+    @Test
+    public void testOffsetsAreCumulative() {
+        FileAccumulator file = new FileAccumulator();
+        file.add(segment(3, 100, 40));
+        file.add(segment(2, 50, 20));
+        file.add(segment(5, 70, 30));
+
+        List<StorageEventOffset> offsets = file.offsets();
+        StorageEventOffset last = offsets.get(2);
+        assertEquals(last.getStart(), Long.valueOf(5L), "Invalid start");
+        assertEquals(last.getEnd(), Long.valueOf(9L), "Invalid end");
+        assertEquals(last.getOffset(), Long.valueOf(150L), "Invalid offset");
+        assertEquals(last.getGzipOffset(), Long.valueOf(60L), "Invalid gzip offset");
+        assertEquals(file.records(), 10L, "Invalid records");
+        assertEquals(file.size(), 220L, "Invalid size");
+        assertEquals(file.gzipSize(), 90L, "Invalid gzip size");
+        assertEquals(file.segments().size(), 3, "Invalid segment count");
+    }
+
+    @Test
+    public void testCountedOffsetsKeepNoSegments() {
+        FileAccumulator file = new FileAccumulator();
+        file.count(segment(3, 100, 40).getOffset());
+        assertTrue(file.segments().isEmpty(), "Counted segment was kept");
+        assertEquals(file.offsets().size(), 1, "Invalid offset count");
+        assertEquals(file.event(), "queue-a", "Invalid event");
+    }
+
+    @Test
+    public void testFitsWithinLimits() {
+        FileAccumulator file = new FileAccumulator();
+        file.add(segment(3, 100, 40));
+        StorageEventOffset next = segment(2, 50, 20).getOffset();
+        assertTrue(file.fits(next, 61, 6), "Segment should fit");
+        assertFalse(file.fits(next, 60, 6), "Segment exceeds size");
+        assertFalse(file.fits(next, 61, 5), "Segment exceeds records");
+    }
+
+    private FileSegment segment(long records, long size, long gzipSize) {
+        return new FileSegment(new StorageEventOffset("queue-a", 0L, records - 1, size, 0L, records, gzipSize, 0L), new byte[(int) gzipSize]);
+    }
+}
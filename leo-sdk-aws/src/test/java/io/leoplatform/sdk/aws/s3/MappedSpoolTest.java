@@ -0,0 +1,81 @@
+package io.leoplatform.sdk.aws.s3;
+
+import io.leoplatform.sdk.payload.FileSegment;
+import io.leoplatform.sdk.payload.StorageEventOffset;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class MappedSpoolTest {
+
+    @Test
+    public void testBodyIsServedFromSpool() throws Exception {
+        MappedSpool spool = new MappedSpool(Files.createTempDirectory("spool-test"), 1024);
+        PendingMappedUpload upload = spool.append("file-1", segments("queue-a", new byte[]{1, 2, 3}, new byte[]{4, 5}));
+        assertEquals(read(upload), new byte[]{1, 2, 3, 4, 5}, "Invalid spooled body");
+        assertEquals(upload.records(), 2L, "Invalid spooled records");
+        assertEquals(upload.event(), "queue-a", "Invalid spooled event");
+    }
+
+    @Test
+    public void testRecoversPendingUploads() throws Exception {
+        Path directory = Files.createTempDirectory("spool-test");
+        MappedSpool spool = new MappedSpool(directory, 1024);
+        spool.append("file-1", segments("queue-a", new byte[]{1, 2})).cleanup();
+        spool.append("file-2", segments("queue-b", new byte[]{3, 4}, new byte[]{5}));
+
+        List<PendingMappedUpload> recovered = new MappedSpool(directory, 1024).recovered();
+        assertEquals(recovered.size(), 1, "Invalid recovered upload count");
+        PendingMappedUpload upload = recovered.get(0);
+        assertEquals(upload.filename(), "file-2", "Invalid recovered file name");
+        assertEquals(upload.event(), "queue-b", "Invalid recovered event");
+        assertEquals(upload.records(), 2L, "Invalid recovered records");
+        assertEquals(read(upload), new byte[]{3, 4, 5}, "Invalid recovered body");
+    }
+
+    @Test
+    public void testRecyclesReleasedSegments() throws Exception {
+        Path directory = Files.createTempDirectory("spool-test");
+        MappedSpool spool = new MappedSpool(directory, 256);
+        for (int i = 0; i < 20; i++) {
+            spool.append("file-" + i, segments("queue-a", new byte[100])).cleanup();
+        }
+        assertTrue(fileCount(directory) <= 3, "Released segments not reused");
+        spool.close();
+        assertTrue(fileCount(directory) <= 1, "Idle segments not deleted on close");
+    }
+
+    private FileAccumulator segments(String event, byte[]... bodies) {
+        FileAccumulator segments = new FileAccumulator();
+        for (byte[] body : bodies) {
+            segments.add(new FileSegment(new StorageEventOffset(event, 0L, 0L, 10L, 0L, 1L, (long) body.length, 0L), body));
+        }
+        return segments;
+    }
+
+    private byte[] read(PendingMappedUpload upload) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = upload.s3PutRequest("bucket").getInputStream()) {
+            int b;
+            while ((b = in.read()) != -1) {
+                out.write(b);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private long fileCount(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
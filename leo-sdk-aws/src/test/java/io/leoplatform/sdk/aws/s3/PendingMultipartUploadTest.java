@@ -0,0 +1,149 @@
+package io.leoplatform.sdk.aws.s3;
+
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.model.*;
+import com.amazonaws.services.s3.transfer.model.UploadResult;
+import io.leoplatform.sdk.payload.FileSegment;
+import io.leoplatform.sdk.payload.StorageEventOffset;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class PendingMultipartUploadTest {
+
+    @Test
+    public void testPartsUploadedAsSegmentsArrive() throws Exception {
+        RecordingS3 s3 = new RecordingS3();
+        PendingMultipartUpload upload = new PendingMultipartUpload(s3, "bucket", "file-1", 4, 2, Runnable::run);
+        upload.append(segment(new byte[]{1, 2, 3}));
+        assertTrue(s3.parts.isEmpty(), "Part uploaded before it was full");
+        upload.append(segment(new byte[]{4, 5}));
+        assertEquals(s3.parts.get(1), new byte[]{1, 2, 3, 4, 5}, "Invalid first part");
+
+        upload.append(segment(new byte[]{6}));
+        UploadResult result = upload.upload(null, "bucket");
+        assertEquals(s3.parts.get(2), new byte[]{6}, "Invalid last part");
+        assertEquals(s3.completedParts, 2, "Invalid completed part count");
+        assertEquals(result.getBucketName(), "bucket", "Invalid bucket");
+        assertEquals(result.getKey(), "file-1", "Invalid key");
+        assertEquals(result.getETag(), "complete", "Invalid ETag");
+        assertEquals(upload.records(), 3L, "Invalid record count");
+    }
+
+    @Test
+    public void testSmallFileSentWithSinglePut() throws Exception {
+        RecordingS3 s3 = new RecordingS3();
+        PendingMultipartUpload upload = new PendingMultipartUpload(s3, "bucket", "file-1", 1024, 2, Runnable::run);
+        upload.append(segment(new byte[]{1, 2}));
+        upload.append(segment(new byte[]{3}));
+        UploadResult result = upload.upload(null, "bucket");
+        assertTrue(s3.parts.isEmpty(), "Small file uploaded in parts");
+        assertEquals(s3.put, new byte[]{1, 2, 3}, "Invalid put body");
+        assertEquals(result.getETag(), "put", "Invalid ETag");
+    }
+
+    @Test
+    public void testPartsInFlightBounded() throws Exception {
+        RecordingS3 s3 = new RecordingS3();
+        s3.open = new CountDownLatch(1);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        PendingMultipartUpload upload = new PendingMultipartUpload(s3, "bucket", "file-1", 2, 1, executor);
+        upload.append(segment(new byte[]{1, 2}));
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() -> upload.append(segment(new byte[]{3, 4})));
+        Thread.sleep(100L);
+        assertFalse(second.isDone(), "Second part started while the first was still uploading");
+
+        s3.open.countDown();
+        second.get(5, SECONDS);
+        upload.upload(null, "bucket");
+        assertEquals(s3.completedParts, 2, "Invalid completed part count");
+        executor.shutdown();
+    }
+
+    @Test
+    public void testOffsetsAccumulateAcrossParts() {
+        PendingMultipartUpload upload = new PendingMultipartUpload(new RecordingS3(), "bucket", "file-1", 2, 2, Runnable::run);
+        upload.append(segment(new byte[]{1, 2, 3}));
+        upload.append(segment(new byte[]{4, 5}));
+        UploadResult result = new UploadResult();
+        result.setBucketName("bucket");
+        result.setKey("file-1");
+        List<StorageEventOffset> offsets = upload.s3Payload(result, "bot").getOffsets();
+        assertEquals(offsets.get(1).getGzipOffset(), Long.valueOf(3L), "Invalid gzip offset");
+        assertEquals(offsets.get(1).getStart(), Long.valueOf(1L), "Invalid start");
+    }
+
+    private FileSegment segment(byte[] body) {
+        return new FileSegment(new StorageEventOffset("queue-a", 0L, 0L, 10L, 0L, 1L, (long) body.length, 0L), body);
+    }
+
+    private static final class RecordingS3 extends AbstractAmazonS3 {
+        private final Map<Integer, byte[]> parts = new ConcurrentHashMap<>();
+        private volatile byte[] put;
+        private volatile int completedParts;
+        private volatile CountDownLatch open = new CountDownLatch(0);
+
+        @Override
+        public PutObjectResult putObject(PutObjectRequest request) {
+            put = read(request.getInputStream());
+            PutObjectResult result = new PutObjectResult();
+            result.setETag("put");
+            return result;
+        }
+
+        @Override
+        public InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest request) {
+            InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+            result.setUploadId("upload-1");
+            return result;
+        }
+
+        @Override
+        public UploadPartResult uploadPart(UploadPartRequest request) {
+            try {
+                open.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            parts.put(request.getPartNumber(), read(request.getInputStream()));
+            UploadPartResult result = new UploadPartResult();
+            result.setPartNumber(request.getPartNumber());
+            result.setETag("part-" + request.getPartNumber());
+            return result;
+        }
+
+        @Override
+        public CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest request) {
+            completedParts = request.getPartETags().size();
+            CompleteMultipartUploadResult result = new CompleteMultipartUploadResult();
+            result.setETag("complete");
+            return result;
+        }
+
+        private static byte[] read(InputStream is) {
+            try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+                int b;
+                while ((b = is.read()) != -1) {
+                    out.write(b);
+                }
+                return out.toByteArray();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
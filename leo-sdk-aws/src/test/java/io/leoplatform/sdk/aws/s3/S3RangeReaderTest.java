@@ -0,0 +1,143 @@
+package io.leoplatform.sdk.aws.s3;
+
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import io.leoplatform.sdk.aws.MapConfig;
+import io.leoplatform.sdk.payload.StorageEventOffset;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class S3RangeReaderTest {
+
+    @Test
+    public void testAdjacentSegmentsMerged() {
+        S3Payload pointer = pointer(
+                offset("queue-a", 0L, 100L),
+                offset("queue-a", 100L, 50L),
+                offset("queue-b", 150L, 200L),
+                offset("queue-a", 350L, 25L));
+        List<S3RangeReader.Range> ranges = S3RangeReader.ranges(pointer, "queue-a");
+        assertEquals(ranges.size(), 2, "Invalid range count");
+        assertEquals(ranges.get(0).start, 0L, "Invalid first range start");
+        assertEquals(ranges.get(0).length, 150L, "Adjacent segments should be merged");
+        assertEquals(ranges.get(1).start, 350L, "Invalid second range start");
+        assertEquals(ranges.get(1).length, 25L, "Invalid second range length");
+    }
+
+    @Test
+    public void testRangesCapped() {
+        long half = S3RangeReader.MAX_RANGE_BYTES / 2 + 1;
+        S3Payload pointer = pointer(offset("queue-a", 0L, half), offset("queue-a", half, half));
+        assertEquals(S3RangeReader.ranges(pointer, "queue-a").size(), 2, "Range above maximum size");
+    }
+
+    @Test
+    public void testOtherQueueSkipped() {
+        S3Payload pointer = pointer(offset("queue-b", 0L, 100L));
+        assertTrue(S3RangeReader.ranges(pointer, "queue-a").isEmpty(), "Other queue's segments should not be read");
+    }
+
+    @Test
+    public void testRangedGets() {
+        byte[] file = new byte[400];
+        for (int i = 0; i < file.length; i++) {
+            file[i] = (byte) i;
+        }
+        RangedS3 s3 = new RangedS3(file);
+        S3Payload pointer = pointer(offset("queue-a", 10L, 20L), offset("queue-b", 30L, 40L), offset("queue-a", 70L, 5L));
+        List<byte[]> ranges = new ArrayList<>();
+        reader(s3).read(pointer, "queue-a", ranges::add);
+
+        assertEquals(s3.requests.size(), 2, "Invalid GET count");
+        assertEquals(s3.requests.get(0).getRange(), new long[]{10L, 29L}, "Invalid first range");
+        assertEquals(s3.requests.get(1).getRange(), new long[]{70L, 74L}, "Invalid second range");
+        assertEquals(ranges.get(0), Arrays.copyOfRange(file, 10, 30), "Invalid first range bytes");
+        assertEquals(ranges.get(1), Arrays.copyOfRange(file, 70, 75), "Invalid second range bytes");
+    }
+
+    @Test
+    public void testFailedFetchRetried() {
+        RangedS3 s3 = new RangedS3(new byte[400]);
+        s3.failures = 2;
+        S3Payload pointer = pointer(offset("queue-a", 10L, 20L));
+        List<byte[]> ranges = new ArrayList<>();
+        long dropped = reader(s3).read(pointer, "queue-a", ranges::add);
+
+        assertEquals(s3.requests.size(), 3, "Failed GETs should be retried");
+        assertEquals(ranges.size(), 1, "Range not read after retry");
+        assertEquals(dropped, 0L, "No events should be dropped");
+    }
+
+    @Test
+    public void testUnfetchableRangeDropped() {
+        RangedS3 s3 = new RangedS3(new byte[400]);
+        s3.failures = 3;
+        S3Payload pointer = pointer(offset("queue-a", 10L, 20L, 7L), offset("queue-b", 30L, 40L, 5L), offset("queue-a", 70L, 5L, 2L));
+        List<byte[]> ranges = new ArrayList<>();
+        long dropped = reader(s3).read(pointer, "queue-a", ranges::add);
+
+        assertEquals(ranges.size(), 1, "Later range should still be read");
+        assertEquals(s3.requests.get(3).getRange(), new long[]{70L, 74L}, "Invalid range after dropped range");
+        assertEquals(dropped, 7L, "Dropped range's events not counted");
+    }
+
+    @Test
+    public void testPointerWithoutOffsetsReadWhole() {
+        S3Payload pointer = new S3Payload("queue-a", null, null, new S3LocationPayload("bucket", "key"),
+                Collections.emptyList(), 400L, 1_000L, 10L, null);
+        List<S3RangeReader.Range> ranges = S3RangeReader.ranges(pointer, "queue-a");
+        assertEquals(ranges.size(), 1, "Invalid range count");
+        assertEquals(ranges.get(0).length, 400L, "Whole file should be read");
+    }
+
+    private S3RangeReader reader(RangedS3 s3) {
+        return new S3RangeReader(new MapConfig()
+                .with("Offload.MaxFetchAttempts", 3)
+                .with("Offload.BaseBackoff", 1L)
+                .with("Offload.MaxBackoff", 2L), s3);
+    }
+
+    private S3Payload pointer(StorageEventOffset... offsets) {
+        return new S3Payload("queue-a", null, null, new S3LocationPayload("bucket", "key"),
+                Arrays.asList(offsets), null, null, null, null);
+    }
+
+    private StorageEventOffset offset(String queue, Long gzipOffset, Long gzipSize) {
+        return offset(queue, gzipOffset, gzipSize, 1L);
+    }
+
+    private StorageEventOffset offset(String queue, Long gzipOffset, Long gzipSize, Long records) {
+        return new StorageEventOffset(queue, 0L, 0L, 0L, 0L, records, gzipSize, gzipOffset);
+    }
+
+    private static final class RangedS3 extends AbstractAmazonS3 {
+        private final byte[] file;
+        private final List<GetObjectRequest> requests = new ArrayList<>();
+        private int failures = 0;
+
+        private RangedS3(byte[] file) {
+            this.file = file;
+        }
+
+        @Override
+        public S3Object getObject(GetObjectRequest request) {
+            requests.add(request);
+            if (failures-- > 0) {
+                throw new IllegalStateException("GET failed");
+            }
+            long[] range = request.getRange();
+            S3Object object = new S3Object();
+            object.setObjectContent(new ByteArrayInputStream(file, (int) range[0], (int) (range[1] - range[0] + 1)));
+            return object;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package io.leoplatform.sdk.aws.s3;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import static org.testng.Assert.assertEquals;
+
+public class SegmentInputStreamTest {
+
+    @Test
+    public void testReadsAcrossSegments() {
+        SegmentInputStream in = stream();
+        byte[] buffer = new byte[4];
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int n;
+        while ((n = in.read(buffer, 0, buffer.length)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        assertEquals(out.toByteArray(), new byte[]{1, 2, 3, 4, 5, 6, 7}, "Invalid concatenated bytes");
+        assertEquals(in.available(), 0, "Bytes remain after end of stream");
+    }
+
+    @Test
+    public void testMarkAndReset() {
+        SegmentInputStream in = stream();
+        assertEquals(in.skip(2), 2L, "Invalid skip");
+        in.mark(Integer.MAX_VALUE);
+        assertEquals(in.read(), 3, "Invalid byte after skip");
+        assertEquals(in.read(), 4, "Invalid byte across segment boundary");
+        in.reset();
+        assertEquals(in.available(), 5, "Invalid available after reset");
+        assertEquals(in.read(), 3, "Reset did not restore position");
+    }
+
+    private SegmentInputStream stream() {
+        return new SegmentInputStream(Arrays.asList(new byte[]{1, 2, 3}, new byte[0], new byte[]{4, 5, 6, 7}));
+    }
+}
@@ -0,0 +1,41 @@
+package io.leoplatform.sdk.aws.s3;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+
+public class UploadSequencerTest {
+
+    @Test
+    public void testReleasesInDispatchOrder() {
+        UploadSequencer sequencer = new UploadSequencer();
+        List<String> released = new ArrayList<>();
+        UploadSequencer.Ticket first = sequencer.ticket("queue-a");
+        UploadSequencer.Ticket second = sequencer.ticket("queue-a");
+        UploadSequencer.Ticket third = sequencer.ticket("queue-a");
+
+        sequencer.complete(third, () -> released.add("third"));
+        sequencer.complete(second, () -> released.add("second"));
+        assertEquals(released, Collections.emptyList(), "Released ahead of an earlier upload");
+        sequencer.complete(first, () -> released.add("first"));
+        assertEquals(released, Arrays.asList("first", "second", "third"), "Invalid release order");
+    }
+
+    @Test
+    public void testQueuesAreIndependent() {
+        UploadSequencer sequencer = new UploadSequencer();
+        List<String> released = new ArrayList<>();
+        UploadSequencer.Ticket slow = sequencer.ticket("queue-a");
+        UploadSequencer.Ticket fast = sequencer.ticket("queue-b");
+
+        sequencer.complete(fast, () -> released.add("queue-b"));
+        assertEquals(released, Collections.singletonList("queue-b"), "Queue held behind another queue");
+        sequencer.complete(slow, () -> released.add("queue-a"));
+        assertEquals(released, Arrays.asList("queue-b", "queue-a"), "Invalid release order");
+    }
+}
@@ -0,0 +1,129 @@
+package io.leoplatform.sdk.aws.wal;
+
+import io.leoplatform.sdk.ExecutorManager;
+import io.leoplatform.sdk.InternalExecutorManager;
+import io.leoplatform.sdk.aws.MapConfig;
+import io.leoplatform.sdk.config.ConnectorConfig;
+import io.leoplatform.sdk.payload.EventPayload;
+import io.leoplatform.sdk.payload.SimplePayload;
+import org.testng.annotations.Test;
+
+import javax.json.Json;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class WriteAheadLogTest {
+
+    @Test
+    public void testSegmentKeepsPendingRecords() throws Exception {
+        Path path = Files.createTempDirectory("wal-test").resolve("leo-wal-000000.log");
+        WalSegment segment = WalSegment.create(path, 1024, WalSegment::delete);
+        int first = segment.append(new byte[]{1});
+        segment.append(new byte[]{2, 2});
+        segment.confirm(first);
+
+        List<byte[]> pending = new ArrayList<>();
+        WalSegment.open(path).forEachPending((position, record) -> pending.add(record));
+        assertEquals(pending.size(), 1, "Invalid pending record count");
+        assertEquals(pending.get(0), new byte[]{2, 2}, "Invalid pending record");
+    }
+
+    @Test
+    public void testSealedSegmentDrainedWhenConfirmed() throws Exception {
+        Path path = Files.createTempDirectory("wal-test").resolve("leo-wal-000000.log");
+        List<WalSegment> drained = new ArrayList<>();
+        WalSegment segment = WalSegment.create(path, 1024, drained::add);
+        int record = segment.append(new byte[]{1});
+        segment.seal();
+        assertTrue(drained.isEmpty(), "Segment drained with a pending record");
+        segment.confirm(record);
+        assertEquals(drained, Collections.singletonList(segment), "Confirmed segment not drained");
+        assertTrue(Files.exists(path), "Segment deleted on the confirming thread");
+    }
+
+    @Test
+    public void testConfirmedSegmentsDeletedBySync() throws Exception {
+        Path directory = Files.createTempDirectory("wal-test");
+        ConnectorConfig config = config(directory).with("Wal.SegmentSize", 256L);
+        ExecutorManager executorManager = new InternalExecutorManager(config);
+        WriteAheadLog wal = new WriteAheadLog(config, executorManager);
+        List<LoggedPayload> logged = IntStream.range(0, 10)
+                .mapToObj(i -> (LoggedPayload) wal.append(payload(String.valueOf(i))))
+                .collect(toList());
+        logged.forEach(LoggedPayload::confirm);
+        wal.end();
+        assertEquals(fileCount(directory), 0L, "Confirmed segments not deleted");
+        executorManager.end();
+    }
+
+    @Test
+    public void testSyncAlwaysAppendsConcurrently() throws Exception {
+        Path directory = Files.createTempDirectory("wal-test");
+        ConnectorConfig config = config(directory).with("Wal.SyncMode", "Always");
+        ExecutorManager executorManager = new InternalExecutorManager(config);
+        WriteAheadLog wal = new WriteAheadLog(config, executorManager);
+        ExecutorService appenders = Executors.newFixedThreadPool(4);
+        try {
+            List<CompletableFuture<EventPayload>> appends = IntStream.range(0, 100)
+                    .mapToObj(i -> CompletableFuture.supplyAsync(() -> wal.append(payload(String.valueOf(i))), appenders))
+                    .collect(toList());
+            CompletableFuture.allOf(appends.toArray(new CompletableFuture<?>[0])).get(10, SECONDS);
+            assertTrue(appends.stream().map(CompletableFuture::join).allMatch(LoggedPayload.class::isInstance), "Payload not logged");
+        } finally {
+            appenders.shutdownNow();
+            wal.end();
+            executorManager.end();
+        }
+    }
+
+    @Test
+    public void testReplaysUnconfirmedPayloads() throws Exception {
+        Path directory = Files.createTempDirectory("wal-test");
+        ConnectorConfig config = config(directory);
+        ExecutorManager executorManager = new InternalExecutorManager(config);
+        WriteAheadLog wal = new WriteAheadLog(config, executorManager);
+        LoggedPayload delivered = (LoggedPayload) wal.append(payload("a"));
+        wal.append(payload("b"));
+        wal.append(payload("c"));
+        delivered.confirm();
+        wal.end();
+
+        List<EventPayload> replayed = new ArrayList<>();
+        WriteAheadLog restarted = new WriteAheadLog(config, executorManager);
+        restarted.replay(replayed::add);
+        restarted.end();
+        assertEquals(replayed.stream().map(EventPayload::id).collect(toList()), java.util.Arrays.asList("b", "c"), "Invalid replayed payloads");
+        assertEquals(fileCount(directory), 0L, "Replayed segments not deleted");
+        executorManager.end();
+    }
+
+    private EventPayload payload(String id) {
+        return new SimplePayload(id, Json.createObjectBuilder().add("id", id).build());
+    }
+
+    private MapConfig config(Path directory) {
+        return new MapConfig()
+                .with("Wal.Enabled", "true")
+                .with("Wal.Directory", directory.toString());
+    }
+
+    private long fileCount(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}